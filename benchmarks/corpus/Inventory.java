@@ -0,0 +1,192 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Part of the fixed corpus of the benchmarks. The micro-benchmarks analyze the methods of this
+ * class. Do not change it, or results become incomparable with earlier runs.
+ */
+public class Inventory {
+
+    /** A stock-keeping unit. */
+    static class Item {
+        final String sku;
+        final String name;
+        int quantity;
+        long priceInCents;
+        @Nullable String supplier;
+
+        Item(String sku, String name, int quantity, long priceInCents) {
+            this.sku = sku;
+            this.name = name;
+            this.quantity = quantity;
+            this.priceInCents = priceInCents;
+        }
+
+        long value() {
+            return quantity * priceInCents;
+        }
+
+        boolean isLow(int threshold) {
+            return quantity < threshold;
+        }
+    }
+
+    private final Map<String, Item> items = new HashMap<>();
+    private final List<String> log = new ArrayList<>();
+    private @Nullable Item lastChanged;
+    private int threshold = 10;
+
+    public void add(String sku, String name, int quantity, long priceInCents) {
+        Item existing = items.get(sku);
+        if (existing != null) {
+            existing.quantity += quantity;
+            lastChanged = existing;
+        } else {
+            Item item = new Item(sku, name, quantity, priceInCents);
+            items.put(sku, item);
+            lastChanged = item;
+        }
+        log.add("add " + sku + " " + quantity);
+    }
+
+    public boolean remove(String sku, int quantity) {
+        Item item = items.get(sku);
+        if (item == null || item.quantity < quantity) {
+            log.add("failed remove " + sku);
+            return false;
+        }
+        item.quantity -= quantity;
+        if (item.quantity == 0) {
+            items.remove(sku);
+        }
+        lastChanged = item;
+        log.add("remove " + sku + " " + quantity);
+        return true;
+    }
+
+    public @Nullable String lastChangedName() {
+        Item last = lastChanged;
+        return last == null ? null : last.name;
+    }
+
+    public String supplierOf(String sku) {
+        Item item = items.get(sku);
+        if (item == null) {
+            return "<unknown item>";
+        }
+        String supplier = item.supplier;
+        if (supplier == null) {
+            return "<unknown supplier>";
+        }
+        return supplier.trim();
+    }
+
+    public long totalValue() {
+        long total = 0;
+        for (Item item : items.values()) {
+            total += item.value();
+        }
+        return total;
+    }
+
+    public List<String> lowStock() {
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, Item> e : items.entrySet()) {
+            if (e.getValue().isLow(threshold)) {
+                result.add(e.getKey());
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    public int restock(int amount) {
+        int restocked = 0;
+        Iterator<Item> it = items.values().iterator();
+        while (it.hasNext()) {
+            Item item = it.next();
+            if (!item.isLow(threshold)) {
+                continue;
+            }
+            int missing = threshold - item.quantity;
+            int added = Math.min(missing, amount - restocked);
+            if (added <= 0) {
+                break;
+            }
+            item.quantity += added;
+            restocked += added;
+        }
+        return restocked;
+    }
+
+    public @Nullable Item mostValuable() {
+        Item best = null;
+        for (Item item : items.values()) {
+            if (best == null || item.value() > best.value()) {
+                best = item;
+            }
+        }
+        return best;
+    }
+
+    public String describe(String sku) {
+        Item item = items.get(sku);
+        StringBuilder sb = new StringBuilder();
+        if (item != null) {
+            sb.append(item.name).append(": ").append(item.quantity);
+            switch (Integer.signum(item.quantity - threshold)) {
+                case -1:
+                    sb.append(" (low)");
+                    break;
+                case 0:
+                    sb.append(" (at threshold)");
+                    break;
+                default:
+                    sb.append(" (ok)");
+            }
+            String supplier = item.supplier;
+            if (supplier != null && !supplier.isEmpty()) {
+                sb.append(", from ").append(supplier);
+            }
+        } else {
+            sb.append(sku).append(": not stocked");
+        }
+        return sb.toString();
+    }
+
+    public void setThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("negative threshold: " + threshold);
+        }
+        this.threshold = threshold;
+    }
+
+    public int parseAndAdd(List<String> lines) {
+        int added = 0;
+        for (String line : lines) {
+            String[] parts = line.split(",");
+            if (parts.length != 4) {
+                continue;
+            }
+            try {
+                int quantity = Integer.parseInt(parts[2].trim());
+                long price = Long.parseLong(parts[3].trim());
+                add(parts[0].trim(), parts[1].trim(), quantity, price);
+                added++;
+            } catch (NumberFormatException e) {
+                log.add("bad line " + line);
+            }
+        }
+        return added;
+    }
+
+    public List<String> history(int max) {
+        int from = Math.max(0, log.size() - max);
+        return new ArrayList<>(log.subList(from, log.size()));
+    }
+}
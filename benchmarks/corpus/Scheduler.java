@@ -0,0 +1,162 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import org.checkerframework.checker.nullness.qual.EnsuresNonNullIf;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/** Part of the fixed corpus of the benchmarks. Do not change it. */
+public class Scheduler {
+
+    /** A task with dependencies. */
+    static class Task implements Comparable<Task> {
+        final String name;
+        final int priority;
+        final List<Task> dependencies = new ArrayList<>();
+        @MonotonicNonNull String owner;
+
+        Task(String name, int priority) {
+            this.name = name;
+            this.priority = priority;
+        }
+
+        @EnsuresNonNullIf(expression = "owner", result = true)
+        boolean hasOwner() {
+            return owner != null;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            return Integer.compare(other.priority, priority);
+        }
+    }
+
+    private final Map<String, Task> tasks = new HashMap<>();
+
+    public Task task(String name, int priority) {
+        Task task = tasks.get(name);
+        if (task == null) {
+            task = new Task(name, priority);
+            tasks.put(name, task);
+        }
+        return task;
+    }
+
+    public void depend(String from, String to) {
+        Task a = tasks.get(from);
+        Task b = tasks.get(to);
+        if (a != null && b != null) {
+            a.dependencies.add(b);
+        }
+    }
+
+    public @Nullable List<Task> order() {
+        Map<Task, Integer> indegree = new HashMap<>();
+        for (Task t : tasks.values()) {
+            if (!indegree.containsKey(t)) {
+                indegree.put(t, 0);
+            }
+            for (Task d : t.dependencies) {
+                Integer old = indegree.get(d);
+                indegree.put(d, old == null ? 1 : old + 1);
+            }
+        }
+        PriorityQueue<Task> ready = new PriorityQueue<>();
+        for (Map.Entry<Task, Integer> e : indegree.entrySet()) {
+            if (e.getValue() == 0) {
+                ready.add(e.getKey());
+            }
+        }
+        List<Task> result = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            Task t = ready.poll();
+            if (t == null) {
+                break;
+            }
+            result.add(t);
+            for (Task d : t.dependencies) {
+                Integer remaining = indegree.get(d);
+                if (remaining == null) {
+                    continue;
+                }
+                if (remaining == 1) {
+                    ready.add(d);
+                }
+                indegree.put(d, remaining - 1);
+            }
+        }
+        return result.size() == tasks.size() ? result : null;
+    }
+
+    public boolean reachable(String from, String to) {
+        Task start = tasks.get(from);
+        if (start == null) {
+            return false;
+        }
+        Set<String> visited = new HashSet<>();
+        Deque<Task> stack = new ArrayDeque<>();
+        stack.push(start);
+        while (!stack.isEmpty()) {
+            Task t = stack.pop();
+            if (t.name.equals(to)) {
+                return true;
+            }
+            if (visited.add(t.name)) {
+                for (Task d : t.dependencies) {
+                    stack.push(d);
+                }
+            }
+        }
+        return false;
+    }
+
+    public String ownerOf(String name) {
+        Task t = tasks.get(name);
+        if (t != null && t.hasOwner()) {
+            return t.owner;
+        }
+        return "nobody";
+    }
+
+    public int assign(List<String> people) {
+        if (people.isEmpty()) {
+            return 0;
+        }
+        int i = 0;
+        int assigned = 0;
+        for (Task t : tasks.values()) {
+            if (t.hasOwner()) {
+                continue;
+            }
+            t.owner = people.get(i % people.size());
+            i++;
+            assigned++;
+        }
+        return assigned;
+    }
+
+    public int depth(String name) {
+        Task t = tasks.get(name);
+        return t == null ? -1 : depth(t, new HashMap<Task, Integer>());
+    }
+
+    private int depth(Task t, Map<Task, Integer> memo) {
+        Integer known = memo.get(t);
+        if (known != null) {
+            return known;
+        }
+        memo.put(t, 0);
+        int max = 0;
+        for (Task d : t.dependencies) {
+            max = Math.max(max, 1 + depth(d, memo));
+        }
+        memo.put(t, max);
+        return max;
+    }
+}
@@ -0,0 +1,76 @@
+package org.checkerframework.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.lang.model.element.VariableElement;
+import org.checkerframework.checker.interning.InterningChecker;
+import org.checkerframework.common.basetype.BaseAnnotatedTypeFactory;
+import org.checkerframework.dataflow.analysis.Analysis;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.UnderlyingAST.CFGMethod;
+import org.checkerframework.framework.flow.CFAnalysis;
+import org.checkerframework.framework.flow.CFCFGBuilder;
+import org.checkerframework.framework.flow.CFValue;
+import org.checkerframework.javacutil.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link Analysis#performAnalysis} with a {@link CFAnalysis} on the CFGs of the methods of
+ * the micro-benchmark file of the corpus. The Interning Checker provides the type factory, because
+ * its flow analysis is a plain {@link CFAnalysis}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AnalysisBenchmark {
+
+    /** The type-checked corpus. */
+    private CheckedCorpus corpus;
+
+    /** The analysis; it is reinitialized for every CFG. */
+    private CFAnalysis analysis;
+
+    /** The CFGs to analyze. */
+    private List<ControlFlowGraph> cfgs;
+
+    @Setup
+    public void setup() {
+        corpus =
+                CheckedCorpus.check(new InterningChecker(), CheckedCorpus.MICRO_BENCHMARK_FILE);
+        BaseAnnotatedTypeFactory factory = (BaseAnnotatedTypeFactory) corpus.getTypeFactory();
+        analysis =
+                new CFAnalysis(
+                        corpus.checker,
+                        factory,
+                        Collections.<Pair<VariableElement, CFValue>>emptyList());
+        cfgs = new ArrayList<>();
+        for (CheckedCorpus.Method m : corpus.methods()) {
+            cfgs.add(
+                    CFCFGBuilder.build(
+                            corpus.root,
+                            new CFGMethod(m.tree, m.classTree),
+                            corpus.checker,
+                            factory,
+                            corpus.checker.getProcessingEnvironment()));
+        }
+    }
+
+    /** Runs the analysis on every CFG. */
+    @Benchmark
+    public void performAnalysis(Blackhole bh) {
+        for (ControlFlowGraph cfg : cfgs) {
+            analysis.performAnalysis(
+                    cfg, Collections.<Pair<VariableElement, CFValue>>emptyList());
+            bh.consume(analysis.getRegularExitStore());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.checkerframework.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.processing.ProcessingEnvironment;
+import org.checkerframework.checker.nullness.NullnessChecker;
+import org.checkerframework.dataflow.cfg.CFGBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Measures {@link CFGBuilder#build} on the methods of the micro-benchmark file of the corpus. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CFGBuilderBenchmark {
+
+    /** The type-checked corpus. */
+    private CheckedCorpus corpus;
+
+    /** The methods to build the CFGs of. */
+    private List<CheckedCorpus.Method> methods;
+
+    @Setup
+    public void setup() {
+        corpus = CheckedCorpus.check(new NullnessChecker(), CheckedCorpus.MICRO_BENCHMARK_FILE);
+        methods = corpus.methods();
+    }
+
+    /** Builds the CFG of every method. */
+    @Benchmark
+    public void build(Blackhole bh) {
+        ProcessingEnvironment env = corpus.checker.getProcessingEnvironment();
+        for (CheckedCorpus.Method m : methods) {
+            bh.consume(CFGBuilder.build(corpus.root, m.tree, m.classTree, env));
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package org.checkerframework.benchmarks;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreeScanner;
+import com.sun.tools.javac.api.JavacTool;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.framework.source.SourceChecker;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.checkerframework.framework.type.GenericAnnotatedTypeFactory;
+import org.checkerframework.javacutil.ErrorReporter;
+
+/**
+ * The fixed corpus of Java files that the benchmarks run on, type-checked by a checker.
+ *
+ * <p>The corpus is the set of Java files in the directory given by the system property {@code
+ * checkerframework.benchmarks.corpus}. If the system property {@code
+ * checkerframework.benchmarks.jdk} is set, it names the annotated JDK to prepend to the boot class
+ * path.
+ *
+ * <p>{@link #check(BaseTypeChecker, String)} runs javac up to and including type-checking, but not
+ * code generation. The javac context stays alive as long as this object, so the benchmarks can
+ * keep using the checker, its type factory, and the trees afterwards.
+ */
+final class CheckedCorpus {
+
+    /** The file of the corpus whose methods and types the micro-benchmarks use. */
+    static final String MICRO_BENCHMARK_FILE = "Inventory.java";
+
+    /** The checker that type-checked the corpus. */
+    final BaseTypeChecker checker;
+
+    /** The compilation unit that the type factory of {@link #checker} is focused on. */
+    final CompilationUnitTree root;
+
+    /** Keeps the javac context alive. */
+    @SuppressWarnings("unused")
+    private final JavacTask task;
+
+    private CheckedCorpus(BaseTypeChecker checker, CompilationUnitTree root, JavacTask task) {
+        this.checker = checker;
+        this.root = root;
+        this.task = task;
+    }
+
+    /**
+     * Type-checks the corpus with {@code checker} and focuses the type factory on one compilation
+     * unit.
+     *
+     * @param checker a new checker instance
+     * @param fileName the name of the file of the corpus to focus on
+     * @return the type-checked corpus
+     */
+    static CheckedCorpus check(BaseTypeChecker checker, String fileName) {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavacTool javac = JavacTool.create();
+        StandardJavaFileManager fileManager = javac.getStandardFileManager(diagnostics, null, null);
+        JavacTask task =
+                javac.getTask(
+                        null,
+                        fileManager,
+                        diagnostics,
+                        javacOptions(false),
+                        null,
+                        fileManager.getJavaFileObjectsFromFiles(corpusFiles()));
+        task.setProcessors(Collections.singletonList(checker));
+        List<CompilationUnitTree> units = new ArrayList<>();
+        try {
+            for (CompilationUnitTree unit : task.parse()) {
+                units.add(unit);
+            }
+            task.analyze();
+        } catch (IOException e) {
+            ErrorReporter.errorAbort("CheckedCorpus: could not read the corpus", e);
+        }
+        checkNoJavacErrors(diagnostics);
+
+        CompilationUnitTree root = null;
+        for (CompilationUnitTree unit : units) {
+            if (new File(unit.getSourceFile().toUri()).getName().equals(fileName)) {
+                root = unit;
+            }
+        }
+        if (root == null) {
+            ErrorReporter.errorAbort("CheckedCorpus: " + fileName + " is not part of the corpus");
+        }
+        CheckedCorpus result = new CheckedCorpus(checker, root, task);
+        result.getTypeFactory().setRoot(root);
+        // Compute the types of all variables once, which runs the factory's own flow analysis of
+        // the classes of the compilation unit before any benchmark method is invoked.
+        result.variableTypes();
+        return result;
+    }
+
+    /**
+     * Type-checks the whole corpus with {@code checker}, like a command-line invocation of javac
+     * with {@code -proc:only}.
+     *
+     * @param checker a new checker instance
+     * @return the number of diagnostics that were issued
+     */
+    static int run(SourceChecker checker) {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavacTool javac = JavacTool.create();
+        StandardJavaFileManager fileManager = javac.getStandardFileManager(diagnostics, null, null);
+        JavacTask task =
+                javac.getTask(
+                        null,
+                        fileManager,
+                        diagnostics,
+                        javacOptions(true),
+                        null,
+                        fileManager.getJavaFileObjectsFromFiles(corpusFiles()));
+        task.setProcessors(Collections.singletonList(checker));
+        task.call();
+        checkNoJavacErrors(diagnostics);
+        return diagnostics.getDiagnostics().size();
+    }
+
+    /** @return the type factory of {@link #checker} */
+    GenericAnnotatedTypeFactory<?, ?, ?, ?> getTypeFactory() {
+        return checker.getTypeFactory();
+    }
+
+    /** A method with a body, together with the class that declares it. */
+    static final class Method {
+        /** The class that declares {@link #tree}. */
+        final ClassTree classTree;
+        /** The method. */
+        final MethodTree tree;
+
+        Method(ClassTree classTree, MethodTree tree) {
+            this.classTree = classTree;
+            this.tree = tree;
+        }
+    }
+
+    /** @return the methods with a body in {@link #root}, in source order */
+    List<Method> methods() {
+        final List<Method> result = new ArrayList<>();
+        final Deque<ClassTree> classes = new ArrayDeque<>();
+        new TreeScanner<Void, Void>() {
+            @Override
+            public Void visitClass(ClassTree tree, Void p) {
+                classes.push(tree);
+                try {
+                    return super.visitClass(tree, p);
+                } finally {
+                    classes.pop();
+                }
+            }
+
+            @Override
+            public Void visitMethod(MethodTree tree, Void p) {
+                if (tree.getBody() != null) {
+                    result.add(new Method(classes.peek(), tree));
+                }
+                return super.visitMethod(tree, p);
+            }
+        }.scan(root, null);
+        return result;
+    }
+
+    /**
+     * @return the annotated types of the fields, parameters, and local variables declared in {@link
+     *     #root}, in source order
+     */
+    List<AnnotatedTypeMirror> variableTypes() {
+        final List<AnnotatedTypeMirror> result = new ArrayList<>();
+        final GenericAnnotatedTypeFactory<?, ?, ?, ?> factory = getTypeFactory();
+        new TreeScanner<Void, Void>() {
+            @Override
+            public Void visitVariable(VariableTree tree, Void p) {
+                result.add(factory.getAnnotatedType(tree));
+                return super.visitVariable(tree, p);
+            }
+        }.scan(root, null);
+        return result;
+    }
+
+    /**
+     * Returns the javac options to type-check the corpus with.
+     *
+     * @param procOnly whether to stop after annotation processing
+     * @return the javac options
+     */
+    private static List<String> javacOptions(boolean procOnly) {
+        List<String> options = new ArrayList<>();
+        String jdk = System.getProperty("checkerframework.benchmarks.jdk");
+        if (jdk != null && new File(jdk).exists()) {
+            options.add("-Xbootclasspath/p:" + jdk);
+        }
+        options.addAll(
+                Arrays.asList(
+                        "-classpath",
+                        System.getProperty("java.class.path"),
+                        "-source",
+                        "8",
+                        "-target",
+                        "8",
+                        "-Xlint:-options"));
+        if (procOnly) {
+            options.add("-proc:only");
+        }
+        return options;
+    }
+
+    /** @return the Java files of the corpus, sorted by name */
+    private static List<File> corpusFiles() {
+        String dir = System.getProperty("checkerframework.benchmarks.corpus");
+        if (dir == null) {
+            ErrorReporter.errorAbort(
+                    "CheckedCorpus: set the system property checkerframework.benchmarks.corpus");
+        }
+        File[] files = new File(dir).listFiles();
+        if (files == null) {
+            ErrorReporter.errorAbort("CheckedCorpus: " + dir + " is not a directory");
+        }
+        List<File> result = new ArrayList<>();
+        for (File f : files) {
+            if (f.getName().endsWith(".java")) {
+                result.add(f);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Aborts if javac itself reported an error, which means that the corpus or the class path is
+     * broken. Errors reported by the checker are fine: they are part of the workload.
+     */
+    private static void checkNoJavacErrors(DiagnosticCollector<JavaFileObject> diagnostics) {
+        for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+            if (d.getKind() == Diagnostic.Kind.ERROR
+                    && !"compiler.err.proc.messager".equals(d.getCode())) {
+                ErrorReporter.errorAbort("CheckedCorpus: javac error: " + d);
+            }
+        }
+    }
+}
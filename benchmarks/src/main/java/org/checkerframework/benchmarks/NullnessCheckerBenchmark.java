@@ -0,0 +1,28 @@
+package org.checkerframework.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.checkerframework.checker.nullness.NullnessChecker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a whole run of the Nullness Checker on the corpus: javac parses, enters, and attributes
+ * the corpus, and the checker initializes (including parsing its stub files) and type-checks every
+ * class.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class NullnessCheckerBenchmark {
+
+    /** Type-checks the corpus with a new Nullness Checker. */
+    @Benchmark
+    public int run() {
+        return CheckedCorpus.run(new NullnessChecker());
+    }
+}
@@ -0,0 +1,71 @@
+package org.checkerframework.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import javax.lang.model.element.AnnotationMirror;
+import org.checkerframework.checker.nullness.NullnessChecker;
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link QualifierHierarchy#leastUpperBound} and {@link
+ * QualifierHierarchy#greatestLowerBound} of the Nullness Checker on all pairs of its qualifiers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QualifierHierarchyBenchmark {
+
+    /** The type-checked corpus. */
+    private CheckedCorpus corpus;
+
+    /** The qualifier hierarchy of the Nullness Checker. */
+    private QualifierHierarchy qualifierHierarchy;
+
+    /** The qualifiers of {@link #qualifierHierarchy}. */
+    private AnnotationMirror[] qualifiers;
+
+    @Setup
+    public void setup() {
+        corpus = CheckedCorpus.check(new NullnessChecker(), CheckedCorpus.MICRO_BENCHMARK_FILE);
+        qualifierHierarchy = corpus.getTypeFactory().getQualifierHierarchy();
+        qualifiers = qualifierHierarchy.getTypeQualifiers().toArray(new AnnotationMirror[0]);
+    }
+
+    /** Computes the least upper bound of every pair of qualifiers in the same hierarchy. */
+    @Benchmark
+    public void leastUpperBound(Blackhole bh) {
+        for (AnnotationMirror a1 : qualifiers) {
+            for (AnnotationMirror a2 : qualifiers) {
+                if (sameHierarchy(a1, a2)) {
+                    bh.consume(qualifierHierarchy.leastUpperBound(a1, a2));
+                }
+            }
+        }
+    }
+
+    /** Computes the greatest lower bound of every pair of qualifiers in the same hierarchy. */
+    @Benchmark
+    public void greatestLowerBound(Blackhole bh) {
+        for (AnnotationMirror a1 : qualifiers) {
+            for (AnnotationMirror a2 : qualifiers) {
+                if (sameHierarchy(a1, a2)) {
+                    bh.consume(qualifierHierarchy.greatestLowerBound(a1, a2));
+                }
+            }
+        }
+    }
+
+    /** Returns true if {@code a1} and {@code a2} belong to the same qualifier hierarchy. */
+    private boolean sameHierarchy(AnnotationMirror a1, AnnotationMirror a2) {
+        return AnnotationUtils.areSame(
+                qualifierHierarchy.getTopAnnotation(a1), qualifierHierarchy.getTopAnnotation(a2));
+    }
+}
@@ -0,0 +1,64 @@
+package org.checkerframework.benchmarks;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import org.checkerframework.checker.interning.InterningChecker;
+import org.checkerframework.framework.stub.StubParser;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link StubParser#parse} of the {@code jdk.astub} file of the Interning Checker.
+ *
+ * <p>Within one JVM, the StubUnitCache caches the AST of the stub file after the first invocation.
+ * So, this benchmark mostly measures the resolution of the stub declarations against the JDK.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StubParserBenchmark {
+
+    /** The type-checked corpus. */
+    private CheckedCorpus corpus;
+
+    /** The stub file. */
+    private URL jdkAstub;
+
+    @Setup
+    public void setup() {
+        corpus =
+                CheckedCorpus.check(new InterningChecker(), CheckedCorpus.MICRO_BENCHMARK_FILE);
+        jdkAstub = InterningChecker.class.getResource("jdk.astub");
+    }
+
+    /** Parses the stub file and resolves its declarations. */
+    @Benchmark
+    public void parse(Blackhole bh) throws Exception {
+        Map<Element, AnnotatedTypeMirror> atypes = new HashMap<>();
+        Map<String, Set<AnnotationMirror>> declAnnos = new HashMap<>();
+        try (InputStream in = jdkAstub.openStream()) {
+            StubParser.parse(
+                    jdkAstub.toString(),
+                    in,
+                    corpus.getTypeFactory(),
+                    corpus.checker.getProcessingEnvironment(),
+                    atypes,
+                    declAnnos);
+        }
+        bh.consume(atypes);
+        bh.consume(declAnnos);
+    }
+}
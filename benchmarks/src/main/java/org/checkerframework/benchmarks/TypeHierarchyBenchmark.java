@@ -0,0 +1,71 @@
+package org.checkerframework.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.lang.model.util.Types;
+import org.checkerframework.checker.nullness.NullnessChecker;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.checkerframework.framework.type.DefaultTypeHierarchy;
+import org.checkerframework.framework.type.TypeHierarchy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link DefaultTypeHierarchy#isSubtype} of the Nullness Checker. The pairs of types are
+ * the types of the variables declared in the micro-benchmark file of the corpus whose underlying
+ * Java types are subtypes of one another.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TypeHierarchyBenchmark {
+
+    /** The type-checked corpus. */
+    private CheckedCorpus corpus;
+
+    /** The type hierarchy of the Nullness Checker. */
+    private TypeHierarchy typeHierarchy;
+
+    /** The candidate subtypes; {@code subtypes[i]} is compared to {@code supertypes[i]}. */
+    private AnnotatedTypeMirror[] subtypes;
+
+    /** The candidate supertypes. */
+    private AnnotatedTypeMirror[] supertypes;
+
+    @Setup
+    public void setup() {
+        corpus = CheckedCorpus.check(new NullnessChecker(), CheckedCorpus.MICRO_BENCHMARK_FILE);
+        typeHierarchy = corpus.getTypeFactory().getTypeHierarchy();
+        Types types = corpus.checker.getProcessingEnvironment().getTypeUtils();
+        List<AnnotatedTypeMirror> variableTypes = corpus.variableTypes();
+        List<AnnotatedTypeMirror> subs = new ArrayList<>();
+        List<AnnotatedTypeMirror> sups = new ArrayList<>();
+        for (AnnotatedTypeMirror sub : variableTypes) {
+            for (AnnotatedTypeMirror sup : variableTypes) {
+                if (types.isSubtype(
+                        types.erasure(sub.getUnderlyingType()),
+                        types.erasure(sup.getUnderlyingType()))) {
+                    subs.add(sub);
+                    sups.add(sup);
+                }
+            }
+        }
+        subtypes = subs.toArray(new AnnotatedTypeMirror[subs.size()]);
+        supertypes = sups.toArray(new AnnotatedTypeMirror[sups.size()]);
+    }
+
+    /** Tests all pairs of types for subtyping. */
+    @Benchmark
+    public void isSubtype(Blackhole bh) {
+        for (int i = 0; i < subtypes.length; i++) {
+            bh.consume(typeHierarchy.isSubtype(subtypes[i], supertypes[i]));
+        }
+    }
+}
@@ -22,6 +22,9 @@
 #     $JSR308/plume-lib/java/plume.jar -AprintErrorStack \
 #     `find $JSR308/plume-lib/java/src/plume/ -name "*.java"`
 
+# To run all iterations in one JVM, pass -Ainfer -AinferFixpoint to
+# checker/bin/javac instead of running this script.
+
 # In case of using this script for Android projects, the classpath must include
 # paths to: android.jar, gen folder, all libs used, source code folder.
 # The Android project must be built with "ant debug" before running this script.
@@ -0,0 +1,122 @@
+/*
+ * @test
+ * @summary Test that the parsed stub files are shared between compilations in the same JVM, and
+ *   that a stub file is parsed again after its cache entry has been reclaimed.
+ *
+ * @compile Main.java
+ * @run main Main
+ */
+
+import java.io.File;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.checkerframework.checker.nullness.NullnessChecker;
+
+public class Main {
+
+    public static void main(String[] args) throws Exception {
+        final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        final StandardJavaFileManager fileManager = javac.getStandardFileManager(null, null, null);
+        File stubFile = new File(System.getProperty("test.src", "."), "trim.astub");
+        String key = digest(Files.readAllBytes(stubFile.toPath()));
+
+        check(javac, fileManager, stubFile);
+        Object first = cachedStubUnit(key).get();
+        if (first == null) {
+            throw new AssertionError("the stub file was not cached");
+        }
+
+        check(javac, fileManager, stubFile);
+        if (cachedStubUnit(key).get() != first) {
+            throw new AssertionError("the cached stub file was not reused");
+        }
+
+        // Simulate the garbage collector reclaiming the entry.
+        cachedStubUnit(key).clear();
+        check(javac, fileManager, stubFile);
+        Object reparsed = cachedStubUnit(key).get();
+        if (reparsed == null || reparsed == first) {
+            throw new AssertionError("the reclaimed stub file was not parsed again");
+        }
+    }
+
+    /**
+     * Type-checks Test.java with the given stub file, and fails unless the stub file's annotation
+     * causes exactly one error.
+     */
+    private static void check(
+            JavaCompiler javac, StandardJavaFileManager fileManager, File stubFile) {
+        File testfile = new File(System.getProperty("test.src", "."), "Test.java");
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavaCompiler.CompilationTask task =
+                javac.getTask(
+                        null,
+                        fileManager,
+                        diagnostics,
+                        Arrays.asList(
+                                "-classpath",
+                                "../../dist/checker.jar",
+                                "-proc:only",
+                                "-AprintErrorStack",
+                                "-AstubWarnIfNotFound",
+                                "-Astubs=" + stubFile.getPath(),
+                                "-source",
+                                "8",
+                                "-target",
+                                "8",
+                                "-Xlint:-options"),
+                        null,
+                        fileManager.getJavaFileObjects(testfile));
+        task.setProcessors(Arrays.asList(new NullnessChecker()));
+        task.call();
+
+        int errors = 0;
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                if (!diagnostic.getMessage(null).contains("dereference.of.nullable")) {
+                    throw new AssertionError("unexpected error: " + diagnostic);
+                }
+                errors++;
+            }
+        }
+        if (errors != 1) {
+            throw new AssertionError("expected 1 error, found " + errors);
+        }
+    }
+
+    /** Returns the entry of the process-wide stub file cache for the given key. */
+    @SuppressWarnings("unchecked")
+    private static SoftReference<Object> cachedStubUnit(String key) throws Exception {
+        Class<?> cacheClass = Class.forName("org.checkerframework.framework.stub.StubUnitCache");
+        Field cacheField = cacheClass.getDeclaredField("cache");
+        cacheField.setAccessible(true);
+        Map<String, SoftReference<Object>> cache =
+                (Map<String, SoftReference<Object>>) cacheField.get(null);
+        synchronized (cache) {
+            SoftReference<Object> ref = cache.get(key);
+            if (ref == null) {
+                throw new AssertionError("no cache entry for the stub file");
+            }
+            return ref;
+        }
+    }
+
+    /** Returns the hex-encoded SHA-256 digest that the stub file cache uses as key. */
+    private static String digest(byte[] content) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
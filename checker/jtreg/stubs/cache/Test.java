@@ -0,0 +1,5 @@
+class Test {
+    int length(String s) {
+        return s.trim().length();
+    }
+}
@@ -5,15 +5,19 @@ import com.sun.source.tree.LambdaExpressionTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.VariableTree;
+import java.util.AbstractQueue;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.Set;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.Element;
@@ -34,6 +38,7 @@ import org.checkerframework.dataflow.cfg.node.AssignmentNode;
 import org.checkerframework.dataflow.cfg.node.LocalVariableNode;
 import org.checkerframework.dataflow.cfg.node.Node;
 import org.checkerframework.dataflow.cfg.node.ReturnNode;
+import org.checkerframework.dataflow.util.DenseIdMap;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.Pair;
 
@@ -66,16 +71,16 @@ public class Analysis<
     protected final Types types;
 
     /** Then stores before every basic block (assumed to be 'no information' if not present). */
-    protected final IdentityHashMap<Block, S> thenStores;
+    protected final DenseIdMap<Block, S> thenStores;
 
     /** Else stores before every basic block (assumed to be 'no information' if not present). */
-    protected final IdentityHashMap<Block, S> elseStores;
+    protected final DenseIdMap<Block, S> elseStores;
 
     /**
      * Number of times every block has been analyzed since the last time widening was applied. Null,
      * if maxCountBeforeWidening is -1 which implies widening isn't used for this analysis.
      */
-    protected final IdentityHashMap<Block, Integer> blockCount;
+    protected final DenseIdMap<Block, Integer> blockCount;
 
     /**
      * Number of times a block can be analyzed before widening. -1 implies that widening shouldn't
@@ -95,7 +100,7 @@ public class Analysis<
     protected final Worklist worklist;
 
     /** Abstract values of nodes. */
-    protected final IdentityHashMap<Node, A> nodeValues;
+    protected final DenseIdMap<Node, A> nodeValues;
 
     /** Map from (effectively final) local variable elements to their abstract value. */
     public final HashMap<Element, A> finalLocalValues;
@@ -152,13 +157,14 @@ public class Analysis<
         this.types = env.getTypeUtils();
         this.transferFunction = transfer;
         this.maxCountBeforeWidening = maxCountBeforeWidening;
-        this.thenStores = new IdentityHashMap<>();
-        this.elseStores = new IdentityHashMap<>();
-        this.blockCount = maxCountBeforeWidening == -1 ? null : new IdentityHashMap<>();
+        this.thenStores = DenseIdMap.forBlocks();
+        this.elseStores = DenseIdMap.forBlocks();
+        this.blockCount =
+                maxCountBeforeWidening == -1 ? null : DenseIdMap.<Integer>forBlocks();
         this.inputs = new IdentityHashMap<>();
         this.storesAtReturnStatements = new IdentityHashMap<>();
         this.worklist = new Worklist();
-        this.nodeValues = new IdentityHashMap<>();
+        this.nodeValues = DenseIdMap.forNodes();
         this.finalLocalValues = new HashMap<>();
     }
 
@@ -429,14 +435,14 @@ public class Analysis<
 
     /** Initialize the analysis with a new control flow graph. */
     protected void init(ControlFlowGraph cfg) {
-        thenStores.clear();
-        elseStores.clear();
+        thenStores.reset(cfg);
+        elseStores.reset(cfg);
         if (blockCount != null) {
-            blockCount.clear();
+            blockCount.reset(cfg);
         }
         inputs.clear();
         storesAtReturnStatements.clear();
-        nodeValues.clear();
+        nodeValues.reset(cfg);
         finalLocalValues.clear();
 
         this.cfg = cfg;
@@ -478,10 +484,7 @@ public class Analysis<
      * Add a basic block to the worklist. If {@code b} is already present, the method does nothing.
      */
     protected void addToWorklist(Block b) {
-        // TODO: use a more efficient way to check if b is already present
-        if (!worklist.contains(b)) {
-            worklist.add(b);
-        }
+        worklist.add(b);
     }
 
     /**
@@ -581,59 +584,221 @@ public class Analysis<
     }
 
     /**
-     * A worklist is a priority queue of blocks in which the order is given by depth-first ordering
-     * to place non-loop predecessors ahead of successors.
+     * A worklist of blocks, ordered by reverse postorder to place non-loop predecessors ahead of
+     * successors.
+     *
+     * <p>The worklist is a bit set of the {@linkplain Block#getDenseId() dense IDs} of the
+     * blocks, which are their positions in reverse postorder. {@link #poll()} returns the block
+     * with the smallest id. So, after a loop back edge re-enqueues the loop header, the blocks of
+     * the loop are processed again before any block after the loop, and inner loops stabilize
+     * before the loops that contain them.
      */
     protected static class Worklist {
 
-        /** Map all blocks in the CFG to their depth-first order. */
+        /** The CFG whose blocks are on the worklist. */
+        protected @Nullable ControlFlowGraph cfg;
+
+        /**
+         * Map the blocks that are not reachable in {@link #cfg}, and thus have no dense ID, to
+         * their id. These ids follow the dense IDs of the reachable blocks.
+         */
         protected final IdentityHashMap<Block, Integer> depthFirstOrder;
 
-        /** Comparator to allow priority queue to order blocks by their depth-first order. */
+        /**
+         * The blocks in {@link #depthFirstOrder}, indexed by their id minus the number of blocks.
+         */
+        protected final List<Block> blocks;
+
+        /** The ids of the blocks in the worklist. */
+        protected final BitSet queuedIds;
+
+        /**
+         * Comparator to allow priority queue to order blocks by their depth-first order.
+         *
+         * @deprecated The worklist no longer uses a priority queue. This comparator orders blocks
+         *     by their ids in the worklist.
+         */
+        @Deprecated
         public class DFOComparator implements Comparator<Block> {
             @Override
             public int compare(Block b1, Block b2) {
-                return depthFirstOrder.get(b1) - depthFirstOrder.get(b2);
+                return idOf(b1) - idOf(b2);
             }
         }
 
-        /** The backing priority queue. */
-        protected final PriorityQueue<Block> queue;
+        /**
+         * The blocks in the worklist, as a queue ordered by id. It is a view of {@link
+         * #queuedIds}, so modifying it modifies the worklist.
+         *
+         * @deprecated Use the methods of the worklist instead, or {@link #queuedIds}. This field
+         *     used to be a {@link java.util.PriorityQueue}.
+         */
+        @Deprecated protected final Queue<Block> queue;
 
         public Worklist() {
             depthFirstOrder = new IdentityHashMap<>();
-            queue = new PriorityQueue<>(11, new DFOComparator());
+            blocks = new ArrayList<>();
+            queuedIds = new BitSet();
+            queue = new QueueView();
         }
 
         public void process(ControlFlowGraph cfg) {
+            this.cfg = cfg;
             depthFirstOrder.clear();
-            int count = 1;
-            for (Block b : cfg.getDepthFirstOrderedBlocks()) {
-                depthFirstOrder.put(b, count++);
+            blocks.clear();
+            queuedIds.clear();
+        }
+
+        /**
+         * Returns the id of {@code block}: its dense ID if it is reachable in the CFG, and
+         * otherwise the next unused id after the dense IDs if it does not have one yet.
+         */
+        private int idOf(Block block) {
+            int id = block.getDenseId();
+            int numberOfBlocks = cfg.getNumberOfBlocks();
+            if (id >= 0 && id < numberOfBlocks && cfg.getBlock(id) == block) {
+                return id;
             }
+            Integer otherId = depthFirstOrder.get(block);
+            if (otherId == null) {
+                // Blocks that are not reachable from the entry block come last.
+                otherId = numberOfBlocks + blocks.size();
+                depthFirstOrder.put(block, otherId);
+                blocks.add(block);
+            }
+            return otherId;
+        }
 
-            queue.clear();
+        /** Returns the block whose id is {@code id}. */
+        private Block blockOf(int id) {
+            int numberOfBlocks = cfg.getNumberOfBlocks();
+            return id < numberOfBlocks ? cfg.getBlock(id) : blocks.get(id - numberOfBlocks);
         }
 
         public boolean isEmpty() {
-            return queue.isEmpty();
+            return queuedIds.isEmpty();
         }
 
         public boolean contains(Block block) {
-            return queue.contains(block);
+            int id = block.getDenseId();
+            if (id >= 0 && id < cfg.getNumberOfBlocks() && cfg.getBlock(id) == block) {
+                return queuedIds.get(id);
+            }
+            Integer otherId = depthFirstOrder.get(block);
+            return otherId != null && queuedIds.get(otherId);
         }
 
         public void add(Block block) {
-            queue.add(block);
+            queuedIds.set(idOf(block));
         }
 
-        public Block poll() {
-            return queue.poll();
+        public @Nullable Block poll() {
+            int id = queuedIds.nextSetBit(0);
+            if (id < 0) {
+                return null;
+            }
+            queuedIds.clear(id);
+            return blockOf(id);
         }
 
         @Override
         public String toString() {
-            return "Worklist(" + queue + ")";
+            List<Block> queued = new ArrayList<>();
+            for (int id = queuedIds.nextSetBit(0); id >= 0; id = queuedIds.nextSetBit(id + 1)) {
+                queued.add(blockOf(id));
+            }
+            return "Worklist(" + queued + ")";
+        }
+
+        /**
+         * The queue {@link #queue}, which reads and writes {@link #queuedIds}. All other methods
+         * of {@link java.util.Collection} go through {@link #iterator()}.
+         */
+        private class QueueView extends AbstractQueue<Block> {
+
+            @Override
+            public boolean offer(Block block) {
+                if (block == null) {
+                    throw new NullPointerException();
+                }
+                queuedIds.set(idOf(block));
+                return true;
+            }
+
+            @Override
+            public @Nullable Block poll() {
+                return Worklist.this.poll();
+            }
+
+            @Override
+            public @Nullable Block peek() {
+                int id = queuedIds.nextSetBit(0);
+                return id < 0 ? null : blockOf(id);
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return queuedIds.isEmpty();
+            }
+
+            @Override
+            public int size() {
+                return queuedIds.cardinality();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Block && Worklist.this.contains((Block) o);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                if (!contains(o)) {
+                    return false;
+                }
+                queuedIds.clear(idOf((Block) o));
+                return true;
+            }
+
+            @Override
+            public void clear() {
+                queuedIds.clear();
+            }
+
+            @Override
+            public Iterator<Block> iterator() {
+                return new Iterator<Block>() {
+                    /** The id of the next block, or -1. */
+                    private int next = queuedIds.nextSetBit(0);
+
+                    /** The id of the block that next() returned last, or -1. */
+                    private int last = -1;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next >= 0;
+                    }
+
+                    @Override
+                    public Block next() {
+                        if (next < 0) {
+                            throw new NoSuchElementException();
+                        }
+                        last = next;
+                        next = queuedIds.nextSetBit(next + 1);
+                        return blockOf(last);
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last < 0) {
+                            throw new IllegalStateException();
+                        }
+                        queuedIds.clear(last);
+                        last = -1;
+                    }
+                };
+            }
         }
     }
 
@@ -705,14 +870,26 @@ public class Analysis<
         return nodeValues.get(n);
     }
 
-    /** Return all current node values. */
+    /**
+     * Return all current node values.
+     *
+     * @return a copy of the current node values; {@link #getNodeValueMap()} avoids the copy
+     */
     public IdentityHashMap<Node, A> getNodeValues() {
+        return new IdentityHashMap<>(nodeValues);
+    }
+
+    /** Return all current node values, as a map that changes with the analysis. */
+    public Map<Node, A> getNodeValueMap() {
         return nodeValues;
     }
 
     /** Set all current node values to the given map. */
-    /*package-private*/ void setNodeValues(IdentityHashMap<Node, A> in) {
+    /*package-private*/ void setNodeValues(Map<Node, A> in) {
         assert !isRunning;
+        if (in == nodeValues) {
+            return;
+        }
         nodeValues.clear();
         nodeValues.putAll(in);
     }
@@ -42,7 +42,7 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
     /**
      * Caches of the analysis results for each input for the block of the node and each node.
      *
-     * @see #runAnalysisFor(Node, boolean, TransferInput, IdentityHashMap, Map)
+     * @see #runAnalysisFor(Node, boolean, TransferInput, Map, Map)
      */
     protected final Map<TransferInput<A, S>, IdentityHashMap<Node, TransferResult<A, S>>>
             analysisCaches;
@@ -258,6 +258,20 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
             TransferInput<A, S> transferInput,
             IdentityHashMap<Node, A> nodeValues,
             Map<TransferInput<A, S>, IdentityHashMap<Node, TransferResult<A, S>>> analysisCaches) {
+        return runAnalysisFor(
+                node, before, transferInput, (Map<Node, A>) nodeValues, analysisCaches);
+    }
+
+    /**
+     * Like {@link #runAnalysisFor(Node, boolean, TransferInput, IdentityHashMap, Map)}, but
+     * accepts any map of node values, such as {@link Analysis#getNodeValueMap()}.
+     */
+    public static <A extends AbstractValue<A>, S extends Store<S>> S runAnalysisFor(
+            Node node,
+            boolean before,
+            TransferInput<A, S> transferInput,
+            Map<Node, A> nodeValues,
+            Map<TransferInput<A, S>, IdentityHashMap<Node, TransferResult<A, S>>> analysisCaches) {
         assert node != null;
         Block block = node.getBlock();
         assert transferInput != null;
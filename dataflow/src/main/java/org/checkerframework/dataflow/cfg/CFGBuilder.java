@@ -900,6 +900,7 @@ public class CFGBuilder {
                     }
                 }
             }
+            cfg.assignDenseIds();
             return cfg;
         }
 
@@ -11,14 +11,17 @@ import java.util.Collections;
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.dataflow.cfg.block.Block;
 import org.checkerframework.dataflow.cfg.block.Block.BlockType;
+import org.checkerframework.dataflow.cfg.block.BlockImpl;
 import org.checkerframework.dataflow.cfg.block.ConditionalBlock;
 import org.checkerframework.dataflow.cfg.block.ExceptionBlock;
+import org.checkerframework.dataflow.cfg.block.RegularBlock;
 import org.checkerframework.dataflow.cfg.block.SingleSuccessorBlock;
 import org.checkerframework.dataflow.cfg.block.SpecialBlock;
 import org.checkerframework.dataflow.cfg.block.SpecialBlockImpl;
@@ -73,6 +76,16 @@ public class ControlFlowGraph {
      */
     protected final List<LambdaExpressionTree> declaredLambdas;
 
+    /**
+     * The blocks that are reachable from the entry block, indexed by their dense ID. The dense IDs
+     * follow reverse postorder, see {@link #getReversePostOrderBlocks()}. Empty until {@link
+     * CFGBuilder} has finished building this graph.
+     */
+    protected Block[] blocks = new Block[0];
+
+    /** The nodes of the blocks in {@link #blocks}, indexed by their dense ID. */
+    protected Node[] nodes = new Node[0];
+
     public ControlFlowGraph(
             SpecialBlock entryBlock,
             SpecialBlockImpl regularExitBlock,
@@ -97,6 +110,54 @@ public class ControlFlowGraph {
         this.declaredLambdas = declaredLambdas;
     }
 
+    /**
+     * Assign dense IDs to the blocks that are reachable from the entry block and to their nodes.
+     * Called by {@link CFGBuilder} once the structure of this graph is final.
+     */
+    /*package-private*/ void assignDenseIds() {
+        List<Block> rpo = getReversePostOrderBlocks();
+        this.blocks = rpo.toArray(new Block[rpo.size()]);
+        List<Node> allNodes = new ArrayList<>();
+        for (int i = 0; i < blocks.length; i++) {
+            ((BlockImpl) blocks[i]).setDenseId(i);
+            if (blocks[i].getType() == BlockType.REGULAR_BLOCK) {
+                allNodes.addAll(((RegularBlock) blocks[i]).getContents());
+            } else if (blocks[i].getType() == BlockType.EXCEPTION_BLOCK) {
+                allNodes.add(((ExceptionBlock) blocks[i]).getNode());
+            }
+        }
+        this.nodes = allNodes.toArray(new Node[allNodes.size()]);
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i].setDenseId(i);
+        }
+    }
+
+    /** @return the number of blocks that are reachable from the entry block */
+    public int getNumberOfBlocks() {
+        return blocks.length;
+    }
+
+    /**
+     * @return the reachable block whose dense ID is {@code denseId}
+     * @see Block#getDenseId()
+     */
+    public Block getBlock(int denseId) {
+        return blocks[denseId];
+    }
+
+    /** @return the number of nodes in the blocks that are reachable from the entry block */
+    public int getNumberOfNodes() {
+        return nodes.length;
+    }
+
+    /**
+     * @return the node whose dense ID is {@code denseId}
+     * @see Node#getDenseId()
+     */
+    public Node getNode(int denseId) {
+        return nodes[denseId];
+    }
+
     /** @return the set of {@link Node}s to which the {@link Tree} {@code t} corresponds. */
     public Set<Node> getNodesCorrespondingToTree(Tree t) {
         if (convertedTreeLookup.containsKey(t)) {
@@ -201,6 +262,39 @@ public class ControlFlowGraph {
         return dfsOrderResult;
     }
 
+    /**
+     * @return the blocks of this control flow graph that are reachable from the entry block, in
+     *     reverse postorder of a depth-first traversal. Each block appears exactly once. Every
+     *     block comes before its successors, except for the targets of loop back edges.
+     */
+    public List<Block> getReversePostOrderBlocks() {
+        List<Block> postOrder = new ArrayList<>();
+        Set<Block> visited = new HashSet<>();
+        // The blocks on the current depth-first path, and the successors that remain to be visited
+        // for each of them.
+        Deque<Block> path = new ArrayDeque<>();
+        Deque<Iterator<Block>> pendingSuccessors = new ArrayDeque<>();
+        visited.add(entryBlock);
+        path.push(entryBlock);
+        pendingSuccessors.push(getSuccessors(entryBlock).iterator());
+        while (!path.isEmpty()) {
+            Iterator<Block> succs = pendingSuccessors.peek();
+            if (succs.hasNext()) {
+                Block succ = succs.next();
+                if (visited.add(succ)) {
+                    path.push(succ);
+                    pendingSuccessors.push(getSuccessors(succ).iterator());
+                }
+            } else {
+                postOrder.add(path.pop());
+                pendingSuccessors.pop();
+            }
+        }
+
+        Collections.reverse(postOrder);
+        return postOrder;
+    }
+
     /**
      * Get a list of all successor Blocks for cur
      *
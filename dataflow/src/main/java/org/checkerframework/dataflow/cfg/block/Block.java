@@ -24,4 +24,16 @@ public interface Block {
 
     /** @return the unique identifier of this block */
     long getId();
+
+    /**
+     * Returns the dense identifier of this block. The default implementation returns -1, so blocks
+     * that do not extend {@link BlockImpl} are stored in hash maps instead of arrays.
+     *
+     * @return the dense identifier of this block, i.e., its index in {@link
+     *     org.checkerframework.dataflow.cfg.ControlFlowGraph#getBlock(int)}, or -1 if the block is
+     *     not reachable in its control flow graph
+     */
+    default int getDenseId() {
+        return -1;
+    }
 }
@@ -3,6 +3,7 @@ package org.checkerframework.dataflow.cfg.block;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
 
 /** Base class of the {@link Block} implementation hierarchy. */
 public abstract class BlockImpl implements Block {
@@ -13,6 +14,9 @@ public abstract class BlockImpl implements Block {
     /** The last ID that has already been used. */
     protected static long lastId = 0;
 
+    /** The dense ID of this block in its control flow graph, or -1 if it has none. */
+    protected int denseId = -1;
+
     /** The type of this basic block. */
     protected final BlockType type;
 
@@ -34,6 +38,16 @@ public abstract class BlockImpl implements Block {
         return id;
     }
 
+    @Override
+    public int getDenseId() {
+        return denseId;
+    }
+
+    /** Set the dense ID of this block; only used by {@link ControlFlowGraph}. */
+    public void setDenseId(int denseId) {
+        this.denseId = denseId;
+    }
+
     @Override
     public BlockType getType() {
         return type;
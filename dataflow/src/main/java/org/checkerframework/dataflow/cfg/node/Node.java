@@ -6,6 +6,7 @@ import java.util.Collection;
 import javax.lang.model.type.TypeMirror;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.dataflow.cfg.CFGBuilder;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
 import org.checkerframework.dataflow.cfg.block.Block;
 
 /**
@@ -36,6 +37,9 @@ public abstract class Node {
     /** The basic block this node belongs to (see invariant about this field above). */
     protected @Nullable Block block;
 
+    /** The dense ID of this node in its control flow graph, or -1 if it has none. */
+    protected int denseId = -1;
+
     /** Is this node an l-value? */
     protected boolean lvalue = false;
 
@@ -72,6 +76,20 @@ public abstract class Node {
         block = b;
     }
 
+    /**
+     * @return the dense identifier of this node, i.e., its index in {@link
+     *     ControlFlowGraph#getNode(int)}, or -1 if the node does not belong to a reachable block of
+     *     a control flow graph
+     */
+    public int getDenseId() {
+        return denseId;
+    }
+
+    /** Set the dense ID of this node; only used by {@link ControlFlowGraph}. */
+    public void setDenseId(int denseId) {
+        this.denseId = denseId;
+    }
+
     /**
      * Returns the {@link Tree} in the abstract syntax tree, or {@code null} if no corresponding
      * tree exists. For instance, this is the case for an {@link ImplicitThisLiteralNode}.
@@ -0,0 +1,300 @@
+package org.checkerframework.dataflow.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.block.Block;
+import org.checkerframework.dataflow.cfg.node.Node;
+
+/**
+ * A map whose keys are the {@link Block}s or the {@link Node}s of a control flow graph. The values
+ * for the keys of the current graph (see {@link #reset(ControlFlowGraph)}) are stored in an array
+ * that is indexed by the dense IDs of the keys, see {@link Block#getDenseId()} and {@link
+ * Node#getDenseId()}. All other keys, for example parameter nodes that do not belong to a block or
+ * nodes of other graphs, are stored in an {@link IdentityHashMap}.
+ *
+ * <p>Like {@link IdentityHashMap}, this map compares keys by reference equality.
+ *
+ * @param <K> the type of keys, either {@link Block} or {@link Node}
+ * @param <V> the type of values
+ */
+public abstract class DenseIdMap<K, V> extends AbstractMap<K, V> {
+
+    /** Represents a {@code null} value in {@link #values}, where {@code null} means "absent". */
+    private static final Object NULL_VALUE = new Object();
+
+    /** The control flow graph whose keys are stored in {@link #values}, or null. */
+    protected @Nullable ControlFlowGraph cfg;
+
+    /** The values of the keys of {@link #cfg}, indexed by dense ID; null for absent keys. */
+    private Object[] values = new Object[0];
+
+    /** The number of keys of {@link #cfg}, i.e., the used prefix of {@link #values}. */
+    private int limit = 0;
+
+    /** The number of non-null entries in {@link #values}. */
+    private int denseSize = 0;
+
+    /** The values of all other keys. */
+    private final IdentityHashMap<K, V> others = new IdentityHashMap<>();
+
+    /** @return a new, empty map whose keys are blocks */
+    public static <V> DenseIdMap<Block, V> forBlocks() {
+        return new DenseIdMap<Block, V>() {
+            @Override
+            protected int numberOfKeys(ControlFlowGraph cfg) {
+                return cfg.getNumberOfBlocks();
+            }
+
+            @Override
+            protected int denseIdOf(Object key) {
+                return key instanceof Block ? ((Block) key).getDenseId() : -1;
+            }
+
+            @Override
+            protected Block keyAt(ControlFlowGraph cfg, int denseId) {
+                return cfg.getBlock(denseId);
+            }
+        };
+    }
+
+    /** @return a new, empty map whose keys are nodes */
+    public static <V> DenseIdMap<Node, V> forNodes() {
+        return new DenseIdMap<Node, V>() {
+            @Override
+            protected int numberOfKeys(ControlFlowGraph cfg) {
+                return cfg.getNumberOfNodes();
+            }
+
+            @Override
+            protected int denseIdOf(Object key) {
+                return key instanceof Node ? ((Node) key).getDenseId() : -1;
+            }
+
+            @Override
+            protected Node keyAt(ControlFlowGraph cfg, int denseId) {
+                return cfg.getNode(denseId);
+            }
+        };
+    }
+
+    /** @return the number of keys with a dense ID in {@code cfg} */
+    protected abstract int numberOfKeys(ControlFlowGraph cfg);
+
+    /** @return the dense ID of {@code key}, or -1 if {@code key} has none */
+    protected abstract int denseIdOf(Object key);
+
+    /** @return the key of {@code cfg} whose dense ID is {@code denseId} */
+    protected abstract K keyAt(ControlFlowGraph cfg, int denseId);
+
+    /**
+     * Remove all mappings and store the values of the keys of {@code cfg} in the array from now on.
+     * The array is reused if it is large enough.
+     *
+     * @param cfg the control flow graph whose keys to store densely, or null
+     */
+    public void reset(@Nullable ControlFlowGraph cfg) {
+        clear();
+        this.cfg = cfg;
+        this.limit = cfg == null ? 0 : numberOfKeys(cfg);
+        if (values.length < limit) {
+            values = new Object[limit];
+        }
+    }
+
+    /**
+     * @return the index of {@code key} in {@link #values}, or -1 if {@code key} is not a key of
+     *     {@link #cfg}
+     */
+    private int indexOf(@Nullable Object key) {
+        if (cfg == null || key == null) {
+            return -1;
+        }
+        int id = denseIdOf(key);
+        return id >= 0 && id < limit && keyAt(cfg, id) == key ? id : -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V unmask(Object value) {
+        return value == NULL_VALUE ? null : (V) value;
+    }
+
+    private static Object mask(@Nullable Object value) {
+        return value == null ? NULL_VALUE : value;
+    }
+
+    @Override
+    public int size() {
+        return denseSize + others.size();
+    }
+
+    @Override
+    public boolean containsKey(@Nullable Object key) {
+        int index = indexOf(key);
+        return index >= 0 ? values[index] != null : others.containsKey(key);
+    }
+
+    @Override
+    public V get(@Nullable Object key) {
+        int index = indexOf(key);
+        return index >= 0 ? DenseIdMap.<V>unmask(values[index]) : others.get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return others.put(key, value);
+        }
+        Object old = values[index];
+        values[index] = mask(value);
+        if (old == null) {
+            denseSize++;
+        }
+        return unmask(old);
+    }
+
+    @Override
+    public V remove(@Nullable Object key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return others.remove(key);
+        }
+        Object old = values[index];
+        if (old != null) {
+            values[index] = null;
+            denseSize--;
+        }
+        return unmask(old);
+    }
+
+    @Override
+    public void clear() {
+        if (denseSize > 0) {
+            Arrays.fill(values, 0, limit, null);
+            denseSize = 0;
+        }
+        others.clear();
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public int size() {
+                return DenseIdMap.this.size();
+            }
+
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+        };
+    }
+
+    /** Iterates over the entries in {@link #values} first, and then over {@link #others}. */
+    private class EntryIterator implements Iterator<Entry<K, V>> {
+
+        /** The index of the next non-null entry in {@link #values}, or {@link #limit}. */
+        private int next = advance(0);
+
+        /** The index of the last entry returned from {@link #values}, or -1. */
+        private int last = -1;
+
+        /** The iterator over {@link #others}. */
+        private final Iterator<Entry<K, V>> othersIterator = others.entrySet().iterator();
+
+        /** @return the index of the first non-null entry at or after {@code from} */
+        private int advance(int from) {
+            while (from < limit && values[from] == null) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < limit || othersIterator.hasNext();
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next < limit) {
+                last = next;
+                next = advance(next + 1);
+                return new DenseEntry(last);
+            }
+            last = -1;
+            if (!othersIterator.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return othersIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            if (last >= 0) {
+                values[last] = null;
+                denseSize--;
+                last = -1;
+            } else {
+                othersIterator.remove();
+            }
+        }
+    }
+
+    /** An entry of {@link #values}; writes through to the map. */
+    private class DenseEntry implements Entry<K, V> {
+
+        /** The dense ID of the key of this entry. */
+        private final int index;
+
+        DenseEntry(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public K getKey() {
+            return keyAt(cfg, index);
+        }
+
+        @Override
+        public V getValue() {
+            return unmask(values[index]);
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = getValue();
+            values[index] = mask(value);
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+            return getKey() == other.getKey() && Objects.equals(getValue(), other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(getKey()) ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+}
@@ -25,9 +25,11 @@ import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
 import javax.tools.Diagnostic;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.common.reflection.MethodValChecker;
 import org.checkerframework.dataflow.cfg.CFGVisualizer;
 import org.checkerframework.framework.qual.SubtypeOf;
+import org.checkerframework.framework.source.SharedTraversal;
 import org.checkerframework.framework.source.SourceChecker;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.type.GenericAnnotatedTypeFactory;
@@ -467,6 +469,9 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
     // AbstractTypeProcessor delegation
     @Override
     public void typeProcess(TypeElement element, TreePath tree) {
+        if (skipTypeProcess(element, tree)) {
+            return;
+        }
         if (getSubcheckers().size() > 0) {
             messageStore = new TreeSet<>(checkerMessageComparator);
         }
@@ -506,6 +511,17 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
         }
     }
 
+    /**
+     * The subcheckers type-check each class right before this checker, so this checker and its
+     * subcheckers share the tree paths and the control flow graphs of the compilation unit: each
+     * method's control flow graph is built once rather than once per checker, unless it depends on
+     * the checker.
+     */
+    @Override
+    protected @Nullable SharedTraversal createSharedTraversal() {
+        return getSubcheckers().isEmpty() ? null : new SharedTraversal();
+    }
+
     /**
      * Issues a warning about any {@code @SuppressWarnings} that isn't used by this checker, but
      * contains a key that would suppress a warning from this checker.
@@ -0,0 +1,481 @@
+package org.checkerframework.common.value;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.common.value.ValueTransfer.NumericalBinaryOps;
+import org.checkerframework.common.value.ValueTransfer.NumericalUnaryOps;
+import org.checkerframework.common.value.util.NumberUtils;
+import org.checkerframework.common.value.util.Range;
+import org.checkerframework.javacutil.ErrorReporter;
+
+/**
+ * The possible values of a numerical expression, as a sorted array of distinct primitive values: a
+ * {@code long[]} for an integral type and a {@code double[]} for a floating-point type.
+ *
+ * <p>ValueTransfer folds numerical operations over these arrays instead of over lists of boxed
+ * numbers, and converts the result to an annotation only at the end, see {@link
+ * ValueAnnotatedTypeFactory#createNumberAnnotationMirror(NumericalValues)}. The operations follow
+ * the same rules as {@link org.checkerframework.common.value.util.NumberMath}: the operands are
+ * first cast to the types of their expressions, then binary numeric promotion applies.
+ *
+ * <p>Instances are immutable.
+ */
+final class NumericalValues {
+
+    /**
+     * The type that the values have. {@code byte}, {@code short}, and {@code char} values are
+     * promoted to {@code int} by every operation, so they are stored as {@link #INT} values.
+     * Declared in the order of binary numeric promotion.
+     */
+    enum Kind {
+        INT,
+        LONG,
+        FLOAT,
+        DOUBLE;
+
+        /** @return true if this is an integral kind */
+        boolean isIntegral() {
+            return this == INT || this == LONG;
+        }
+    }
+
+    /** The kind of the values. */
+    final Kind kind;
+
+    /** The sorted, distinct values if {@link #kind} is integral; otherwise null. */
+    private final long[] longs;
+
+    /**
+     * The sorted, distinct values if {@link #kind} is floating-point; otherwise null. {@code
+     * float} values are stored exactly as doubles. The order is that of {@link Double#compare}.
+     */
+    private final double[] doubles;
+
+    /** The hash code, or 0 if it has not been computed yet. */
+    private int hashCode;
+
+    /** The set that contains no value. */
+    static final NumericalValues EMPTY = new NumericalValues(Kind.LONG, new long[0], null);
+
+    private NumericalValues(Kind kind, long[] longs, double[] doubles) {
+        this.kind = kind;
+        this.longs = longs;
+        this.doubles = doubles;
+    }
+
+    /**
+     * Creates a set of integral values.
+     *
+     * @param kind {@link Kind#INT} or {@link Kind#LONG}
+     * @param values the values, in any order and with duplicates; the array is sorted in place
+     * @param size the number of elements of {@code values} to use
+     * @return the set of the values
+     */
+    static NumericalValues ofLongs(Kind kind, long[] values, int size) {
+        Arrays.sort(values, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || values[i] != values[distinct - 1]) {
+                values[distinct++] = values[i];
+            }
+        }
+        long[] result = distinct == values.length ? values : Arrays.copyOf(values, distinct);
+        return new NumericalValues(kind, result, null);
+    }
+
+    /**
+     * Creates a set of floating-point values.
+     *
+     * @param kind {@link Kind#FLOAT} or {@link Kind#DOUBLE}
+     * @param values the values, in any order and with duplicates; the array is sorted in place
+     * @param size the number of elements of {@code values} to use
+     * @return the set of the values
+     */
+    static NumericalValues ofDoubles(Kind kind, double[] values, int size) {
+        // Arrays.sort orders doubles like Double.compare does: -0.0 before 0.0, and NaN last.
+        Arrays.sort(values, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || Double.compare(values[i], values[distinct - 1]) != 0) {
+                values[distinct++] = values[i];
+            }
+        }
+        double[] result = distinct == values.length ? values : Arrays.copyOf(values, distinct);
+        return new NumericalValues(kind, null, result);
+    }
+
+    /** @return the number of values */
+    int size() {
+        return longs != null ? longs.length : doubles.length;
+    }
+
+    /** @return true if there is no value */
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** @return the {@code i}th value, which must be integral */
+    long longAt(int i) {
+        return longs[i];
+    }
+
+    /** @return the {@code i}th value, converted to a float */
+    float floatAt(int i) {
+        return longs != null ? (float) longs[i] : (float) doubles[i];
+    }
+
+    /** @return the {@code i}th value, converted to a double */
+    double doubleAt(int i) {
+        return longs != null ? (double) longs[i] : doubles[i];
+    }
+
+    /** @return the values as boxed longs, in ascending order; the values must be integral */
+    List<Long> toLongList() {
+        List<Long> result = new ArrayList<>(longs.length);
+        for (long value : longs) {
+            result.add(value);
+        }
+        return result;
+    }
+
+    /** @return the values as boxed doubles, in ascending order */
+    List<Double> toDoubleList() {
+        List<Double> result = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            result.add(doubleAt(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the exact bounds of the results of a binary operation, if they can be computed
+     * without enumerating the pairs of operands and there are more than {@code maxValues} distinct
+     * results. The result of the operation is then an {@code @IntRange} with these bounds.
+     *
+     * <p>For an addition or subtraction of integral sets {@code L} and {@code R}, the bounds follow
+     * from the smallest and largest values, and there are at least {@code |L| + |R| - 1} distinct
+     * results, unless the operation overflows.
+     *
+     * @param op the operation
+     * @param right the values of the right operand
+     * @param maxValues the number of distinct results that an {@code @IntVal} may have
+     * @return the bounds of the results, or null if they cannot be determined this way
+     */
+    @Nullable Range boundsIfMoreThan(NumericalBinaryOps op, NumericalValues right, int maxValues) {
+        if (!kind.isIntegral()
+                || !right.kind.isIntegral()
+                || size() + right.size() - 1 <= maxValues) {
+            return null;
+        }
+        long leftMin = longs[0];
+        long leftMax = longs[longs.length - 1];
+        long rightMin = right.longs[0];
+        long rightMax = right.longs[right.longs.length - 1];
+        long from;
+        long to;
+        try {
+            switch (op) {
+                case ADDITION:
+                    from = Math.addExact(leftMin, rightMin);
+                    to = Math.addExact(leftMax, rightMax);
+                    break;
+                case SUBTRACTION:
+                    from = Math.subtractExact(leftMin, rightMax);
+                    to = Math.subtractExact(leftMax, rightMin);
+                    break;
+                default:
+                    return null;
+            }
+        } catch (ArithmeticException e) {
+            return null;
+        }
+        boolean isInt = kind == Kind.INT && right.kind == Kind.INT;
+        if (isInt && (from < Integer.MIN_VALUE || to > Integer.MAX_VALUE)) {
+            return null;
+        }
+        return new Range(from, to);
+    }
+
+    /**
+     * Casts the values to {@code type}, like {@link NumberUtils#castNumbers} does.
+     *
+     * @param type a primitive numerical type or its boxed type
+     * @return the values of this set, cast to {@code type}
+     */
+    NumericalValues cast(TypeMirror type) {
+        TypeKind typeKind = NumberUtils.unBoxPrimitive(type);
+        int size = size();
+        switch (typeKind) {
+            case BYTE:
+            case SHORT:
+            case CHAR:
+            case INT:
+                long[] ints = new long[size];
+                for (int i = 0; i < size; i++) {
+                    // A double is narrowed to int first, then to byte or short, see JLS 5.1.3.
+                    int value = longs != null ? (int) longs[i] : (int) doubles[i];
+                    if (typeKind == TypeKind.BYTE) {
+                        value = (byte) value;
+                    } else if (typeKind == TypeKind.SHORT) {
+                        value = (short) value;
+                    }
+                    ints[i] = value;
+                }
+                return ofLongs(Kind.INT, ints, size);
+            case LONG:
+                if (longs != null) {
+                    return new NumericalValues(Kind.LONG, longs, null);
+                }
+                long[] longValues = new long[size];
+                for (int i = 0; i < size; i++) {
+                    longValues[i] = (long) doubles[i];
+                }
+                return ofLongs(Kind.LONG, longValues, size);
+            case FLOAT:
+                double[] floats = new double[size];
+                for (int i = 0; i < size; i++) {
+                    floats[i] = floatAt(i);
+                }
+                return ofDoubles(Kind.FLOAT, floats, size);
+            case DOUBLE:
+                if (doubles != null) {
+                    return new NumericalValues(Kind.DOUBLE, null, doubles);
+                }
+                double[] doubleValues = new double[size];
+                for (int i = 0; i < size; i++) {
+                    doubleValues[i] = longs[i];
+                }
+                return ofDoubles(Kind.DOUBLE, doubleValues, size);
+            default:
+                throw new UnsupportedOperationException(typeKind.toString());
+        }
+    }
+
+    /**
+     * Applies a binary operation to each pair of a value of this set and a value of {@code
+     * right}. Integral division and remainder by zero have no result.
+     *
+     * @param op the operation
+     * @param right the values of the right operand
+     * @return the results of the operation
+     */
+    NumericalValues binaryOp(NumericalBinaryOps op, NumericalValues right) {
+        Kind resultKind;
+        switch (op) {
+            case SHIFT_LEFT:
+            case SIGNED_SHIFT_RIGHT:
+            case UNSIGNED_SHIFT_RIGHT:
+                // The type of a shift is the promoted type of its left operand.
+                resultKind = kind;
+                break;
+            default:
+                resultKind = kind.compareTo(right.kind) >= 0 ? kind : right.kind;
+        }
+        int leftSize = size();
+        int rightSize = right.size();
+        int size = 0;
+        if (resultKind.isIntegral()) {
+            // Integral division by zero throws an exception, so it has no result.
+            boolean isDivision =
+                    op == NumericalBinaryOps.DIVISION || op == NumericalBinaryOps.REMAINDER;
+            long[] results = new long[leftSize * rightSize];
+            for (int i = 0; i < leftSize; i++) {
+                for (int j = 0; j < rightSize; j++) {
+                    long b = right.longAt(j);
+                    if (isDivision && b == 0) {
+                        continue;
+                    }
+                    results[size++] =
+                            resultKind == Kind.INT
+                                    ? intOp(op, (int) longAt(i), b)
+                                    : longOp(op, longAt(i), b);
+                }
+            }
+            return ofLongs(resultKind, results, size);
+        } else {
+            double[] results = new double[leftSize * rightSize];
+            for (int i = 0; i < leftSize; i++) {
+                for (int j = 0; j < rightSize; j++) {
+                    results[size++] =
+                            resultKind == Kind.FLOAT
+                                    ? floatOp(op, floatAt(i), right.floatAt(j))
+                                    : doubleOp(op, doubleAt(i), right.doubleAt(j));
+                }
+            }
+            return ofDoubles(resultKind, results, size);
+        }
+    }
+
+    /**
+     * Applies a unary operation to each value of this set.
+     *
+     * @param op the operation
+     * @return the results of the operation
+     */
+    NumericalValues unaryOp(NumericalUnaryOps op) {
+        int size = size();
+        if (kind.isIntegral()) {
+            long[] results = new long[size];
+            for (int i = 0; i < size; i++) {
+                long value = longs[i];
+                switch (op) {
+                    case PLUS:
+                        results[i] = value;
+                        break;
+                    case MINUS:
+                        results[i] = kind == Kind.INT ? -(int) value : -value;
+                        break;
+                    case BITWISE_COMPLEMENT:
+                        results[i] = kind == Kind.INT ? ~(int) value : ~value;
+                        break;
+                    default:
+                        ErrorReporter.errorAbort("ValueTransfer: unsupported operation: " + op);
+                }
+            }
+            return ofLongs(kind, results, size);
+        } else {
+            double[] results = new double[size];
+            for (int i = 0; i < size; i++) {
+                switch (op) {
+                    case PLUS:
+                        results[i] = doubles[i];
+                        break;
+                    case MINUS:
+                        results[i] = -doubles[i];
+                        break;
+                    default:
+                        ErrorReporter.errorAbort("ValueTransfer: unsupported operation: " + op);
+                }
+            }
+            return ofDoubles(kind, results, size);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof NumericalValues)) {
+            return false;
+        }
+        NumericalValues other = (NumericalValues) obj;
+        return kind == other.kind
+                && Arrays.equals(longs, other.longs)
+                && Arrays.equals(doubles, other.doubles);
+    }
+
+    @Override
+    public int hashCode() {
+        if (hashCode == 0) {
+            hashCode =
+                    kind.hashCode() * 31
+                            + (longs != null ? Arrays.hashCode(longs) : Arrays.hashCode(doubles));
+        }
+        return hashCode;
+    }
+
+    /** Applies {@code op} to two ints; {@code b} may be a long shift distance. */
+    private static int intOp(NumericalBinaryOps op, int a, long b) {
+        switch (op) {
+            case ADDITION:
+                return a + (int) b;
+            case SUBTRACTION:
+                return a - (int) b;
+            case MULTIPLICATION:
+                return a * (int) b;
+            case DIVISION:
+                return a / (int) b;
+            case REMAINDER:
+                return a % (int) b;
+            case SHIFT_LEFT:
+                return a << b;
+            case SIGNED_SHIFT_RIGHT:
+                return a >> b;
+            case UNSIGNED_SHIFT_RIGHT:
+                return a >>> b;
+            case BITWISE_AND:
+                return a & (int) b;
+            case BITWISE_OR:
+                return a | (int) b;
+            case BITWISE_XOR:
+                return a ^ (int) b;
+            default:
+                ErrorReporter.errorAbort("ValueTransfer: unsupported operation: " + op);
+                throw new RuntimeException("this can't happen");
+        }
+    }
+
+    /** Applies {@code op} to two longs. */
+    private static long longOp(NumericalBinaryOps op, long a, long b) {
+        switch (op) {
+            case ADDITION:
+                return a + b;
+            case SUBTRACTION:
+                return a - b;
+            case MULTIPLICATION:
+                return a * b;
+            case DIVISION:
+                return a / b;
+            case REMAINDER:
+                return a % b;
+            case SHIFT_LEFT:
+                return a << b;
+            case SIGNED_SHIFT_RIGHT:
+                return a >> b;
+            case UNSIGNED_SHIFT_RIGHT:
+                return a >>> b;
+            case BITWISE_AND:
+                return a & b;
+            case BITWISE_OR:
+                return a | b;
+            case BITWISE_XOR:
+                return a ^ b;
+            default:
+                ErrorReporter.errorAbort("ValueTransfer: unsupported operation: " + op);
+                throw new RuntimeException("this can't happen");
+        }
+    }
+
+    /** Applies {@code op} to two floats. */
+    private static float floatOp(NumericalBinaryOps op, float a, float b) {
+        switch (op) {
+            case ADDITION:
+                return a + b;
+            case SUBTRACTION:
+                return a - b;
+            case MULTIPLICATION:
+                return a * b;
+            case DIVISION:
+                return a / b;
+            case REMAINDER:
+                return a % b;
+            default:
+                ErrorReporter.errorAbort("ValueTransfer: unsupported operation: " + op);
+                throw new RuntimeException("this can't happen");
+        }
+    }
+
+    /** Applies {@code op} to two doubles. */
+    private static double doubleOp(NumericalBinaryOps op, double a, double b) {
+        switch (op) {
+            case ADDITION:
+                return a + b;
+            case SUBTRACTION:
+                return a - b;
+            case MULTIPLICATION:
+                return a * b;
+            case DIVISION:
+                return a / b;
+            case REMAINDER:
+                return a % b;
+            default:
+                ErrorReporter.errorAbort("ValueTransfer: unsupported operation: " + op);
+                throw new RuntimeException("this can't happen");
+        }
+    }
+}
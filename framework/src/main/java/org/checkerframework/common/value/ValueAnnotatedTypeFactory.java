@@ -17,6 +17,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import javax.lang.model.element.AnnotationMirror;
@@ -72,6 +73,7 @@ import org.checkerframework.framework.util.MultiGraphQualifierHierarchy;
 import org.checkerframework.framework.util.MultiGraphQualifierHierarchy.MultiGraphFactory;
 import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.Pair;
 import org.checkerframework.javacutil.TreeUtils;
@@ -127,6 +129,17 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
     /** Helper class that holds references to special methods. */
     private final ValueMethodIdentifier methods;
 
+    /** The size of {@link #numericalValuesCache}. */
+    private static final int NUMERICAL_VALUES_CACHE_SIZE = 300;
+
+    /**
+     * The values of the {@code @IntVal} and {@code @DoubleVal} annotations that were parsed by
+     * {@link #getNumericalValues(AnnotationMirror)}, keyed by the canonical representatives of the
+     * annotations.
+     */
+    private final Map<AnnotationMirror, NumericalValues> numericalValuesCache =
+            CollectionUtils.createLRUCache(NUMERICAL_VALUES_CACHE_SIZE);
+
     public ValueAnnotatedTypeFactory(BaseTypeChecker checker) {
         super(checker);
 
@@ -1789,6 +1802,37 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
                 "ValueAnnotatedTypeFactory: unexpected class: " + first.getClass());
     }
 
+    /**
+     * Returns a {@link IntVal}, {@link IntRange}, or {@link DoubleVal} annotation for the values,
+     * like {@link #createNumberAnnotationMirror(List)} does.
+     *
+     * @param values the values, or null if any value is possible
+     * @return an annotation for the values
+     */
+    AnnotationMirror createNumberAnnotationMirror(NumericalValues values) {
+        if (values == null) {
+            return UNKNOWNVAL;
+        } else if (values.isEmpty()) {
+            return BOTTOMVAL;
+        }
+        int size = values.size();
+        if (values.kind.isIntegral()) {
+            if (size > MAX_VALUES) {
+                return createIntRangeAnnotation(values.longAt(0), values.longAt(size - 1));
+            }
+            AnnotationBuilder builder = new AnnotationBuilder(processingEnv, IntVal.class);
+            builder.setValue("value", values.toLongList());
+            return builder.build();
+        } else {
+            if (size > MAX_VALUES) {
+                return UNKNOWNVAL;
+            }
+            AnnotationBuilder builder = new AnnotationBuilder(processingEnv, DoubleVal.class);
+            builder.setValue("value", values.toDoubleList());
+            return builder.build();
+        }
+    }
+
     /**
      * Create an {@code @IntRange} annotation from the two (inclusive) bounds. Does not return
      * BOTTOMVAL or UNKNOWNVAL.
@@ -1954,6 +1998,53 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
         return null;
     }
 
+    /**
+     * Returns the possible values of an {@code @IntVal} or {@code @DoubleVal} annotation. Returns
+     * the empty set for {@code @BottomVal}, and null for any other annotation or null.
+     *
+     * <p>Unlike {@link #getIntValues} and {@link #getDoubleValues}, this method parses an
+     * annotation that was created by {@link AnnotationBuilder} only once.
+     *
+     * @param anno a Value Checker annotation, or null
+     * @return the possible values, or null if any value is possible
+     */
+    NumericalValues getNumericalValues(AnnotationMirror anno) {
+        if (anno == null) {
+            return null;
+        } else if (AnnotationUtils.areSameByClass(anno, BottomVal.class)) {
+            return NumericalValues.EMPTY;
+        }
+        boolean isIntVal = AnnotationUtils.areSameByClass(anno, IntVal.class);
+        if (!isIntVal && !AnnotationUtils.areSameByClass(anno, DoubleVal.class)) {
+            return null;
+        }
+        AnnotationMirror key = AnnotationBuilder.canonicalAnnotation(anno);
+        NumericalValues values = key == null ? null : numericalValuesCache.get(key);
+        if (values != null) {
+            return values;
+        }
+        if (isIntVal) {
+            List<Long> list = AnnotationUtils.getElementValueArray(anno, "value", Long.class, true);
+            long[] array = new long[list.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = list.get(i);
+            }
+            values = NumericalValues.ofLongs(NumericalValues.Kind.LONG, array, array.length);
+        } else {
+            List<Double> list =
+                    AnnotationUtils.getElementValueArray(anno, "value", Double.class, true);
+            double[] array = new double[list.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = list.get(i);
+            }
+            values = NumericalValues.ofDoubles(NumericalValues.Kind.DOUBLE, array, array.length);
+        }
+        if (key != null) {
+            numericalValuesCache.put(key, values);
+        }
+        return values;
+    }
+
     /**
      * Returns the set of possible values as a sorted list with no duplicate values. Returns the
      * empty list if no values are possible (for dead code). Returns null if any value is possible
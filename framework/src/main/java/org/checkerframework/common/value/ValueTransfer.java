@@ -5,10 +5,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.common.value.qual.ArrayLen;
 import org.checkerframework.common.value.qual.ArrayLenRange;
 import org.checkerframework.common.value.qual.BoolVal;
@@ -62,12 +65,53 @@ import org.checkerframework.framework.flow.CFStore;
 import org.checkerframework.framework.flow.CFTransfer;
 import org.checkerframework.framework.flow.CFValue;
 import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.TypesUtils;
 
 public class ValueTransfer extends CFTransfer {
     protected final ValueAnnotatedTypeFactory atypefactory;
 
+    /** The size of {@link #foldCache}. */
+    private static final int FOLD_CACHE_SIZE = 300;
+
+    /**
+     * The annotations of the results of numerical operations, keyed by the operation and the
+     * values of its operands.
+     */
+    private final Map<FoldKey, AnnotationMirror> foldCache =
+            CollectionUtils.createLRUCache(FOLD_CACHE_SIZE);
+
+    /** The key of {@link #foldCache}: a numerical operation and the values of its operands. */
+    private static final class FoldKey {
+        /** The operation: a {@link NumericalBinaryOps} or a {@link NumericalUnaryOps}. */
+        final Enum<?> op;
+        /** The values of the left operand, or of the only operand of a unary operation. */
+        final NumericalValues left;
+        /** The values of the right operand, or null for a unary operation. */
+        final @Nullable NumericalValues right;
+
+        FoldKey(Enum<?> op, NumericalValues left, @Nullable NumericalValues right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FoldKey)) {
+                return false;
+            }
+            FoldKey other = (FoldKey) o;
+            return op == other.op && left.equals(other.left) && Objects.equals(right, other.right);
+        }
+
+        @Override
+        public int hashCode() {
+            return (op.hashCode() * 31 + left.hashCode()) * 31 + Objects.hashCode(right);
+        }
+    }
+
     public ValueTransfer(CFAbstractAnalysis<CFValue, CFStore, CFTransfer> analysis) {
         super(analysis);
         atypefactory = (ValueAnnotatedTypeFactory) analysis.getTypeFactory();
@@ -296,6 +340,19 @@ public class ValueTransfer extends CFTransfer {
         return NumberUtils.castNumbers(subNode.getType(), values);
     }
 
+    /**
+     * Returns the possible values of {@code subNode}, cast to its type, or null if no estimate is
+     * available and any value is possible. Like {@link #getNumericalValues(Node,
+     * TransferInput)}, but without boxing the values.
+     */
+    private NumericalValues getNumericalValueSet(Node subNode, TransferInput<CFValue, CFStore> p) {
+        NumericalValues values = atypefactory.getNumericalValues(getValueAnnotation(subNode, p));
+        if (values == null || values.isEmpty()) {
+            return values;
+        }
+        return values.cast(subNode.getType());
+    }
+
     /** Get possible integer range from annotation. */
     private Range getIntRange(Node subNode, TransferInput<CFValue, CFStore> p) {
         AnnotationMirror val = getValueAnnotation(subNode, p);
@@ -634,8 +691,7 @@ public class ValueTransfer extends CFTransfer {
             TransferInput<CFValue, CFStore> p) {
         if (!isIntRangeOrIntegralUnknownVal(leftNode, p)
                 && !isIntRangeOrIntegralUnknownVal(rightNode, p)) {
-            List<Number> resultValues = calculateValuesBinaryOp(leftNode, rightNode, op, p);
-            return atypefactory.createNumberAnnotationMirror(resultValues);
+            return calculateValuesBinaryOp(leftNode, rightNode, op, p);
         } else {
             Range resultRange = calculateRangeBinaryOp(leftNode, rightNode, op, p);
             return atypefactory.createIntRangeAnnotation(resultRange);
@@ -702,67 +758,38 @@ public class ValueTransfer extends CFTransfer {
         }
     }
 
-    /** Calculate the possible values after a binary operation between two numerical type nodes. */
-    private List<Number> calculateValuesBinaryOp(
+    /**
+     * Calculate the annotation of the possible values after a binary operation between two
+     * numerical type nodes.
+     *
+     * <p>The result is memoized by the operation and the values of the operands, because the
+     * dataflow analysis visits a node in a loop until a fixpoint is reached, and the same constant
+     * operands recur. If the result must be an {@code @IntRange}, its bounds are computed without
+     * enumerating the pairs of operands where possible.
+     */
+    private AnnotationMirror calculateValuesBinaryOp(
             Node leftNode,
             Node rightNode,
             NumericalBinaryOps op,
             TransferInput<CFValue, CFStore> p) {
-        List<? extends Number> lefts = getNumericalValues(leftNode, p);
-        List<? extends Number> rights = getNumericalValues(rightNode, p);
+        NumericalValues lefts = getNumericalValueSet(leftNode, p);
+        NumericalValues rights = getNumericalValueSet(rightNode, p);
         if (lefts == null || rights == null) {
-            return null;
+            return atypefactory.UNKNOWNVAL;
         }
-        List<Number> resultValues = new ArrayList<>();
-        for (Number left : lefts) {
-            NumberMath<?> nmLeft = NumberMath.getNumberMath(left);
-            for (Number right : rights) {
-                switch (op) {
-                    case ADDITION:
-                        resultValues.add(nmLeft.plus(right));
-                        break;
-                    case DIVISION:
-                        Number result = nmLeft.divide(right);
-                        if (result != null) {
-                            resultValues.add(result);
-                        }
-                        break;
-                    case MULTIPLICATION:
-                        resultValues.add(nmLeft.times(right));
-                        break;
-                    case REMAINDER:
-                        Number resultR = nmLeft.remainder(right);
-                        if (resultR != null) {
-                            resultValues.add(resultR);
-                        }
-                        break;
-                    case SUBTRACTION:
-                        resultValues.add(nmLeft.minus(right));
-                        break;
-                    case SHIFT_LEFT:
-                        resultValues.add(nmLeft.shiftLeft(right));
-                        break;
-                    case SIGNED_SHIFT_RIGHT:
-                        resultValues.add(nmLeft.signedShiftRight(right));
-                        break;
-                    case UNSIGNED_SHIFT_RIGHT:
-                        resultValues.add(nmLeft.unsignedShiftRight(right));
-                        break;
-                    case BITWISE_AND:
-                        resultValues.add(nmLeft.bitwiseAnd(right));
-                        break;
-                    case BITWISE_OR:
-                        resultValues.add(nmLeft.bitwiseOr(right));
-                        break;
-                    case BITWISE_XOR:
-                        resultValues.add(nmLeft.bitwiseXor(right));
-                        break;
-                    default:
-                        ErrorReporter.errorAbort("ValueTransfer: unsupported operation: " + op);
-                }
+        FoldKey key = new FoldKey(op, lefts, rights);
+        AnnotationMirror result = foldCache.get(key);
+        if (result == null) {
+            Range bounds =
+                    lefts.boundsIfMoreThan(op, rights, ValueAnnotatedTypeFactory.MAX_VALUES);
+            if (bounds != null) {
+                result = atypefactory.createIntRangeAnnotation(bounds);
+            } else {
+                result = atypefactory.createNumberAnnotationMirror(lefts.binaryOp(op, rights));
             }
+            foldCache.put(key, result);
         }
-        return resultValues;
+        return result;
     }
 
     @Override
@@ -922,8 +949,7 @@ public class ValueTransfer extends CFTransfer {
     private AnnotationMirror calculateNumericalUnaryOp(
             Node operand, NumericalUnaryOps op, TransferInput<CFValue, CFStore> p) {
         if (!isIntRange(operand, p)) {
-            List<Number> resultValues = calculateValuesUnaryOp(operand, op, p);
-            return atypefactory.createNumberAnnotationMirror(resultValues);
+            return calculateValuesUnaryOp(operand, op, p);
         } else {
             Range resultRange = calculateRangeUnaryOp(operand, op, p);
             return atypefactory.createIntRangeAnnotation(resultRange);
@@ -960,31 +986,23 @@ public class ValueTransfer extends CFTransfer {
         }
     }
 
-    /** Calculate the possible values after a unary operation of a numerical type node. */
-    private List<Number> calculateValuesUnaryOp(
+    /**
+     * Calculate the annotation of the possible values after a unary operation of a numerical type
+     * node. The result is memoized like that of {@link #calculateValuesBinaryOp}.
+     */
+    private AnnotationMirror calculateValuesUnaryOp(
             Node operand, NumericalUnaryOps op, TransferInput<CFValue, CFStore> p) {
-        List<? extends Number> lefts = getNumericalValues(operand, p);
-        if (lefts == null) {
-            return null;
+        NumericalValues values = getNumericalValueSet(operand, p);
+        if (values == null) {
+            return atypefactory.UNKNOWNVAL;
         }
-        List<Number> resultValues = new ArrayList<>();
-        for (Number left : lefts) {
-            NumberMath<?> nmLeft = NumberMath.getNumberMath(left);
-            switch (op) {
-                case PLUS:
-                    resultValues.add(nmLeft.unaryPlus());
-                    break;
-                case MINUS:
-                    resultValues.add(nmLeft.unaryMinus());
-                    break;
-                case BITWISE_COMPLEMENT:
-                    resultValues.add(nmLeft.bitwiseComplement());
-                    break;
-                default:
-                    ErrorReporter.errorAbort("ValueTransfer: unsupported operation: " + op);
-            }
+        FoldKey key = new FoldKey(op, values, null);
+        AnnotationMirror result = foldCache.get(key);
+        if (result == null) {
+            result = atypefactory.createNumberAnnotationMirror(values.unaryOp(op));
+            foldCache.put(key, result);
         }
-        return resultValues;
+        return result;
     }
 
     @Override
@@ -83,7 +83,8 @@ public class NumberUtils {
         }
     }
 
-    private static TypeKind unBoxPrimitive(TypeMirror type) {
+    /** Returns the primitive type kind of {@code type}, which may be a boxed primitive type. */
+    public static TypeKind unBoxPrimitive(TypeMirror type) {
         if (type.getKind() == TypeKind.DECLARED) {
             String stringType = TypesUtils.getQualifiedName((DeclaredType) type).toString();
 
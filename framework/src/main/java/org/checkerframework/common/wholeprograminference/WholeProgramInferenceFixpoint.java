@@ -0,0 +1,204 @@
+package org.checkerframework.common.wholeprograminference;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.checkerframework.javacutil.PluginUtil;
+
+/**
+ * Runs whole-program inference to a fixpoint in a single JVM: it runs javac with {@code -Ainfer},
+ * inserts the inferred annotations from the .jaif files into the source files, and repeats until
+ * the .jaif files of an iteration are the same as those of the previous iteration. This is what
+ * {@code checker/bin/infer-and-annotate.sh} does, except that the iterations do not pay for
+ * starting a JVM and loading and JIT-compiling javac and the Checker Framework again. It is used
+ * when CheckerMain is given the {@code -AinferFixpoint} option.
+ *
+ * <p>Every iteration type-checks every class. A class that is not type-checked would not
+ * contribute to the types inferred for the fields and methods that it uses, so the inferred types
+ * would be too precise.
+ *
+ * <p>The annotations are inserted by the {@code insert-annotations-to-source} program of the
+ * Annotation File Utilities, which must be on the search path. Like infer-and-annotate.sh, this
+ * class deletes the .jaif files of an earlier run, and the {@code .unannotated} backups that
+ * insert-annotations-to-source makes of the source files.
+ *
+ * @checker_framework.manual #whole-program-inference Whole-program inference
+ */
+public class WholeProgramInferenceFixpoint {
+
+    /** The program that inserts the annotations of .jaif files into source files. */
+    private static final String INSERT_ANNOTATIONS_TO_SOURCE = "insert-annotations-to-source";
+
+    /** The exit status of javac for errors in the compiled program. */
+    private static final int EXIT_ERROR = 1;
+
+    /** The arguments to pass to javac in every iteration. */
+    private final List<String> javacArgs;
+
+    /** The source files that the annotations are inserted into. */
+    private final List<String> javaFiles;
+
+    /** The directory that whole-program inference writes the .jaif files to. */
+    private final File jaifDir = new File(WholeProgramInferenceScenesHelper.JAIF_FILES_PATH);
+
+    /**
+     * Creates a driver for the given javac arguments.
+     *
+     * @param javacArgs the arguments to pass to javac, which must include {@code -Ainfer}
+     */
+    public WholeProgramInferenceFixpoint(List<String> javacArgs) {
+        this.javacArgs = javacArgs;
+        this.javaFiles = new ArrayList<>();
+        for (String arg : expandArgFiles(javacArgs)) {
+            if (arg.endsWith(".java")) {
+                javaFiles.add(arg);
+            }
+        }
+    }
+
+    /**
+     * Runs whole-program inference to a fixpoint. Started by CheckerMain.
+     *
+     * @param args the arguments to pass to javac, which must include {@code -Ainfer}
+     */
+    public static void main(String[] args) throws IOException {
+        System.exit(new WholeProgramInferenceFixpoint(Arrays.asList(args)).run());
+    }
+
+    /**
+     * Runs javac and inserts the inferred annotations until the .jaif files do not change.
+     *
+     * @return 0 if a fixpoint was reached; otherwise the exit status of the step that failed
+     */
+    public int run() throws IOException {
+        Map<String, String> previous = new TreeMap<>();
+        for (int iteration = 1; ; iteration++) {
+            System.out.println("Whole-program inference: iteration " + iteration);
+            deleteJaifFiles();
+            int exitStatus = com.sun.tools.javac.Main.compile(javacArgs.toArray(new String[0]));
+            // Like infer-and-annotate.sh, go on if the program has errors; the next iteration may
+            // have fewer of them. Give up on invalid arguments or a crash of javac.
+            if (exitStatus > EXIT_ERROR) {
+                return exitStatus;
+            }
+            Map<String, String> current = readJaifFiles();
+            deleteUnannotatedFiles();
+            if (!current.isEmpty()) {
+                int insertStatus = insertAnnotations(current.keySet());
+                if (insertStatus != 0) {
+                    System.err.println(
+                            INSERT_ANNOTATIONS_TO_SOURCE + " failed with status " + insertStatus);
+                    return insertStatus;
+                }
+                deleteUnannotatedFiles();
+            }
+            if (current.equals(previous)) {
+                System.out.println(
+                        "Whole-program inference reached a fixpoint after "
+                                + iteration
+                                + " iterations");
+                return 0;
+            }
+            previous = current;
+        }
+    }
+
+    /**
+     * Returns the contents of the .jaif files that the last iteration wrote.
+     *
+     * @return a map from the path of each .jaif file to its contents, sorted by path
+     */
+    private Map<String, String> readJaifFiles() throws IOException {
+        Map<String, String> result = new TreeMap<>();
+        for (File jaif : jaifFiles()) {
+            result.put(
+                    jaif.getPath(),
+                    new String(Files.readAllBytes(jaif.toPath()), StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+
+    /** Deletes the .jaif files of the previous iteration, or of an earlier run. */
+    private void deleteJaifFiles() throws IOException {
+        for (File jaif : jaifFiles()) {
+            Files.delete(jaif.toPath());
+        }
+    }
+
+    /** @return the .jaif files in {@link #jaifDir} */
+    private List<File> jaifFiles() {
+        List<File> result = new ArrayList<>();
+        File[] files = jaifDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(".jaif")) {
+                    result.add(file);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Deletes the backups that insert-annotations-to-source makes of the source files. Otherwise
+     * it would insert the annotations of the next iteration into the backups instead of into the
+     * updated source files.
+     */
+    private void deleteUnannotatedFiles() throws IOException {
+        for (String javaFile : javaFiles) {
+            Files.deleteIfExists(new File(javaFile + ".unannotated").toPath());
+        }
+    }
+
+    /**
+     * Inserts the annotations of the given .jaif files into the source files, in place.
+     *
+     * @param jaifPaths the paths of the .jaif files
+     * @return the exit status of insert-annotations-to-source
+     */
+    private int insertAnnotations(Iterable<String> jaifPaths) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(INSERT_ANNOTATIONS_TO_SOURCE);
+        command.add("-i");
+        for (String jaifPath : jaifPaths) {
+            command.add(jaifPath);
+        }
+        command.addAll(javaFiles);
+        try {
+            return new ProcessBuilder(command).inheritIO().start().waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running " + INSERT_ANNOTATIONS_TO_SOURCE, e);
+        }
+    }
+
+    /**
+     * Replaces each {@code @file} argument by the lines of the file, as javac does.
+     *
+     * @param args the arguments
+     * @return the arguments with the argument files expanded
+     */
+    private static List<String> expandArgFiles(List<String> args) {
+        List<String> result = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("@")) {
+                File argFile = new File(arg.substring(1));
+                try {
+                    result.addAll(PluginUtil.readFile(argFile));
+                } catch (IOException e) {
+                    throw new RuntimeException(
+                            "Could not open file: " + argFile.getAbsolutePath(), e);
+                }
+            } else {
+                result.add(arg);
+            }
+        }
+        return result;
+    }
+}
@@ -92,6 +92,15 @@ public class WholeProgramInferenceScenes implements WholeProgramInference {
         helper = new WholeProgramInferenceScenesHelper(ignoreNullAssignments);
     }
 
+    /**
+     * @param ignoreNullAssignments whether assignments where the rhs is null should be ignored
+     * @param maxScenes the maximum number of Scenes to keep in memory after the results of a class
+     *     have been saved; see {@link WholeProgramInferenceScenesHelper}
+     */
+    public WholeProgramInferenceScenes(boolean ignoreNullAssignments, int maxScenes) {
+        helper = new WholeProgramInferenceScenesHelper(ignoreNullAssignments, maxScenes);
+    }
+
     /**
      * Updates the parameter types of the constructor created by objectCreationNode based on
      * arguments to the constructor.
@@ -5,9 +5,12 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.lang.annotation.Target;
+import java.nio.file.Files;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
@@ -15,6 +18,7 @@ import javax.lang.model.element.Element;
 import javax.lang.model.type.MirroredTypesException;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.framework.qual.DefaultFor;
 import org.checkerframework.framework.qual.DefaultQualifier;
 import org.checkerframework.framework.qual.DefaultQualifierInHierarchy;
@@ -52,6 +56,11 @@ import scenelib.annotations.io.IndexFileWriter;
  * #JAIF_FILES_PATH} directory. Having more information in those initial .jaif files means that the
  * precision achieved by the whole-program inference analysis will be better. {@link
  * #writeScenesToJaif} rewrites the initial .jaif files, and may create new ones.
+ *
+ * <p>If the number of Scenes is bounded (see the {@code -AinferMaxScenes} option), the least
+ * recently used Scenes are evicted from memory after they have been written. An evicted Scene that
+ * was modified is first written, with all of its annotations, into a temporary directory; it is
+ * read back from there the next time it is needed, so that later updates are merged with it.
  */
 public class WholeProgramInferenceScenesHelper {
 
@@ -71,8 +80,24 @@ public class WholeProgramInferenceScenesHelper {
     /** Indicates whether assignments where the rhs is null should be ignored. */
     private final boolean ignoreNullAssignments;
 
-    /** Maps .jaif file paths (Strings) to Scenes. Relative to JAIF_FILES_PATH. */
-    private final Map<String, AScene> scenes = new HashMap<>();
+    /**
+     * Maps .jaif file paths (Strings) to Scenes. Relative to JAIF_FILES_PATH. Ordered from the
+     * least to the most recently used Scene.
+     */
+    private final Map<String, AScene> scenes = new LinkedHashMap<>(16, .75F, true);
+
+    /** The maximum number of Scenes in {@link #scenes} after {@link #writeScenesToJaif}. */
+    private final int maxScenes;
+
+    /**
+     * Set of paths of the Scenes that were modified since they were read. Unlike the .jaif file,
+     * which omits the annotations that should be ignored, the spill file of such a Scene is out of
+     * date, so it must be written before the Scene is evicted.
+     */
+    private final Set<String> unspilledScenes = new HashSet<>();
+
+    /** Directory where evicted Scenes are written to, or null if none has been written yet. */
+    private @Nullable File spillDir;
 
     /**
      * Set representing Scenes that were modified since the last time all Scenes were written into
@@ -87,12 +112,23 @@ public class WholeProgramInferenceScenesHelper {
     private final Set<String> modifiedScenes = new HashSet<>();
 
     public WholeProgramInferenceScenesHelper(boolean ignoreNullAssignments) {
+        this(ignoreNullAssignments, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param ignoreNullAssignments whether assignments where the rhs is null should be ignored
+     * @param maxScenes the maximum number of Scenes to keep in memory between two calls to {@link
+     *     #writeScenesToJaif}
+     */
+    public WholeProgramInferenceScenesHelper(boolean ignoreNullAssignments, int maxScenes) {
         this.ignoreNullAssignments = ignoreNullAssignments;
+        this.maxScenes = maxScenes;
     }
 
     /**
      * Write all modified scenes into .jaif files. (Scenes are modified by the method {@link
-     * #updateAnnotationSetInScene}.)
+     * #updateAnnotationSetInScene}.) Then evict the least recently used scenes if there are more
+     * than the maximum number of them.
      */
     public void writeScenesToJaif() {
         // Create .jaif files directory if it doesn't exist already.
@@ -122,6 +158,67 @@ public class WholeProgramInferenceScenesHelper {
             }
         }
         modifiedScenes.clear();
+        evictScenes();
+    }
+
+    /**
+     * Removes the least recently used Scenes from {@link #scenes} until at most {@link #maxScenes}
+     * remain. Scenes that were modified since they were read are first written into {@link
+     * #spillDir}. Must only be called when no Scene has unwritten modifications.
+     */
+    private void evictScenes() {
+        Iterator<Map.Entry<String, AScene>> iter = scenes.entrySet().iterator();
+        while (scenes.size() > maxScenes && iter.hasNext()) {
+            Map.Entry<String, AScene> entry = iter.next();
+            if (unspilledScenes.remove(entry.getKey())) {
+                spillScene(entry.getKey(), entry.getValue());
+            }
+            iter.remove();
+        }
+    }
+
+    /**
+     * Writes a Scene, including the annotations that should be ignored, into its spill file.
+     *
+     * @param jaifPath the path of the .jaif file of the Scene
+     * @param scene the Scene
+     */
+    private void spillScene(String jaifPath, AScene scene) {
+        try {
+            if (spillDir == null) {
+                spillDir = Files.createTempDirectory("whole-program-inference").toFile();
+                spillDir.deleteOnExit();
+            }
+            File spillFile = getSpillFile(jaifPath);
+            spillFile.deleteOnExit();
+            AScene copy = scene.clone();
+            copy.prune();
+            try (FileWriter writer = new FileWriter(spillFile)) {
+                IndexFileWriter.write(copy, writer);
+            }
+        } catch (IOException e) {
+            ErrorReporter.errorAbort(
+                    "Problem while writing the evicted Scene of: "
+                            + jaifPath
+                            + ". Exception message: "
+                            + e.getMessage(),
+                    e);
+        } catch (DefException e) {
+            ErrorReporter.errorAbort(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the file that the Scene of a .jaif file is written to when it is evicted.
+     *
+     * @param jaifPath the path of the .jaif file of the Scene
+     * @return the spill file of the Scene, or null if no Scene has been spilled yet
+     */
+    private @Nullable File getSpillFile(String jaifPath) {
+        if (spillDir == null) {
+            return null;
+        }
+        return new File(spillDir, new File(jaifPath).getName());
     }
 
     /** Returns the String representing the .jaif path of a class given its name. */
@@ -132,20 +229,23 @@ public class WholeProgramInferenceScenesHelper {
 
     /**
      * Returns the Scene stored in a .jaif file path passed as input. If the file does not exist, an
-     * empty Scene is created.
+     * empty Scene is created. If the Scene was evicted, it is read from its spill file instead.
      */
     protected AScene getScene(String jaifPath) {
         AScene scene;
         if (!scenes.containsKey(jaifPath)) {
-            File jaifFile = new File(jaifPath);
+            File jaifFile = getSpillFile(jaifPath);
+            if (jaifFile == null || !jaifFile.exists()) {
+                jaifFile = new File(jaifPath);
+            }
             scene = new AScene();
             if (jaifFile.exists()) {
                 try {
-                    IndexFileParser.parseFile(jaifPath, scene);
+                    IndexFileParser.parseFile(jaifFile.getPath(), scene);
                 } catch (IOException e) {
                     ErrorReporter.errorAbort(
                             "Problem while reading file in: "
-                                    + jaifPath
+                                    + jaifFile
                                     + "."
                                     + " Exception message: "
                                     + e.getMessage(),
@@ -212,6 +312,7 @@ public class WholeProgramInferenceScenesHelper {
         }
         updateTypeElementFromATM(rhsATM, lhsATM, atf, type, 1, defLoc);
         modifiedScenes.add(jaifPath);
+        unspilledScenes.add(jaifPath);
     }
 
     /**
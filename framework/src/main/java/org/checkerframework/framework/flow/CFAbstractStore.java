@@ -1,6 +1,7 @@
 package org.checkerframework.framework.flow;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -30,6 +31,7 @@ import org.checkerframework.dataflow.qual.SideEffectFree;
 import org.checkerframework.dataflow.util.PurityUtils;
 import org.checkerframework.framework.qual.MonotonicQualifier;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
+import org.checkerframework.framework.util.PersistentHashMap;
 import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.ErrorReporter;
@@ -47,6 +49,9 @@ import org.checkerframework.javacutil.Pair;
  * methods in the subclasses as well. Also check if
  * BaseTypeVisitor#getFlowExpressionContextFromNode(Node) needs to be updated. Failing to do so may
  * result in silent failures that are time consuming to debug.
+ *
+ * <p>The maps of a store are {@link PersistentHashMap}s, so that copying a store takes constant
+ * time and the least upper bound of two stores only visits the parts in which they differ.
  */
 // TODO: this class should be split into parts that are reusable generally, and
 // parts specific to the checker framework
@@ -96,24 +101,24 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
 
     public CFAbstractStore(CFAbstractAnalysis<V, S, ?> analysis, boolean sequentialSemantics) {
         this.analysis = analysis;
-        localVariableValues = new HashMap<>();
+        localVariableValues = new PersistentHashMap<>();
         thisValue = null;
-        fieldValues = new HashMap<>();
-        methodValues = new HashMap<>();
-        arrayValues = new HashMap<>();
-        classValues = new HashMap<>();
+        fieldValues = new PersistentHashMap<>();
+        methodValues = new PersistentHashMap<>();
+        arrayValues = new PersistentHashMap<>();
+        classValues = new PersistentHashMap<>();
         this.sequentialSemantics = sequentialSemantics;
     }
 
     /** Copy constructor. */
     protected CFAbstractStore(CFAbstractStore<V, S> other) {
         this.analysis = other.analysis;
-        localVariableValues = new HashMap<>(other.localVariableValues);
+        localVariableValues = PersistentHashMap.copyOf(other.localVariableValues);
         thisValue = other.thisValue;
-        fieldValues = new HashMap<>(other.fieldValues);
-        methodValues = new HashMap<>(other.methodValues);
-        arrayValues = new HashMap<>(other.arrayValues);
-        classValues = new HashMap<>(other.classValues);
+        fieldValues = PersistentHashMap.copyOf(other.fieldValues);
+        methodValues = PersistentHashMap.copyOf(other.methodValues);
+        arrayValues = PersistentHashMap.copyOf(other.arrayValues);
+        classValues = PersistentHashMap.copyOf(other.classValues);
         sequentialSemantics = other.sequentialSemantics;
     }
 
@@ -184,8 +189,13 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
         if (!(analysis.checker.hasOption("assumeSideEffectFree")
                 || isSideEffectFree(atypeFactory, method))) {
             // update field values
-            Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
-            for (Entry<FlowExpressions.FieldAccess, V> e : fieldValues.entrySet()) {
+            // Entries are updated in place, so that unchanged entries stay shared with the
+            // stores this store was copied from.
+            List<Pair<FlowExpressions.FieldAccess, V>> updatedFieldValues = new ArrayList<>();
+            for (Iterator<Entry<FlowExpressions.FieldAccess, V>> it =
+                            fieldValues.entrySet().iterator();
+                    it.hasNext(); ) {
+                Entry<FlowExpressions.FieldAccess, V> e = it.next();
                 FlowExpressions.FieldAccess fieldAccess = e.getKey();
                 V otherVal = e.getValue();
 
@@ -212,19 +222,23 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
                 if (newOtherVal != null) {
                     // keep information for all hierarchies where we had a
                     // monotone annotation.
-                    newFieldValues.put(fieldAccess, newOtherVal);
+                    if (!newOtherVal.equals(otherVal)) {
+                        updatedFieldValues.add(Pair.of(fieldAccess, newOtherVal));
+                    }
                     continue;
                 }
 
                 // case 2:
                 if (!fieldAccess.isUnmodifiableByOtherCode()) {
-                    continue; // remove information completely
+                    it.remove(); // remove information completely
+                    continue;
                 }
 
                 // keep information
-                newFieldValues.put(fieldAccess, otherVal);
             }
-            fieldValues = newFieldValues;
+            for (Pair<FlowExpressions.FieldAccess, V> update : updatedFieldValues) {
+                fieldValues.put(update.first, update.second);
+            }
 
             // update method values
             methodValues.clear();
@@ -586,13 +600,18 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      *     abstract value is not known).
      */
     protected void removeConflicting(FlowExpressions.FieldAccess fieldAccess, @Nullable V val) {
-        Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
-        for (Entry<FlowExpressions.FieldAccess, V> e : fieldValues.entrySet()) {
+        // Entries are removed and updated in place, so that the remaining entries stay shared
+        // with the stores this store was copied from.
+        List<Pair<FlowExpressions.FieldAccess, V>> updatedFieldValues = new ArrayList<>();
+        for (Iterator<Entry<FlowExpressions.FieldAccess, V>> it = fieldValues.entrySet().iterator();
+                it.hasNext(); ) {
+            Entry<FlowExpressions.FieldAccess, V> e = it.next();
             FlowExpressions.FieldAccess otherFieldAccess = e.getKey();
             V otherVal = e.getValue();
             // case 2:
             if (otherFieldAccess.getReceiver().containsModifiableAliasOf(this, fieldAccess)) {
-                continue; // remove information completely
+                it.remove(); // remove information completely
+                continue;
             }
             // case 1:
             if (fieldAccess.getField().equals(otherFieldAccess.getField())) {
@@ -600,33 +619,30 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
                     if (!otherFieldAccess.isFinal()) {
                         if (val != null) {
                             V newVal = val.leastUpperBound(otherVal);
-                            newFieldValues.put(otherFieldAccess, newVal);
+                            updatedFieldValues.add(Pair.of(otherFieldAccess, newVal));
                         } else {
-                            // remove information completely
+                            it.remove(); // remove information completely
                         }
                         continue;
                     }
                 }
             }
             // information is save to be carried over
-            newFieldValues.put(otherFieldAccess, otherVal);
         }
-        fieldValues = newFieldValues;
+        for (Pair<FlowExpressions.FieldAccess, V> update : updatedFieldValues) {
+            fieldValues.put(update.first, update.second);
+        }
 
-        Map<FlowExpressions.ArrayAccess, V> newArrayValues = new HashMap<>();
-        for (Entry<ArrayAccess, V> e : arrayValues.entrySet()) {
-            FlowExpressions.ArrayAccess otherArrayAccess = e.getKey();
-            V otherVal = e.getValue();
+        for (Iterator<ArrayAccess> it = arrayValues.keySet().iterator(); it.hasNext(); ) {
+            FlowExpressions.ArrayAccess otherArrayAccess = it.next();
             if (otherArrayAccess.containsModifiableAliasOf(this, fieldAccess)) {
                 // remove information completely
-                continue;
+                it.remove();
             }
-            newArrayValues.put(otherArrayAccess, otherVal);
         }
-        arrayValues = newArrayValues;
 
         // case 3:
-        methodValues = new HashMap<>();
+        methodValues.clear();
     }
 
     /**
@@ -649,42 +665,36 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      *     abstract value is not known).
      */
     protected void removeConflicting(FlowExpressions.ArrayAccess arrayAccess, @Nullable V val) {
-        Map<FlowExpressions.ArrayAccess, V> newArrayValues = new HashMap<>();
-        for (Entry<FlowExpressions.ArrayAccess, V> e : arrayValues.entrySet()) {
-            FlowExpressions.ArrayAccess otherArrayAccess = e.getKey();
-            V otherVal = e.getValue();
+        for (Iterator<ArrayAccess> it = arrayValues.keySet().iterator(); it.hasNext(); ) {
+            FlowExpressions.ArrayAccess otherArrayAccess = it.next();
             // case 1:
             if (otherArrayAccess.containsModifiableAliasOf(this, arrayAccess)) {
-                continue; // remove information completely
+                it.remove(); // remove information completely
+                continue;
             }
             if (canAlias(arrayAccess.getReceiver(), otherArrayAccess.getReceiver())) {
                 // TODO: one could be less strict here, and only raise the
                 // abstract value
                 // for all array expressions with potentially aliasing receivers
-                continue; // remove information completely
+                it.remove(); // remove information completely
+                continue;
             }
             // information is save to be carried over
-            newArrayValues.put(otherArrayAccess, otherVal);
         }
-        arrayValues = newArrayValues;
 
         // case 2:
-        Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
-        for (Entry<FieldAccess, V> e : fieldValues.entrySet()) {
-            FlowExpressions.FieldAccess otherFieldAccess = e.getKey();
-            V otherVal = e.getValue();
+        for (Iterator<FieldAccess> it = fieldValues.keySet().iterator(); it.hasNext(); ) {
+            FlowExpressions.FieldAccess otherFieldAccess = it.next();
             Receiver receiver = otherFieldAccess.getReceiver();
             if (receiver.containsModifiableAliasOf(this, arrayAccess)
                     && receiver.containsOfClass(ArrayAccess.class)) {
                 // remove information completely
-                continue;
+                it.remove();
             }
-            newFieldValues.put(otherFieldAccess, otherVal);
         }
-        fieldValues = newFieldValues;
 
         // case 3:
-        methodValues = new HashMap<>();
+        methodValues.clear();
     }
 
     /**
@@ -701,39 +711,30 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      * </ol>
      */
     protected void removeConflicting(LocalVariable var) {
-        Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
-        for (Entry<FlowExpressions.FieldAccess, V> e : fieldValues.entrySet()) {
-            FlowExpressions.FieldAccess otherFieldAccess = e.getKey();
+        for (Iterator<FieldAccess> it = fieldValues.keySet().iterator(); it.hasNext(); ) {
+            FlowExpressions.FieldAccess otherFieldAccess = it.next();
             // case 1:
             if (otherFieldAccess.containsSyntacticEqualReceiver(var)) {
-                continue;
+                it.remove();
             }
-            newFieldValues.put(otherFieldAccess, e.getValue());
         }
-        fieldValues = newFieldValues;
 
-        Map<FlowExpressions.ArrayAccess, V> newArrayValues = new HashMap<>();
-        for (Entry<FlowExpressions.ArrayAccess, V> e : arrayValues.entrySet()) {
-            FlowExpressions.ArrayAccess otherArrayAccess = e.getKey();
+        for (Iterator<ArrayAccess> it = arrayValues.keySet().iterator(); it.hasNext(); ) {
+            FlowExpressions.ArrayAccess otherArrayAccess = it.next();
             // case 2:
             if (otherArrayAccess.containsSyntacticEqualReceiver(var)) {
-                continue;
+                it.remove();
             }
-            newArrayValues.put(otherArrayAccess, e.getValue());
         }
-        arrayValues = newArrayValues;
 
-        Map<FlowExpressions.MethodCall, V> newMethodValues = new HashMap<>();
-        for (Entry<FlowExpressions.MethodCall, V> e : methodValues.entrySet()) {
-            FlowExpressions.MethodCall otherMethodAccess = e.getKey();
+        for (Iterator<MethodCall> it = methodValues.keySet().iterator(); it.hasNext(); ) {
+            FlowExpressions.MethodCall otherMethodAccess = it.next();
             // case 3:
             if (otherMethodAccess.containsSyntacticEqualReceiver(var)
                     || otherMethodAccess.containsSyntacticEqualParameter(var)) {
-                continue;
+                it.remove();
             }
-            newMethodValues.put(otherMethodAccess, e.getValue());
         }
-        methodValues = newMethodValues;
     }
 
     /**
@@ -796,21 +797,13 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
     private S upperBound(S other, boolean shouldWiden) {
         S newStore = analysis.createEmptyStore(sequentialSemantics);
 
-        for (Entry<FlowExpressions.LocalVariable, V> e : other.localVariableValues.entrySet()) {
-            // local variables that are only part of one store, but not the
-            // other are discarded, as one of store implicitly contains 'top'
-            // for that variable.
-            FlowExpressions.LocalVariable localVar = e.getKey();
-            if (localVariableValues.containsKey(localVar)) {
-                V otherVal = e.getValue();
-                V thisVal = localVariableValues.get(localVar);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-
-                if (mergedVal != null) {
-                    newStore.localVariableValues.put(localVar, mergedVal);
-                }
-            }
-        }
+        // Information about expressions that are only part of one store, but not the other, is
+        // discarded, as one store implicitly contains 'top' for that expression.
+        upperBoundOfMaps(
+                localVariableValues,
+                other.localVariableValues,
+                newStore.localVariableValues,
+                shouldWiden);
 
         // information about the current object
         {
@@ -822,60 +815,49 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
             }
         }
 
-        for (Entry<FlowExpressions.FieldAccess, V> e : other.fieldValues.entrySet()) {
-            // information about fields that are only part of one store, but not
-            // the other are discarded, as one store implicitly contains 'top'
-            // for that field.
-            FlowExpressions.FieldAccess el = e.getKey();
-            if (fieldValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = fieldValues.get(el);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-                if (mergedVal != null) {
-                    newStore.fieldValues.put(el, mergedVal);
-                }
-            }
-        }
-        for (Entry<FlowExpressions.ArrayAccess, V> e : other.arrayValues.entrySet()) {
-            // information about arrays that are only part of one store, but not
-            // the other are discarded, as one store implicitly contains 'top'
-            // for that array access.
-            FlowExpressions.ArrayAccess el = e.getKey();
-            if (arrayValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = arrayValues.get(el);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-                if (mergedVal != null) {
-                    newStore.arrayValues.put(el, mergedVal);
-                }
-            }
-        }
-        for (Entry<MethodCall, V> e : other.methodValues.entrySet()) {
-            // information about methods that are only part of one store, but
-            // not the other are discarded, as one store implicitly contains
-            // 'top' for that field.
-            FlowExpressions.MethodCall el = e.getKey();
-            if (methodValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = methodValues.get(el);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-                if (mergedVal != null) {
-                    newStore.methodValues.put(el, mergedVal);
-                }
-            }
+        upperBoundOfMaps(fieldValues, other.fieldValues, newStore.fieldValues, shouldWiden);
+        upperBoundOfMaps(arrayValues, other.arrayValues, newStore.arrayValues, shouldWiden);
+        upperBoundOfMaps(methodValues, other.methodValues, newStore.methodValues, shouldWiden);
+        upperBoundOfMaps(classValues, other.classValues, newStore.classValues, shouldWiden);
+        return newStore;
+    }
+
+    /**
+     * Puts the upper bound of the values of each key that is in both {@code thisMap} and {@code
+     * otherMap} into {@code result}, which must be empty. If all three maps are {@link
+     * PersistentHashMap}s, the entries that {@code thisMap} and {@code otherMap} share are not
+     * visited.
+     */
+    private <K> void upperBoundOfMaps(
+            Map<K, V> thisMap, Map<K, V> otherMap, Map<K, V> result, final boolean shouldWiden) {
+        if (thisMap instanceof PersistentHashMap
+                && otherMap instanceof PersistentHashMap
+                && result instanceof PersistentHashMap) {
+            ((PersistentHashMap<K, V>) result)
+                    .setTo(
+                            ((PersistentHashMap<K, V>) thisMap)
+                                    .intersect(
+                                            (PersistentHashMap<K, V>) otherMap,
+                                            new PersistentHashMap.Merger<V>() {
+                                                @Override
+                                                public V merge(V thisVal, V otherVal) {
+                                                    return upperBoundOfValues(
+                                                            otherVal, thisVal, shouldWiden);
+                                                }
+                                            }));
+            return;
         }
-        for (Entry<FlowExpressions.ClassName, V> e : other.classValues.entrySet()) {
-            FlowExpressions.ClassName el = e.getKey();
-            if (classValues.containsKey(el)) {
+        for (Entry<K, V> e : otherMap.entrySet()) {
+            K key = e.getKey();
+            if (thisMap.containsKey(key)) {
                 V otherVal = e.getValue();
-                V thisVal = classValues.get(el);
+                V thisVal = thisMap.get(key);
                 V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
                 if (mergedVal != null) {
-                    newStore.classValues.put(el, mergedVal);
+                    result.put(key, mergedVal);
                 }
             }
         }
-        return newStore;
     }
 
     private V upperBoundOfValues(V otherVal, V thisVal, boolean shouldWiden) {
@@ -889,34 +871,25 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      * equals predicate.
      */
     protected boolean supersetOf(CFAbstractStore<V, S> other) {
-        for (Entry<FlowExpressions.LocalVariable, V> e : other.localVariableValues.entrySet()) {
-            FlowExpressions.LocalVariable key = e.getKey();
-            if (!localVariableValues.containsKey(key)
-                    || !localVariableValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<FlowExpressions.FieldAccess, V> e : other.fieldValues.entrySet()) {
-            FlowExpressions.FieldAccess key = e.getKey();
-            if (!fieldValues.containsKey(key) || !fieldValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<FlowExpressions.ArrayAccess, V> e : other.arrayValues.entrySet()) {
-            FlowExpressions.ArrayAccess key = e.getKey();
-            if (!arrayValues.containsKey(key) || !arrayValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<MethodCall, V> e : other.methodValues.entrySet()) {
-            FlowExpressions.MethodCall key = e.getKey();
-            if (!methodValues.containsKey(key) || !methodValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<FlowExpressions.ClassName, V> e : other.classValues.entrySet()) {
-            FlowExpressions.ClassName key = e.getKey();
-            if (!classValues.containsKey(key) || !classValues.get(key).equals(e.getValue())) {
+        return mapSupersetOf(localVariableValues, other.localVariableValues)
+                && mapSupersetOf(fieldValues, other.fieldValues)
+                && mapSupersetOf(arrayValues, other.arrayValues)
+                && mapSupersetOf(methodValues, other.methodValues)
+                && mapSupersetOf(classValues, other.classValues);
+    }
+
+    /**
+     * Returns true iff {@code thisMap} contains every entry of {@code otherMap}. Entries that two
+     * {@link PersistentHashMap}s share are not visited.
+     */
+    private static <K, V> boolean mapSupersetOf(Map<K, V> thisMap, Map<K, V> otherMap) {
+        if (thisMap instanceof PersistentHashMap && otherMap instanceof PersistentHashMap) {
+            return ((PersistentHashMap<K, V>) thisMap)
+                    .containsAllOf((PersistentHashMap<K, V>) otherMap);
+        }
+        for (Entry<K, V> e : otherMap.entrySet()) {
+            K key = e.getKey();
+            if (!thisMap.containsKey(key) || !thisMap.get(key).equals(e.getValue())) {
                 return false;
             }
         }
@@ -8,8 +8,13 @@ import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreePath;
+import java.lang.annotation.Annotation;
 import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.TypeKind;
@@ -18,11 +23,15 @@ import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.dataflow.cfg.CFGBuilder;
 import org.checkerframework.dataflow.cfg.ControlFlowGraph;
 import org.checkerframework.dataflow.cfg.UnderlyingAST;
+import org.checkerframework.framework.source.SharedTraversal;
+import org.checkerframework.framework.source.SharedTraversal.SharedCFG;
 import org.checkerframework.framework.source.SourceChecker;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.type.AnnotatedTypeMirror;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedArrayType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcardType;
+import org.checkerframework.javacutil.AnnotationProvider;
+import org.checkerframework.javacutil.BasicAnnotationProvider;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.TreeUtils;
 
@@ -33,7 +42,17 @@ import org.checkerframework.javacutil.TreeUtils;
 public class CFCFGBuilder extends CFGBuilder {
     protected CFCFGBuilder() {}
 
-    /** Build the control flow graph of some code. */
+    /**
+     * Build the control flow graph of some code.
+     *
+     * <p>If the checker has a {@link SharedTraversal}, a graph that another checker of the same run
+     * built for the same code is reused, and a graph that does not depend on the checker is shared
+     * with the other checkers. A graph depends on the checker if it contains an enhanced for loop,
+     * whose artificial variable is declared with an annotated type; an {@code assert} statement
+     * whose detail message mentions {@code @AssumeAssertion}; or a call to a method that the type
+     * factory, but not the method's own declaration, annotates with {@link
+     * org.checkerframework.dataflow.qual.TerminatesExecution}.
+     */
     public static ControlFlowGraph build(
             CompilationUnitTree root,
             UnderlyingAST underlyingAST,
@@ -47,18 +66,45 @@ public class CFCFGBuilder extends CFGBuilder {
                     "Assertions cannot be assumed to be enabled and disabled at the same time.");
         }
 
+        SharedTraversal sharedTraversal = checker.getSharedTraversal();
+        if (sharedTraversal != null) {
+            SharedCFG shared =
+                    sharedTraversal.getCFG(
+                            root, underlyingAST, assumeAssertionsEnabled, assumeAssertionsDisabled);
+            if (shared != null) {
+                for (Map.Entry<Tree, Element> artificialTree : shared.artificialTrees.entrySet()) {
+                    factory.setPathHack(artificialTree.getKey(), artificialTree.getValue());
+                }
+                return shared.cfg;
+            }
+        }
+
         CFTreeBuilder builder = new CFTreeBuilder(env);
-        PhaseOneResult phase1result =
+        CFCFGTranslationPhaseOne phase1 =
                 new CFCFGTranslationPhaseOne(
-                                builder,
-                                checker,
-                                factory,
-                                assumeAssertionsEnabled,
-                                assumeAssertionsDisabled,
-                                env)
-                        .process(root, underlyingAST);
+                        builder,
+                        checker,
+                        factory,
+                        assumeAssertionsEnabled,
+                        assumeAssertionsDisabled,
+                        env);
+        // The type factory finds the path without scanning the whole compilation unit.
+        TreePath bodyPath = factory.getPath(underlyingAST.getCode());
+        PhaseOneResult phase1result =
+                bodyPath != null
+                        ? phase1.process(bodyPath, underlyingAST)
+                        : phase1.process(root, underlyingAST);
         ControlFlowGraph phase2result = CFGTranslationPhaseTwo.process(phase1result);
         ControlFlowGraph phase3result = CFGTranslationPhaseThree.process(phase2result);
+
+        if (sharedTraversal != null && !phase1.isCheckerDependent()) {
+            sharedTraversal.putCFG(
+                    root,
+                    underlyingAST,
+                    assumeAssertionsEnabled,
+                    assumeAssertionsDisabled,
+                    new SharedCFG(phase3result, phase1.artificialTrees));
+        }
         return phase3result;
     }
 
@@ -90,6 +136,15 @@ public class CFCFGBuilder extends CFGBuilder {
         /** Type factory to provide types used during CFG building. */
         protected final AnnotatedTypeFactory factory;
 
+        /** Maps the artificial trees that were created to their enclosing method or class. */
+        protected final Map<Tree, Element> artificialTrees = new IdentityHashMap<>();
+
+        /** Whether the CFG depends on {@link #checker}; see {@link CFCFGBuilder#build}. */
+        private boolean checkerDependent = false;
+
+        /** The annotation provider that the superclass uses. */
+        private final RecordingAnnotationProvider annotationProvider;
+
         public CFCFGTranslationPhaseOne(
                 CFTreeBuilder builder,
                 BaseTypeChecker checker,
@@ -97,13 +152,50 @@ public class CFCFGBuilder extends CFGBuilder {
                 boolean assumeAssertionsEnabled,
                 boolean assumeAssertionsDisabled,
                 ProcessingEnvironment env) {
-            super(builder, factory, assumeAssertionsEnabled, assumeAssertionsDisabled, env);
+            this(
+                    builder,
+                    checker,
+                    factory,
+                    new RecordingAnnotationProvider(factory),
+                    assumeAssertionsEnabled,
+                    assumeAssertionsDisabled,
+                    env);
+        }
+
+        private CFCFGTranslationPhaseOne(
+                CFTreeBuilder builder,
+                BaseTypeChecker checker,
+                AnnotatedTypeFactory factory,
+                RecordingAnnotationProvider annotationProvider,
+                boolean assumeAssertionsEnabled,
+                boolean assumeAssertionsDisabled,
+                ProcessingEnvironment env) {
+            super(
+                    builder,
+                    annotationProvider,
+                    assumeAssertionsEnabled,
+                    assumeAssertionsDisabled,
+                    env);
             this.checker = checker;
             this.factory = factory;
+            this.annotationProvider = annotationProvider;
+        }
+
+        /**
+         * @return whether the CFG depends on the checker, so it must not be shared with other
+         *     checkers
+         */
+        public boolean isCheckerDependent() {
+            return checkerDependent || annotationProvider.checkerDependent;
         }
 
         @Override
         protected boolean assumeAssertionsEnabledFor(AssertTree tree) {
+            ExpressionTree detail = tree.getDetail();
+            if (detail != null && detail.toString().contains("@AssumeAssertion(")) {
+                // Whether the assertion is assumed depends on the suppress warnings keys.
+                checkerDependent = true;
+            }
             if (assumeAssertionsActivatedForAssertTree(checker, tree)) {
                 return true;
             }
@@ -117,11 +209,13 @@ public class CFCFGBuilder extends CFGBuilder {
             if (enclosingMethod != null) {
                 Element methodElement = TreeUtils.elementFromDeclaration(enclosingMethod);
                 factory.setPathHack(tree, methodElement);
+                artificialTrees.put(tree, methodElement);
             } else {
                 ClassTree enclosingClass = TreeUtils.enclosingClass(getCurrentPath());
                 if (enclosingClass != null) {
                     Element classElement = TreeUtils.elementFromDeclaration(enclosingClass);
                     factory.setPathHack(tree, classElement);
+                    artificialTrees.put(tree, classElement);
                 }
             }
         }
@@ -129,6 +223,9 @@ public class CFCFGBuilder extends CFGBuilder {
         @Override
         protected VariableTree createEnhancedForLoopIteratorVariable(
                 MethodInvocationTree iteratorCall, VariableElement variableElement) {
+            // The artificial variable is declared with an annotated type of this checker.
+            checkerDependent = true;
+
             // We do not want to cache flow-insensitive types
             // retrieved during CFG building.
             boolean oldShouldCache = factory.shouldCache;
@@ -153,6 +250,9 @@ public class CFCFGBuilder extends CFGBuilder {
         @Override
         protected VariableTree createEnhancedForLoopArrayVariable(
                 ExpressionTree expression, VariableElement variableElement) {
+            // The artificial variable is declared with an annotated type of this checker.
+            checkerDependent = true;
+
             // We do not want to cache flow-insensitive types
             // retrieved during CFG building.
             boolean oldShouldCache = factory.shouldCache;
@@ -186,4 +286,42 @@ public class CFCFGBuilder extends CFGBuilder {
             return arrayVariable;
         }
     }
+
+    /**
+     * An annotation provider that delegates to a type factory and records whether the type factory
+     * returned a different declaration annotation than the element itself has, for example one from
+     * a stub file.
+     */
+    private static class RecordingAnnotationProvider implements AnnotationProvider {
+        /** The type factory to delegate to. */
+        private final AnnotationProvider factory;
+
+        /** The annotations of the elements themselves. */
+        private final AnnotationProvider elementAnnotations = new BasicAnnotationProvider();
+
+        /** Whether an annotation came from somewhere other than the element or tree itself. */
+        boolean checkerDependent = false;
+
+        RecordingAnnotationProvider(AnnotationProvider factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public AnnotationMirror getDeclAnnotation(Element elt, Class<? extends Annotation> anno) {
+            AnnotationMirror result = factory.getDeclAnnotation(elt, anno);
+            if ((result == null) != (elementAnnotations.getDeclAnnotation(elt, anno) == null)) {
+                checkerDependent = true;
+            }
+            return result;
+        }
+
+        @Override
+        public AnnotationMirror getAnnotationMirror(Tree tree, Class<? extends Annotation> target) {
+            AnnotationMirror result = factory.getAnnotationMirror(tree, target);
+            if (result != null) {
+                checkerDependent = true;
+            }
+            return result;
+        }
+    }
 }
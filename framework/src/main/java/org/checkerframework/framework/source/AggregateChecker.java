@@ -25,6 +25,8 @@ import javax.tools.Diagnostic.Kind;
  * shorthand to invoke a sequence of checkers.
  *
  * <p>This class delegates {@code AbstractTypeProcessor} responsibilities to each component checker.
+ * The component checkers share the javac-level results that do not depend on the type system, see
+ * {@link SharedTraversal}.
  *
  * <p>Checker writers need to subclass this class and only override {@link #getSupportedCheckers()}
  * to indicate the classes of the checkers to be bundled.
@@ -97,6 +99,9 @@ public abstract class AggregateChecker extends SourceChecker {
     // AbstractTypeProcessor delegation
     @Override
     public final void typeProcess(TypeElement element, TreePath tree) {
+        if (skipTypeProcess(element, tree)) {
+            return;
+        }
         Context context = ((JavacProcessingEnvironment) processingEnv).getContext();
         Log log = Log.instance(context);
         if (log.nerrors > this.errsOnLastExit) {
@@ -154,6 +159,16 @@ public abstract class AggregateChecker extends SourceChecker {
         return lints;
     }
 
+    /**
+     * The component checkers type-check each class one after the other, so they share the tree
+     * paths and the control flow graphs of the compilation unit: only the first checker computes
+     * them.
+     */
+    @Override
+    protected SharedTraversal createSharedTraversal() {
+        return new SharedTraversal();
+    }
+
     @Override
     protected SourceVisitor<?, ?> createSourceVisitor() {
         return new SourceVisitor<Void, Void>(this) {
@@ -0,0 +1,605 @@
+package org.checkerframework.framework.source;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreeScanner;
+import com.sun.source.util.Trees;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.framework.type.AnnotatedTypeFactory;
+import org.checkerframework.javacutil.ElementUtils;
+import org.checkerframework.javacutil.ErrorReporter;
+import org.checkerframework.javacutil.TreeUtils;
+
+/**
+ * Implements the {@code -AincrementalCache} mode of {@link SourceChecker}.
+ *
+ * <p>For each compilation unit, the store records a fingerprint and the diagnostics that the
+ * checker issued for it. In a later run, a compilation unit whose fingerprint is unchanged is not
+ * type-checked; instead, its recorded diagnostics are issued again.
+ *
+ * <p>The fingerprint of a compilation unit covers the checker class, the checker's options, the
+ * source text of the unit, and the signatures of the elements it uses that are declared elsewhere,
+ * including their annotations and, for a {@link BaseTypeChecker}, their annotated types as computed
+ * by {@link AnnotatedTypeFactory#fromElement(Element)}. The signatures of the supertypes of each
+ * class declared in the unit and of the methods its methods override are included as well. A
+ * change to a stub file that is not reflected in the top-level checker's annotated types, or a
+ * change in the bodies of other classes that affects type refinement, is not detected; delete the
+ * cache file in that case. Only the direct dependencies of the unit are covered, not their
+ * dependencies in turn: for example, a change to the supertypes of the return type of a method that
+ * the unit calls is not detected.
+ *
+ * <p>A compilation unit for which the checker issued a diagnostic that is not attached to a tree
+ * of the unit is never skipped.
+ */
+final class IncrementalCheckingStore {
+
+    /** Identifies the file format. */
+    private static final int MAGIC = 0xCF1C0DE5;
+
+    /** The version of the file format; increment it on every incompatible change. */
+    private static final int VERSION = 1;
+
+    /** The file from which the results of the previous run are read and to which they are saved. */
+    private final File file;
+
+    /** The checker whose results are stored. */
+    private final SourceChecker checker;
+
+    /** The results of previous runs, keyed by the URI of the source file. */
+    private final Map<String, UnitResult> previous;
+
+    /** The results of this run. */
+    private final Map<CompilationUnitTree, UnitResult> current = new IdentityHashMap<>();
+
+    /**
+     * The compilation units that are skipped in this run because their fingerprint is unchanged.
+     */
+    private final Set<CompilationUnitTree> skipped =
+            Collections.newSetFromMap(new IdentityHashMap<CompilationUnitTree, Boolean>());
+
+    /**
+     * Creates a store that reads the results of a previous run from the given file, if it exists
+     * and is readable.
+     *
+     * @param file the cache file
+     * @param checker the top-level checker
+     */
+    IncrementalCheckingStore(File file, SourceChecker checker) {
+        this.file = file;
+        this.checker = checker;
+        this.previous = read(file);
+    }
+
+    /**
+     * If the given compilation unit is unchanged since the previous run, issues the diagnostics
+     * recorded in that run and returns true. Otherwise, starts recording the diagnostics for the
+     * compilation unit and returns false.
+     *
+     * <p>This method is called for every class of a compilation unit; all calls for one compilation
+     * unit return the same value, and the diagnostics are issued at most once.
+     *
+     * @param root the compilation unit
+     * @return true if the compilation unit need not be type-checked
+     */
+    boolean skipIfUnchanged(CompilationUnitTree root) {
+        if (skipped.contains(root)) {
+            return true;
+        }
+        if (current.containsKey(root)) {
+            return false;
+        }
+        String fingerprint = fingerprint(root);
+        UnitResult prev = previous.get(uri(root));
+        if (fingerprint != null && prev != null && prev.fingerprint.equals(fingerprint)) {
+            skipped.add(root);
+            current.put(root, prev);
+            replay(root, prev);
+            return true;
+        }
+        UnitResult result = new UnitResult(fingerprint);
+        // Never reuse the results for a compilation unit whose content is unknown.
+        result.reusable = fingerprint != null;
+        current.put(root, result);
+        return false;
+    }
+
+    /**
+     * Records a diagnostic that is attached to a tree of the given compilation unit. If the tree
+     * belongs to another compilation unit, its positions would refer to the wrong file, so the
+     * results for {@code root} are marked as not reusable instead.
+     *
+     * @param root the compilation unit
+     * @param kind the kind of diagnostic
+     * @param message the message text
+     * @param tree the tree at which the diagnostic is reported
+     */
+    void record(CompilationUnitTree root, Diagnostic.Kind kind, String message, Tree tree) {
+        UnitResult result = current.get(root);
+        if (result == null || skipped.contains(root)) {
+            return;
+        }
+        TreePath path = getPath(root, tree);
+        if (path == null || path.getCompilationUnit() != root) {
+            result.reusable = false;
+            return;
+        }
+        SourcePositions positions = checker.getTreeUtils().getSourcePositions();
+        result.diagnostics.add(
+                new RecordedDiagnostic(
+                        kind,
+                        positions.getStartPosition(root, tree),
+                        positions.getEndPosition(root, tree),
+                        message));
+    }
+
+    /**
+     * Returns the path of a tree in the given compilation unit, using the tree path cache of the
+     * type factories if it belongs to that compilation unit.
+     *
+     * @param root the compilation unit
+     * @param tree the tree to find
+     * @return the path of {@code tree}, or null if it is not in {@code root}
+     */
+    private @Nullable TreePath getPath(CompilationUnitTree root, Tree tree) {
+        SharedTraversal sharedTraversal = checker.getSharedTraversal();
+        if (sharedTraversal != null) {
+            return sharedTraversal.getTreePathCache(root).getPath(root, tree);
+        }
+        if (checker instanceof BaseTypeChecker && checker.currentRoot == root) {
+            return ((BaseTypeChecker) checker).getTypeFactory().getPath(tree);
+        }
+        return TreePath.getPath(root, tree);
+    }
+
+    /**
+     * Marks the results for the given compilation unit as not reusable, because a diagnostic was
+     * issued that cannot be replayed.
+     *
+     * @param root the compilation unit, or null if unknown
+     */
+    void invalidate(@Nullable CompilationUnitTree root) {
+        if (root == null) {
+            return;
+        }
+        UnitResult result = current.get(root);
+        if (result != null && !skipped.contains(root)) {
+            result.reusable = false;
+        }
+    }
+
+    /** Writes the results of this run, and of previous runs for units not seen in this run. */
+    void save() {
+        Map<String, UnitResult> all = new TreeMap<>(previous);
+        for (Map.Entry<CompilationUnitTree, UnitResult> entry : current.entrySet()) {
+            String uri = uri(entry.getKey());
+            if (entry.getValue().reusable) {
+                all.put(uri, entry.getValue());
+            } else {
+                all.remove(uri);
+            }
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        try (DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(all.size());
+            for (Map.Entry<String, UnitResult> entry : all.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue().fingerprint);
+                out.writeInt(entry.getValue().diagnostics.size());
+                for (RecordedDiagnostic d : entry.getValue().diagnostics) {
+                    writeString(out, d.kind.name());
+                    out.writeLong(d.start);
+                    out.writeLong(d.end);
+                    writeString(out, d.message);
+                }
+            }
+        } catch (IOException e) {
+            checker.message(
+                    Diagnostic.Kind.WARNING,
+                    "Could not write incremental checking cache %s: %s",
+                    file,
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Issues the recorded diagnostics of a compilation unit again.
+     *
+     * @param root the compilation unit
+     * @param result the recorded results for the compilation unit
+     */
+    private void replay(CompilationUnitTree root, UnitResult result) {
+        if (result.diagnostics.isEmpty()) {
+            return;
+        }
+        Trees trees = checker.getTreeUtils();
+        Map<Position, Tree> treesByPosition = indexTrees(root, trees.getSourcePositions());
+        for (RecordedDiagnostic d : result.diagnostics) {
+            Tree tree = treesByPosition.get(new Position(d.start, d.end));
+            trees.printMessage(d.kind, d.message, tree != null ? tree : root, root);
+        }
+    }
+
+    /**
+     * Returns a map from the start and end position of each tree in the compilation unit to the
+     * outermost tree with these positions.
+     */
+    private static Map<Position, Tree> indexTrees(
+            final CompilationUnitTree root, final SourcePositions positions) {
+        final Map<Position, Tree> result = new HashMap<>();
+        new TreeScanner<Void, Void>() {
+            @Override
+            public Void scan(Tree tree, Void p) {
+                if (tree != null) {
+                    Position k =
+                            new Position(
+                                    positions.getStartPosition(root, tree),
+                                    positions.getEndPosition(root, tree));
+                    if (!result.containsKey(k)) {
+                        result.put(k, tree);
+                    }
+                }
+                return super.scan(tree, p);
+            }
+        }.scan(root, null);
+        return result;
+    }
+
+    /**
+     * Computes the fingerprint of a compilation unit.
+     *
+     * @param root the compilation unit
+     * @return the fingerprint of {@code root}, or null if its source cannot be read
+     */
+    private @Nullable String fingerprint(CompilationUnitTree root) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            ErrorReporter.errorAbort("IncrementalCheckingStore: SHA-256 is not available", e);
+            return null; // dead code
+        }
+        update(md, checker.getClass().getName());
+        update(md, new TreeMap<>(checker.getOptions()).toString());
+        try {
+            update(md, root.getSourceFile().getCharContent(true).toString());
+        } catch (IOException e) {
+            return null;
+        }
+        for (String signature : dependencySignatures(root)) {
+            update(md, signature);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : md.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /** Adds the string, and a separator, to the digest. */
+    private static void update(MessageDigest md, String s) {
+        md.update(s.getBytes(StandardCharsets.UTF_8));
+        md.update((byte) 0);
+    }
+
+    /**
+     * Returns the sorted signatures of the elements that the compilation unit uses but does not
+     * declare, of the supertypes of its classes, and of the methods that its methods override.
+     */
+    private Set<String> dependencySignatures(CompilationUnitTree root) {
+        final Set<Element> declared = new HashSet<>();
+        final Set<Element> used = new HashSet<>();
+        new TreeScanner<Void, Void>() {
+            @Override
+            public Void visitClass(ClassTree tree, Void p) {
+                TypeElement elt = TreeUtils.elementFromDeclaration(tree);
+                if (elt != null) {
+                    declared.add(elt);
+                    addSupertypes(elt.asType(), used);
+                }
+                return super.visitClass(tree, p);
+            }
+
+            @Override
+            public Void visitMethod(MethodTree tree, Void p) {
+                ExecutableElement elt = TreeUtils.elementFromDeclaration(tree);
+                if (elt != null) {
+                    declared.add(elt);
+                    used.addAll(overriddenMethods(elt));
+                }
+                return super.visitMethod(tree, p);
+            }
+
+            @Override
+            public Void visitVariable(VariableTree tree, Void p) {
+                declared.add(TreeUtils.elementFromDeclaration(tree));
+                return super.visitVariable(tree, p);
+            }
+
+            @Override
+            public Void visitIdentifier(IdentifierTree tree, Void p) {
+                addUse(tree);
+                return super.visitIdentifier(tree, p);
+            }
+
+            @Override
+            public Void visitMemberSelect(MemberSelectTree tree, Void p) {
+                addUse(tree);
+                return super.visitMemberSelect(tree, p);
+            }
+
+            @Override
+            public Void visitMemberReference(MemberReferenceTree tree, Void p) {
+                addUse(tree);
+                return super.visitMemberReference(tree, p);
+            }
+
+            @Override
+            public Void visitMethodInvocation(MethodInvocationTree tree, Void p) {
+                addUse(tree);
+                return super.visitMethodInvocation(tree, p);
+            }
+
+            @Override
+            public Void visitNewClass(NewClassTree tree, Void p) {
+                addUse(tree);
+                return super.visitNewClass(tree, p);
+            }
+
+            private void addUse(Tree tree) {
+                Element elt = TreeUtils.elementFromTree(tree);
+                if (elt != null) {
+                    used.add(elt);
+                }
+            }
+        }.scan(root, null);
+
+        AnnotatedTypeFactory atypeFactory =
+                checker instanceof BaseTypeChecker
+                        ? ((BaseTypeChecker) checker).getTypeFactory()
+                        : null;
+        if (atypeFactory != null && checker.currentRoot == null) {
+            // The annotated type of an element that is declared elsewhere does not depend on the
+            // compilation unit that the factory is set to, but the factory must be set to one.
+            // The checker is about to set it to root anyway.
+            atypeFactory.setRoot(root);
+        }
+        return signatures(used, declared, atypeFactory);
+    }
+
+    /**
+     * Returns the sorted signatures of the used elements that are not declared.
+     *
+     * @param used the elements that a compilation unit uses
+     * @param declared the elements that the compilation unit declares
+     * @param atypeFactory the type factory to compute annotated types with, or null
+     * @return the signatures of the elements in {@code used} but not in {@code declared}
+     */
+    private static Set<String> signatures(
+            Set<Element> used,
+            Set<Element> declared,
+            @Nullable AnnotatedTypeFactory atypeFactory) {
+        Set<String> result = new TreeSet<>();
+        for (Element elt : used) {
+            if (declared.contains(elt) || !isSignatureElement(elt)) {
+                continue;
+            }
+            StringBuilder sb = new StringBuilder();
+            Element enclosing = elt.getEnclosingElement();
+            sb.append(enclosing == null ? "" : enclosing.toString());
+            sb.append('#');
+            sb.append(elt);
+            sb.append(':');
+            sb.append(elt.asType());
+            for (AnnotationMirror anno : elt.getAnnotationMirrors()) {
+                sb.append(' ');
+                sb.append(anno);
+            }
+            if (atypeFactory != null) {
+                sb.append(" / ");
+                sb.append(atypeFactory.fromElement(elt).toString(true));
+            }
+            result.add(sb.toString());
+        }
+        return result;
+    }
+
+    /** Adds the elements of all supertypes of the given type to the set. */
+    private void addSupertypes(TypeMirror type, Set<Element> result) {
+        for (TypeMirror supertype : checker.getTypeUtils().directSupertypes(type)) {
+            if (supertype.getKind() == TypeKind.DECLARED
+                    && result.add(((DeclaredType) supertype).asElement())) {
+                addSupertypes(supertype, result);
+            }
+        }
+    }
+
+    /** Returns the methods that the given method overrides. */
+    private List<Element> overriddenMethods(ExecutableElement method) {
+        List<Element> result = new ArrayList<>();
+        TypeElement enclosing = ElementUtils.enclosingClass(method);
+        if (enclosing == null) {
+            return result;
+        }
+        Set<Element> supertypes = new HashSet<>();
+        addSupertypes(enclosing.asType(), supertypes);
+        for (Element supertype : supertypes) {
+            for (Element member : supertype.getEnclosedElements()) {
+                if (member.getKind() == ElementKind.METHOD
+                        && checker.getElementUtils()
+                                .overrides(method, (ExecutableElement) member, enclosing)) {
+                    result.add(member);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Whether the element's signature can affect the checking of code that uses it. */
+    private static boolean isSignatureElement(Element elt) {
+        switch (elt.getKind()) {
+            case LOCAL_VARIABLE:
+            case PARAMETER:
+            case EXCEPTION_PARAMETER:
+            case RESOURCE_VARIABLE:
+            case PACKAGE:
+            case TYPE_PARAMETER:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /** Returns the key of a compilation unit in the cache file. */
+    private static String uri(CompilationUnitTree root) {
+        return root.getSourceFile().toUri().toString();
+    }
+
+    /**
+     * Reads the results of previous runs from the cache file. Returns an empty map if the file does
+     * not exist or cannot be read.
+     */
+    private static Map<String, UnitResult> read(File file) {
+        Map<String, UnitResult> result = new LinkedHashMap<>();
+        if (!file.isFile()) {
+            return result;
+        }
+        try (DataInputStream in =
+                new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return result;
+            }
+            int units = in.readInt();
+            for (int i = 0; i < units; i++) {
+                String uri = readString(in);
+                UnitResult unit = new UnitResult(readString(in));
+                int diagnostics = in.readInt();
+                for (int j = 0; j < diagnostics; j++) {
+                    Diagnostic.Kind kind = Diagnostic.Kind.valueOf(readString(in));
+                    long start = in.readLong();
+                    long end = in.readLong();
+                    unit.diagnostics.add(new RecordedDiagnostic(kind, start, end, readString(in)));
+                }
+                result.put(uri, unit);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // A corrupt or incompatible file is treated like a missing one.
+            result.clear();
+        }
+        return result;
+    }
+
+    /** Writes a string of any length in UTF-8. */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Reads a string written by {@link #writeString}. */
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** The fingerprint of a compilation unit and the diagnostics issued for it. */
+    private static class UnitResult {
+        /** The fingerprint; null if it could not be computed. */
+        final @Nullable String fingerprint;
+        final List<RecordedDiagnostic> diagnostics = new ArrayList<>();
+        /** False if a diagnostic was issued that is not in {@link #diagnostics}. */
+        boolean reusable = true;
+
+        UnitResult(@Nullable String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /** The start and end position of a tree, which identify the tree within its file. */
+    private static final class Position {
+        final long start;
+        final long end;
+
+        Position(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Position)) {
+                return false;
+            }
+            Position other = (Position) o;
+            return start == other.start && end == other.end;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(start) * 31 + Long.hashCode(end);
+        }
+    }
+
+    /** A diagnostic, with the source positions of the tree at which it was reported. */
+    private static class RecordedDiagnostic {
+        final Diagnostic.Kind kind;
+        final long start;
+        final long end;
+        final String message;
+
+        RecordedDiagnostic(Diagnostic.Kind kind, long start, long end, String message) {
+            this.kind = kind;
+            this.start = start;
+            this.end = end;
+            this.message = message;
+        }
+    }
+}
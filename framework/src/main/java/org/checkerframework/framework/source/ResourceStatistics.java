@@ -0,0 +1,335 @@
+package org.checkerframework.framework.source;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.javacutil.CollectionUtils;
+import org.checkerframework.javacutil.CollectionUtils.CacheStatistics;
+
+/**
+ * Collects the statistics of the {@code -AresourceStats} and {@code -AresourceStatsJson} options:
+ * the time that each checker spends in each {@link Phase}, per compilation unit.
+ *
+ * <p>Times are exclusive: while a phase runs, the phase that was running before is paused. For
+ * example, the time of {@link Phase#VISITOR} does not include the time of computing the types that
+ * the visitor requests, and the time of {@link Phase#DATAFLOW_ANALYSIS} does not include the time
+ * of computing the types that the transfer functions request.
+ *
+ * <p>A checker and its subcheckers share one instance, see {@link
+ * SourceChecker#getResourceStatistics()}. An instance must only be used by one thread.
+ */
+public class ResourceStatistics {
+
+    /** The phases that are timed. */
+    public enum Phase {
+        /** Parsing stub files, including the annotated JDK stub file. */
+        STUB_PARSING("stubParsing"),
+        /** Building control flow graphs. */
+        CFG_CONSTRUCTION("cfgConstruction"),
+        /** Running dataflow analyses. */
+        DATAFLOW_ANALYSIS("dataflowAnalysis"),
+        /** Computing annotated types in the type factory. */
+        TYPE_ANNOTATION("typeAnnotation"),
+        /** Running the visitor of the checker. */
+        VISITOR("visitor");
+
+        /** The name of this phase in the output. */
+        final String outputName;
+
+        Phase(String outputName) {
+            this.outputName = outputName;
+        }
+    }
+
+    /** The name of the compilation unit of times that are spent outside any compilation unit. */
+    private static final String NO_COMPILATION_UNIT = "(initialization)";
+
+    /** Whether statistics are collected. */
+    private final boolean enabled;
+
+    /**
+     * Maps a checker name to a map from the name of a compilation unit to the nanoseconds spent in
+     * each phase, indexed by {@link Phase#ordinal()}.
+     */
+    private final Map<String, Map<String, long[]>> times = new LinkedHashMap<>();
+
+    /** The compilation unit that is being checked. */
+    private String compilationUnit = NO_COMPILATION_UNIT;
+
+    /** The running phases, innermost first. */
+    private final Deque<RunningPhase> running = new ArrayDeque<>();
+
+    /** The value of {@link System#nanoTime()} when the innermost running phase was last charged. */
+    private long lastCharged;
+
+    /** A phase that was started and not yet stopped. */
+    private static class RunningPhase {
+        /** The times to charge, see {@link ResourceStatistics#times}. */
+        final long[] times;
+        /** The phase. */
+        final Phase phase;
+
+        RunningPhase(long[] times, Phase phase) {
+            this.times = times;
+            this.phase = phase;
+        }
+    }
+
+    /** @param enabled whether to collect statistics; if false, all methods do nothing */
+    public ResourceStatistics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /** @return whether statistics are collected */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Charge the time from now on to the compilation unit {@code name}.
+     *
+     * @param name the name of the source file of the compilation unit
+     */
+    public void setCompilationUnit(String name) {
+        this.compilationUnit = name;
+    }
+
+    /**
+     * Start timing {@code phase} for {@code checker}, pausing the phase that is running. Every call
+     * must be followed by a call to {@link #stop()}, in a {@code finally} block.
+     *
+     * @param checker the checker whose time to charge
+     * @param phase the phase that starts
+     */
+    public void start(SourceChecker checker, Phase phase) {
+        if (!enabled) {
+            return;
+        }
+        chargeRunning();
+        running.push(new RunningPhase(timesOf(checker.getClass().getName()), phase));
+    }
+
+    /** Stop timing the phase that was started last, and resume the phase that was paused. */
+    public void stop() {
+        if (!enabled) {
+            return;
+        }
+        chargeRunning();
+        running.pop();
+    }
+
+    /** Charge the time since {@link #lastCharged} to the innermost running phase. */
+    private void chargeRunning() {
+        long now = System.nanoTime();
+        RunningPhase innermost = running.peek();
+        if (innermost != null) {
+            innermost.times[innermost.phase.ordinal()] += now - lastCharged;
+        }
+        lastCharged = now;
+    }
+
+    /** @return the times of the checker {@code checkerName} in the current compilation unit */
+    private long[] timesOf(String checkerName) {
+        Map<String, long[]> timesOfChecker = times.get(checkerName);
+        if (timesOfChecker == null) {
+            timesOfChecker = new LinkedHashMap<>();
+            times.put(checkerName, timesOfChecker);
+        }
+        long[] result = timesOfChecker.get(compilationUnit);
+        if (result == null) {
+            result = new long[Phase.values().length];
+            timesOfChecker.put(compilationUnit, result);
+        }
+        return result;
+    }
+
+    /** @return the sum of the times of all compilation units of {@code timesOfChecker} */
+    private static long[] total(Map<String, long[]> timesOfChecker) {
+        long[] result = new long[Phase.values().length];
+        for (long[] unitTimes : timesOfChecker.values()) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] += unitTimes[i];
+            }
+        }
+        return result;
+    }
+
+    /** @return {@code nanos} in milliseconds, with three decimals */
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    /**
+     * Print the total time of each checker in each phase, and the hit and miss counts of the LRU
+     * caches.
+     *
+     * @param out the stream to print to
+     */
+    public void print(PrintStream out) {
+        for (Map.Entry<String, Map<String, long[]>> checker : times.entrySet()) {
+            out.println("Time of " + checker.getKey() + ":");
+            long[] total = total(checker.getValue());
+            for (Phase phase : Phase.values()) {
+                out.println(
+                        "  " + phase.outputName + ": " + millis(total[phase.ordinal()]) + " ms");
+            }
+        }
+        for (CacheStatistics cache : CollectionUtils.getCacheStatistics()) {
+            long lookups = cache.getHits() + cache.getMisses();
+            out.println(
+                    "Cache "
+                            + cache.getName()
+                            + ": "
+                            + cache.getHits()
+                            + " hits, "
+                            + cache.getMisses()
+                            + " misses"
+                            + (lookups == 0
+                                    ? ""
+                                    : String.format(
+                                            Locale.ROOT,
+                                            " (%.1f%% hit rate)",
+                                            100.0 * cache.getHits() / lookups)));
+        }
+    }
+
+    /**
+     * Write the times of each checker in each phase, per compilation unit and in total, the hit
+     * and miss counts of the LRU caches, and the peak usage of the memory pools to {@code file}, as
+     * a JSON object. Times are in milliseconds and memory usage is in bytes.
+     *
+     * @param file the file to write; it is overwritten
+     * @throws IOException if the file cannot be written
+     */
+    public void writeJson(File file) throws IOException {
+        try (PrintWriter out =
+                new PrintWriter(
+                        new OutputStreamWriter(
+                                new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            out.println("{");
+            out.println("  \"checkers\": [");
+            for (Iterator<Map.Entry<String, Map<String, long[]>>> checkers =
+                            times.entrySet().iterator();
+                    checkers.hasNext(); ) {
+                Map.Entry<String, Map<String, long[]>> checker = checkers.next();
+                out.println("    {");
+                out.println("      \"checker\": " + jsonString(checker.getKey()) + ",");
+                out.println("      \"total\": " + jsonTimes(total(checker.getValue())) + ",");
+                out.println("      \"compilationUnits\": [");
+                for (Iterator<Map.Entry<String, long[]>> units =
+                                checker.getValue().entrySet().iterator();
+                        units.hasNext(); ) {
+                    Map.Entry<String, long[]> unit = units.next();
+                    out.println(
+                            "        {\"file\": "
+                                    + jsonString(unit.getKey())
+                                    + ", \"times\": "
+                                    + jsonTimes(unit.getValue())
+                                    + "}"
+                                    + (units.hasNext() ? "," : ""));
+                }
+                out.println("      ]");
+                out.println("    }" + (checkers.hasNext() ? "," : ""));
+            }
+            out.println("  ],");
+            out.println("  \"caches\": [");
+            for (Iterator<CacheStatistics> caches =
+                            CollectionUtils.getCacheStatistics().iterator();
+                    caches.hasNext(); ) {
+                CacheStatistics cache = caches.next();
+                out.println(
+                        "    {\"name\": "
+                                + jsonString(cache.getName())
+                                + ", \"hits\": "
+                                + cache.getHits()
+                                + ", \"misses\": "
+                                + cache.getMisses()
+                                + "}"
+                                + (caches.hasNext() ? "," : ""));
+            }
+            out.println("  ],");
+            out.println("  \"memoryPools\": [");
+            for (Iterator<MemoryPoolMXBean> pools =
+                            ManagementFactory.getMemoryPoolMXBeans().iterator();
+                    pools.hasNext(); ) {
+                MemoryPoolMXBean pool = pools.next();
+                out.println(
+                        "    {\"name\": "
+                                + jsonString(pool.getName())
+                                + ", \"type\": "
+                                + jsonString(pool.getType().toString())
+                                + ", \"peakUsed\": "
+                                + pool.getPeakUsage().getUsed()
+                                + "}"
+                                + (pools.hasNext() ? "," : ""));
+            }
+            out.println("  ]");
+            out.println("}");
+            if (out.checkError()) {
+                throw new IOException("Could not write " + file);
+            }
+        }
+    }
+
+    /** @return a JSON object that maps the name of each phase to its time in milliseconds */
+    private static String jsonTimes(long[] phaseTimes) {
+        StringBuilder result = new StringBuilder("{");
+        for (Phase phase : Phase.values()) {
+            if (phase.ordinal() > 0) {
+                result.append(", ");
+            }
+            result.append(jsonString(phase.outputName))
+                    .append(": ")
+                    .append(millis(phaseTimes[phase.ordinal()]));
+        }
+        return result.append("}").toString();
+    }
+
+    /** @return {@code s} as a JSON string literal */
+    private static String jsonString(@Nullable String s) {
+        if (s == null) {
+            return "null";
+        }
+        StringBuilder result = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    result.append("\\\"");
+                    break;
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        result.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        result.append(c);
+                    }
+            }
+        }
+        return result.append('"').toString();
+    }
+}
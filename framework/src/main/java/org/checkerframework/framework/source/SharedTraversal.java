@@ -0,0 +1,154 @@
+package org.checkerframework.framework.source;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.Tree;
+import java.util.HashMap;
+import java.util.Map;
+import javax.lang.model.element.Element;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.UnderlyingAST;
+import org.checkerframework.framework.util.TreePathCacher;
+
+/**
+ * The javac-level results that the checkers that are part of the same checker share while they
+ * type-check a compilation unit: the paths of the trees and the control flow graphs that do not
+ * depend on the checker that built them. The first checker that processes a compilation unit
+ * computes them, and the other checkers reuse them.
+ *
+ * <p>The results of a compilation unit are discarded as soon as a checker starts on another
+ * compilation unit. An instance must only be used by one thread.
+ *
+ * @see SourceChecker#getSharedTraversal()
+ */
+public class SharedTraversal {
+
+    /** The compilation unit whose results are stored. */
+    private @Nullable CompilationUnitTree root;
+
+    /** The paths of the trees of {@link #root}. */
+    private final TreePathCacher treePathCache = new TreePathCacher(true);
+
+    /** The shared control flow graphs of {@link #root}. */
+    private final Map<CFGKey, SharedCFG> cfgs = new HashMap<>();
+
+    /** A control flow graph, together with the artificial trees that its construction created. */
+    public static class SharedCFG {
+        /** The control flow graph. */
+        public final ControlFlowGraph cfg;
+
+        /**
+         * Maps each artificial tree of {@link #cfg} to its enclosing method or class. A type
+         * factory that uses {@link #cfg} must know these, see {@link
+         * org.checkerframework.framework.type.AnnotatedTypeFactory#setPathHack}.
+         */
+        public final Map<Tree, Element> artificialTrees;
+
+        public SharedCFG(ControlFlowGraph cfg, Map<Tree, Element> artificialTrees) {
+            this.cfg = cfg;
+            this.artificialTrees = artificialTrees;
+        }
+    }
+
+    /** The key of a control flow graph: the code and the assertion options it was built with. */
+    private static class CFGKey {
+        /** The code of the underlying AST; compared by identity. */
+        final Tree code;
+        /** The kind of the underlying AST. */
+        final UnderlyingAST.Kind kind;
+        /** Whether assertions were assumed to be enabled. */
+        final boolean assumeAssertionsEnabled;
+        /** Whether assertions were assumed to be disabled. */
+        final boolean assumeAssertionsDisabled;
+
+        CFGKey(
+                UnderlyingAST underlyingAST,
+                boolean assumeAssertionsEnabled,
+                boolean assumeAssertionsDisabled) {
+            this.code = underlyingAST.getCode();
+            this.kind = underlyingAST.getKind();
+            this.assumeAssertionsEnabled = assumeAssertionsEnabled;
+            this.assumeAssertionsDisabled = assumeAssertionsDisabled;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CFGKey)) {
+                return false;
+            }
+            CFGKey other = (CFGKey) o;
+            return code == other.code
+                    && kind == other.kind
+                    && assumeAssertionsEnabled == other.assumeAssertionsEnabled
+                    && assumeAssertionsDisabled == other.assumeAssertionsDisabled;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(code) * 31
+                    + kind.hashCode()
+                    + (assumeAssertionsEnabled ? 2 : 0)
+                    + (assumeAssertionsDisabled ? 1 : 0);
+        }
+    }
+
+    /** Discard the results of the previous compilation unit if {@code root} is a different one. */
+    private void setRoot(CompilationUnitTree root) {
+        if (root != this.root) {
+            this.root = root;
+            treePathCache.clear();
+            cfgs.clear();
+        }
+    }
+
+    /**
+     * Returns the cache of the paths of the trees of {@code root}.
+     *
+     * @param root the compilation unit that the caller type-checks
+     * @return the tree path cache that all checkers share for {@code root}
+     */
+    public TreePathCacher getTreePathCache(CompilationUnitTree root) {
+        setRoot(root);
+        return treePathCache;
+    }
+
+    /**
+     * Returns the control flow graph that another checker built for {@code underlyingAST} with the
+     * same assertion options.
+     *
+     * @param root the compilation unit that contains {@code underlyingAST}
+     * @param underlyingAST the code to get the control flow graph of
+     * @param assumeAssertionsEnabled whether assertions are assumed to be enabled
+     * @param assumeAssertionsDisabled whether assertions are assumed to be disabled
+     * @return the shared control flow graph, or null if there is none
+     */
+    public @Nullable SharedCFG getCFG(
+            CompilationUnitTree root,
+            UnderlyingAST underlyingAST,
+            boolean assumeAssertionsEnabled,
+            boolean assumeAssertionsDisabled) {
+        setRoot(root);
+        return cfgs.get(
+                new CFGKey(underlyingAST, assumeAssertionsEnabled, assumeAssertionsDisabled));
+    }
+
+    /**
+     * Share a control flow graph with the other checkers. The caller must make sure that the graph
+     * does not depend on the checker that built it.
+     *
+     * @param root the compilation unit that contains {@code underlyingAST}
+     * @param underlyingAST the code of the control flow graph
+     * @param assumeAssertionsEnabled whether assertions were assumed to be enabled
+     * @param assumeAssertionsDisabled whether assertions were assumed to be disabled
+     * @param cfg the control flow graph to share
+     */
+    public void putCFG(
+            CompilationUnitTree root,
+            UnderlyingAST underlyingAST,
+            boolean assumeAssertionsEnabled,
+            boolean assumeAssertionsDisabled,
+            SharedCFG cfg) {
+        setRoot(root);
+        cfgs.put(new CFGKey(underlyingAST, assumeAssertionsEnabled, assumeAssertionsDisabled), cfg);
+    }
+}
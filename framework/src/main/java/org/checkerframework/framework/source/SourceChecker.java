@@ -14,6 +14,7 @@ import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.DiagnosticSource;
 import com.sun.tools.javac.util.JCDiagnostic.DiagnosticPosition;
 import com.sun.tools.javac.util.Log;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.management.ManagementFactory;
@@ -50,11 +51,15 @@ import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.framework.qual.AnnotatedFor;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.util.CFContext;
+import org.checkerframework.framework.util.CheckerDaemon;
 import org.checkerframework.framework.util.CheckerMain;
 import org.checkerframework.framework.util.OptionConfiguration;
+import org.checkerframework.framework.util.defaults.QualifierDefaults;
 import org.checkerframework.javacutil.AbstractTypeProcessor;
+import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationProvider;
 import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.ErrorHandler;
 import org.checkerframework.javacutil.ErrorReporter;
@@ -188,6 +193,11 @@ import org.checkerframework.javacutil.TreeUtils;
     // Whether to use .jaif files whole-program inference
     "infer",
 
+    // The maximum number of .jaif Scenes that whole-program inference keeps in memory.
+    // Evicted Scenes are written to a temporary directory and read back when needed.
+    // org.checkerframework.common.wholeprograminference.WholeProgramInferenceScenesHelper
+    "inferMaxScenes",
+
     // With each warning, in addition to the concrete error key,
     // output the suppress warning keys that can be used to
     // suppress that warning.
@@ -200,6 +210,14 @@ import org.checkerframework.javacutil.TreeUtils;
     // org.checkerframework.framework.source.SourceeVisitor.checkForSuppressWarningsAnno
     "warnUnneededSuppressions",
 
+    // Implemented in the wrapper rather than this file, but worth noting here.
+    // -Adaemon
+
+    // Skip compilation units that are unchanged since the previous run and reissue
+    // their diagnostics. The argument is the file that stores the results.
+    // org.checkerframework.framework.source.IncrementalCheckingStore
+    "incrementalCache",
+
     ///
     /// Partially-annotated libraries
     ///
@@ -313,11 +331,22 @@ import org.checkerframework.javacutil.TreeUtils;
     // org.checkerframework.framework.source.SourceChecker.shutdownHook()
     "resourceStats",
 
+    // Write resource statistics as JSON to the given file at JVM shutdown
+    // -AresourceStatsJson=stats.json
+    // org.checkerframework.framework.source.ResourceStatistics.writeJson(File)
+    "resourceStatsJson",
+
     // Set the cache size for caches in AnnotatedTypeFactory
     "atfCacheSize",
 
-    // Sets AnnotatedTypeFactory shouldCache to false
-    "atfDoNotCache"
+    // Sets AnnotatedTypeFactory shouldCache to false, and disables the subtype cache of
+    // DefaultTypeHierarchy
+    "atfDoNotCache",
+
+    // Do not share tree paths and control flow graphs between a checker and its
+    // subcheckers, or between the checkers of an aggregate checker
+    // org.checkerframework.framework.source.SourceChecker.getSharedTraversal()
+    "noSharedTraversal"
 })
 public abstract class SourceChecker extends AbstractTypeProcessor
         implements ErrorHandler, CFContext, OptionConfiguration {
@@ -357,6 +386,28 @@ public abstract class SourceChecker extends AbstractTypeProcessor
     /** The visitor to use. */
     protected SourceVisitor<?, ?> visitor;
 
+    /**
+     * Records fingerprints and diagnostics of compilation units if the {@code -AincrementalCache}
+     * option is given; null otherwise.
+     */
+    private @Nullable IncrementalCheckingStore incrementalStore = null;
+
+    /**
+     * The statistics of the {@code -AresourceStats} and {@code -AresourceStatsJson} options. Null
+     * until first requested, and always null if this checker is part of another checker.
+     */
+    private @Nullable ResourceStatistics resourceStatistics = null;
+
+    /**
+     * The tree paths and control flow graphs that this checker shares with the checkers that are
+     * part of it; see {@link #getSharedTraversal()}. Only set if this checker is not part of
+     * another checker.
+     */
+    private @Nullable SharedTraversal sharedTraversal = null;
+
+    /** Whether {@link #sharedTraversal} has been initialized. */
+    private boolean sharedTraversalInitialized = false;
+
     /** Keys for warning suppressions specified on the command line. */
     private String @Nullable [] suppressWarnings;
 
@@ -828,7 +879,11 @@ public abstract class SourceChecker extends AbstractTypeProcessor
         if (this.messager == null) {
             messager = processingEnv.getMessager();
         }
-        this.messager.printMessage(javax.tools.Diagnostic.Kind.ERROR, msg);
+        IncrementalCheckingStore store = getIncrementalStore();
+        if (store != null) {
+            store.invalidate(currentRoot);
+        }
+        messager.printMessage(javax.tools.Diagnostic.Kind.ERROR, msg);
     }
 
     /**
@@ -845,6 +900,17 @@ public abstract class SourceChecker extends AbstractTypeProcessor
     public void typeProcessingStart() {
         try {
             super.typeProcessingStart();
+            // Discard the annotations of an earlier compilation before any type factory creates
+            // its qualifier constants; clearing later would make the constants non-canonical.
+            AnnotationBuilder.clearInternedAnnotations();
+            // Discard the cache statistics of an earlier compilation in the same JVM.
+            CollectionUtils.disableCacheStatistics();
+            if (getResourceStatistics().isEnabled()) {
+                // Before any cache is created, so that all caches are counted, including those
+                // of subcheckers.
+                CollectionUtils.enableCacheStatistics();
+            }
+            QualifierDefaults.clearBoundTypeCache();
             initChecker();
             if (this.messager == null) {
                 messager = processingEnv.getMessager();
@@ -855,15 +921,39 @@ public abstract class SourceChecker extends AbstractTypeProcessor
                                 + this.getClass()
                                 + "! Please ensure your checker is properly initialized.");
             }
+            if (hasOption("incrementalCache") && parentChecker == null) {
+                String cacheFile = getOption("incrementalCache");
+                if (cacheFile == null || cacheFile.isEmpty()) {
+                    userErrorAbort("The incrementalCache option requires a file name");
+                }
+                if (hasOption("infer")) {
+                    // A compilation unit that is not type-checked contributes no inferred types,
+                    // so the types inferred for the elements it uses would be too precise.
+                    messager.printMessage(
+                            javax.tools.Diagnostic.Kind.WARNING,
+                            "-AincrementalCache is ignored when -Ainfer is given");
+                } else {
+                    incrementalStore = new IncrementalCheckingStore(new File(cacheFile), this);
+                }
+            }
+            if (hasOption("resourceStatsJson") && parentChecker == null) {
+                String statsFile = getOption("resourceStatsJson");
+                if (statsFile == null || statsFile.isEmpty()) {
+                    userErrorAbort("The resourceStatsJson option requires a file name");
+                }
+            }
             if (shouldAddShutdownHook()) {
-                Runtime.getRuntime()
-                        .addShutdownHook(
-                                new Thread() {
-                                    @Override
-                                    public void run() {
-                                        shutdownHook();
-                                    }
-                                });
+                Thread hook =
+                        new Thread() {
+                            @Override
+                            public void run() {
+                                shutdownHook();
+                            }
+                        };
+                // A checker daemon outlives the compilation.
+                if (!CheckerDaemon.addEndOfCompilationHook(hook)) {
+                    Runtime.getRuntime().addShutdownHook(hook);
+                }
             }
         } catch (CheckerError ce) {
             logCheckerError(ce);
@@ -899,7 +989,7 @@ public abstract class SourceChecker extends AbstractTypeProcessor
      * of the JVM.
      */
     protected boolean shouldAddShutdownHook() {
-        return hasOption("resourceStats");
+        return hasOption("resourceStats") || hasOption("resourceStatsJson");
     }
 
     /**
@@ -913,6 +1003,15 @@ public abstract class SourceChecker extends AbstractTypeProcessor
             // call the super implementations.
             printStats();
         }
+        if (hasOption("resourceStatsJson")) {
+            String statsFile = getOption("resourceStatsJson");
+            try {
+                getResourceStatistics().writeJson(new File(statsFile));
+            } catch (IOException e) {
+                System.err.println(
+                        "Could not write resource statistics to " + statsFile + ": " + e);
+            }
+        }
     }
 
     /** Print resource usage statistics. */
@@ -923,6 +1022,59 @@ public abstract class SourceChecker extends AbstractTypeProcessor
             System.out.println("  Pool type: " + memoryPool.getType());
             System.out.println("  Peak usage: " + memoryPool.getPeakUsage());
         }
+        getResourceStatistics().print(System.out);
+    }
+
+    /**
+     * Returns the statistics that record the time spent in each phase of type-checking. A checker
+     * and the checkers that are part of it share the statistics. Unless the {@code -AresourceStats}
+     * or {@code -AresourceStatsJson} option is given, the statistics do not record anything.
+     *
+     * @return the resource statistics of this checker, or of the checker that it is part of
+     */
+    public ResourceStatistics getResourceStatistics() {
+        if (parentChecker != null) {
+            return parentChecker.getResourceStatistics();
+        }
+        if (resourceStatistics == null) {
+            resourceStatistics =
+                    new ResourceStatistics(
+                            hasOption("resourceStats") || hasOption("resourceStatsJson"));
+        }
+        return resourceStatistics;
+    }
+
+    /**
+     * Returns the tree paths and control flow graphs that this checker shares with the other
+     * checkers that are part of the same checker, or null if they are not shared. The checker that
+     * all others are part of decides whether they are shared, see {@link
+     * #createSharedTraversal()}. The {@code -AnoSharedTraversal} option disables sharing.
+     *
+     * @return the shared traversal of the checker that this checker is part of, or null
+     */
+    public @Nullable SharedTraversal getSharedTraversal() {
+        if (parentChecker != null) {
+            return parentChecker.getSharedTraversal();
+        }
+        if (!sharedTraversalInitialized) {
+            sharedTraversalInitialized = true;
+            if (!hasOption("noSharedTraversal")) {
+                sharedTraversal = createSharedTraversal();
+            }
+        }
+        return sharedTraversal;
+    }
+
+    /**
+     * Creates the shared traversal of this checker and the checkers that are part of it. Only
+     * called if this checker is not part of another checker. Checkers that consist of several
+     * checkers override this method.
+     *
+     * @return a new shared traversal, or null if the checkers do not share tree paths and control
+     *     flow graphs
+     */
+    protected @Nullable SharedTraversal createSharedTraversal() {
+        return null;
     }
 
     /** Output the warning about source level at most once. */
@@ -955,6 +1107,9 @@ public abstract class SourceChecker extends AbstractTypeProcessor
                     "Refusing to process empty TreePath in TypeElement: " + e);
             return;
         }
+        if (skipTypeProcess(e, p)) {
+            return;
+        }
 
         Context context = ((JavacProcessingEnvironment) processingEnv).getContext();
         com.sun.tools.javac.code.Source source = com.sun.tools.javac.code.Source.instance(context);
@@ -996,10 +1151,13 @@ public abstract class SourceChecker extends AbstractTypeProcessor
                         (Object) this.getClass().getSimpleName(),
                         currentRoot.getSourceFile().getName());
             }
+            getResourceStatistics().setCompilationUnit(currentRoot.getSourceFile().getName());
             visitor.setRoot(currentRoot);
         }
 
         // Visit the attributed tree.
+        ResourceStatistics statistics = getResourceStatistics();
+        statistics.start(this, ResourceStatistics.Phase.VISITOR);
         try {
             visitor.visit(p);
             warnUnneededSuppressions();
@@ -1008,12 +1166,86 @@ public abstract class SourceChecker extends AbstractTypeProcessor
         } catch (Throwable t) {
             logCheckerError(wrapThrowableAsCheckerError("SourceChecker.typeProcess", t, p));
         } finally {
+            statistics.stop();
             // Also add possibly deferred diagnostics, which will get published back in
             // AbstractTypeProcessor.
             this.errsOnLastExit = log.nerrors;
         }
     }
 
+    /**
+     * If the {@code -AincrementalCache} option is in effect and the compilation unit of the given
+     * class is unchanged since the previous run, reissues the diagnostics of that run and skips the
+     * class. Classes of compilation units that contain Java errors are skipped, as in {@link
+     * #typeProcess(TypeElement, TreePath)}.
+     *
+     * <p>Overriding implementations of {@code typeProcess} should call this method first and return
+     * immediately if it returns true.
+     *
+     * @param e the class to type-check
+     * @param p the path to the class
+     * @return true if the class was skipped, false if it should be type-checked now
+     */
+    protected boolean skipTypeProcess(TypeElement e, TreePath p) {
+        if (incrementalStore == null) {
+            return false;
+        }
+        Context context = ((JavacProcessingEnvironment) processingEnv).getContext();
+        Log log = Log.instance(context);
+        if (log.nerrors > this.errsOnLastExit) {
+            this.errsOnLastExit = log.nerrors;
+            previousErrorCompilationUnit = p.getCompilationUnit();
+            return true;
+        }
+        if (p.getCompilationUnit() == previousErrorCompilationUnit) {
+            return true;
+        }
+        previousErrorCompilationUnit = null;
+        try {
+            return incrementalStore.skipIfUnchanged(p.getCompilationUnit());
+        } finally {
+            this.errsOnLastExit = log.nerrors;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Saves the results for incremental checking.
+     */
+    @Override
+    public void typeProcessingElementsDone() {
+        if (incrementalStore == null) {
+            return;
+        }
+        try {
+            incrementalStore.save();
+        } catch (CheckerError ce) {
+            logCheckerError(ce);
+        } catch (Throwable t) {
+            logCheckerError(
+                    wrapThrowableAsCheckerError(
+                            "SourceChecker.typeProcessingElementsDone", t, null));
+        } finally {
+            Context context = ((JavacProcessingEnvironment) processingEnv).getContext();
+            this.errsOnLastExit = Log.instance(context).nerrors;
+        }
+    }
+
+    /**
+     * Returns the store for incremental checking of this checker, or of the checker that it is part
+     * of.
+     *
+     * @return the store for incremental checking, or null if incremental checking is not enabled
+     */
+    private @Nullable IncrementalCheckingStore getIncrementalStore() {
+        SourceChecker checker = this;
+        while (checker.parentChecker != null) {
+            checker = checker.parentChecker;
+        }
+        return checker.incrementalStore;
+    }
+
     /**
      * Issues a warning about any {@code @SuppressWarnings} that isn't used by this checker, but
      * contains a key that would suppress a warning from this checker.
@@ -1318,6 +1550,10 @@ public abstract class SourceChecker extends AbstractTypeProcessor
         }
 
         if (source instanceof Element) {
+            IncrementalCheckingStore store = getIncrementalStore();
+            if (store != null) {
+                store.invalidate(currentRoot);
+            }
             messager.printMessage(kind, messageText, (Element) source);
         } else if (source instanceof Tree) {
             printMessage(kind, messageText, (Tree) source, currentRoot);
@@ -1333,6 +1569,10 @@ public abstract class SourceChecker extends AbstractTypeProcessor
      */
     protected void printMessage(
             Diagnostic.Kind kind, String message, Tree source, CompilationUnitTree root) {
+        IncrementalCheckingStore store = getIncrementalStore();
+        if (store != null) {
+            store.record(root, kind, message, source);
+        }
         Trees.instance(processingEnv).printMessage(kind, message, source, root);
     }
 
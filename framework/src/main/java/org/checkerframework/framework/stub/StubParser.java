@@ -1,6 +1,5 @@
 package org.checkerframework.framework.stub;
 
-import com.github.javaparser.JavaParser;
 import com.github.javaparser.ParseProblemException;
 import com.github.javaparser.Problem;
 import com.github.javaparser.ast.CompilationUnit;
@@ -44,8 +43,10 @@ import com.github.javaparser.ast.type.WildcardType;
 import java.io.InputStream;
 import java.lang.annotation.Target;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -86,6 +87,10 @@ import org.checkerframework.javacutil.Pair;
  *
  * <p>The constructor acts in two parts. First, it calls the Stub Parser to parse a stub file. Then,
  * itis walks the Stub Parser's AST to create/collect types and declaration annotations.
+ *
+ * <p>The second part can be deferred for each top-level type declaration, see {@link
+ * PendingTypes}: a type factory then only walks the declarations of the types whose elements it
+ * asks about.
  */
 public class StubParser {
 
@@ -156,6 +161,12 @@ public class StubParser {
     /** Output variable: .... */
     Map<String, Set<AnnotationMirror>> declAnnos;
 
+    /**
+     * The top-level type declarations whose processing is deferred, or null if all declarations
+     * are processed by {@link #process}.
+     */
+    private final @Nullable PendingTypes pendingTypes;
+
     /** The line separator. */
     private static final String LINE_SEPARATOR = System.getProperty("line.separator").intern();
 
@@ -173,6 +184,26 @@ public class StubParser {
             ProcessingEnvironment processingEnv,
             Map<Element, AnnotatedTypeMirror> atypes,
             Map<String, Set<AnnotationMirror>> declAnnos) {
+        this(filename, atypeFactory, processingEnv, atypes, declAnnos, null);
+    }
+
+    /**
+     * Create a new StubParser object, which will parse and extract annotations from the given stub
+     * file.
+     *
+     * @param filename name of stub file, used only for diagnostic messages
+     * @param atypeFactory AnnotatedtypeFactory to use
+     * @param processingEnv ProcessingEnviroment to use
+     * @param pendingTypes where to defer the processing of top-level type declarations to, or null
+     *     to process them right away
+     */
+    private StubParser(
+            String filename,
+            AnnotatedTypeFactory atypeFactory,
+            ProcessingEnvironment processingEnv,
+            Map<Element, AnnotatedTypeMirror> atypes,
+            Map<String, Set<AnnotationMirror>> declAnnos,
+            @Nullable PendingTypes pendingTypes) {
         this.filename = filename;
         this.atypeFactory = atypeFactory;
         this.processingEnv = processingEnv;
@@ -187,6 +218,9 @@ public class StubParser {
 
         this.atypes = atypes;
         this.declAnnos = declAnnos;
+        // Warnings about types that are not found are only issued when the types are processed,
+        // so process all of them if such warnings are requested.
+        this.pendingTypes = warnIfNotFound || debugStubParser ? null : pendingTypes;
     }
 
     /**
@@ -358,7 +392,36 @@ public class StubParser {
             ProcessingEnvironment processingEnv,
             Map<Element, AnnotatedTypeMirror> atypes,
             Map<String, Set<AnnotationMirror>> declAnnos) {
-        StubParser sp = new StubParser(filename, atypeFactory, processingEnv, atypes, declAnnos);
+        parse(filename, inputStream, atypeFactory, processingEnv, atypes, declAnnos, null);
+    }
+
+    /**
+     * Parse a stub file and side-effects {@code atypes} and {@code declAnnos}, like {@link
+     * #parse(String, InputStream, AnnotatedTypeFactory, ProcessingEnvironment, Map, Map)}. The
+     * processing of the top-level type declarations of the stub file is deferred to {@code
+     * pendingTypes}, unless the {@code -AstubWarnIfNotFound} or {@code -AstubDebug} option is
+     * given.
+     *
+     * @param filename name of stub file, used only for diagnostic messages
+     * @param inputStream of stub file to parse
+     * @param atypeFactory AnnotatedtypeFactory to use
+     * @param processingEnv ProcessingEnviroment to use
+     * @param atypes the map to add the annotated types of the stub file to
+     * @param declAnnos the map to add the declaration annotations of the stub file to
+     * @param pendingTypes where to defer the processing of top-level type declarations to, or null
+     *     to process them right away
+     */
+    public static void parse(
+            String filename,
+            InputStream inputStream,
+            AnnotatedTypeFactory atypeFactory,
+            ProcessingEnvironment processingEnv,
+            Map<Element, AnnotatedTypeMirror> atypes,
+            Map<String, Set<AnnotationMirror>> declAnnos,
+            @Nullable PendingTypes pendingTypes) {
+        StubParser sp =
+                new StubParser(
+                        filename, atypeFactory, processingEnv, atypes, declAnnos, pendingTypes);
         try {
             sp.parseStubUnit(inputStream);
             sp.process(atypes, declAnnos);
@@ -385,7 +448,7 @@ public class StubParser {
         if (debugStubParser) {
             stubDebug(String.format("parsing stub file %s", filename));
         }
-        stubUnit = JavaParser.parseStubUnit(inputStream);
+        stubUnit = StubUnitCache.parseStubUnit(inputStream);
 
         // getAllStubAnnotations() also modifies importedConstants and importedTypes. This should
         // be refactored to be nicer.
@@ -425,11 +488,45 @@ public class StubParser {
         }
         if (cu.getTypes() != null) {
             for (TypeDeclaration<?> typeDeclaration : cu.getTypes()) {
-                processTypeDecl(typeDeclaration, null, packageAnnos);
+                if (pendingTypes != null && isSimpleName(typeDeclaration.getNameAsString())) {
+                    pendingTypes.add(
+                            new PendingType(
+                                    this, parseState.packageName, typeDeclaration, packageAnnos));
+                } else {
+                    processTypeDecl(typeDeclaration, null, packageAnnos);
+                }
             }
         }
     }
 
+    /**
+     * Returns true if {@code name} is the name of a top-level type, rather than a (binary) name
+     * that also includes the name of an enclosing type.
+     */
+    private static boolean isSimpleName(String name) {
+        return name.indexOf('.') == -1 && name.indexOf('$') == -1;
+    }
+
+    /**
+     * Processes a top-level type declaration whose processing was deferred. Other deferred types
+     * may be processed while this one is, so the state of this parser is saved and restored.
+     *
+     * @param pending the deferred type declaration
+     */
+    private void processPendingType(PendingType pending) {
+        FqName savedParseState = parseState;
+        List<AnnotatedTypeVariable> savedTypeParameters = new ArrayList<>(typeParameters);
+        typeParameters.clear();
+        parseState = new FqName(pending.packageName, null);
+        try {
+            processTypeDecl(pending.typeDecl, null, pending.packageAnnos);
+        } finally {
+            parseState = savedParseState;
+            typeParameters.clear();
+            typeParameters.addAll(savedTypeParameters);
+        }
+    }
+
     private void processPackage(PackageDeclaration packDecl) {
         assert (packDecl != null);
         String packageName = packDecl.getNameAsString();
@@ -1803,6 +1900,119 @@ public class StubParser {
     /// Parse state
     ///
 
+    /** A top-level type declaration of a stub file whose processing was deferred. */
+    private static class PendingType {
+        /** The parser of the stub file that contains the declaration. */
+        final StubParser parser;
+        /** The package of the declaration, or null. */
+        final @Nullable String packageName;
+        /** The declaration. */
+        final TypeDeclaration<?> typeDecl;
+        /** The annotations of the package declaration, or null. */
+        final @Nullable List<AnnotationExpr> packageAnnos;
+
+        PendingType(
+                StubParser parser,
+                @Nullable String packageName,
+                TypeDeclaration<?> typeDecl,
+                @Nullable List<AnnotationExpr> packageAnnos) {
+            this.parser = parser;
+            this.packageName = packageName;
+            this.typeDecl = typeDecl;
+            this.packageAnnos = packageAnnos;
+        }
+
+        /** The fully-qualified name of the declared type. */
+        String getQualifiedName() {
+            String name = typeDecl.getNameAsString();
+            return packageName == null ? name : packageName + "." + name;
+        }
+    }
+
+    /**
+     * The top-level type declarations of the stub files of a type factory whose annotations have
+     * not been added to the factory's maps yet. Instead of processing every declaration of every
+     * stub file when the stub files are parsed, the factory calls {@link #load(Element)} before it
+     * looks up an element in its maps, which processes the declarations of the element's top-level
+     * type, in the order in which the stub files were parsed.
+     *
+     * <p>While declarations are processed, the factory must behave as it does while it parses the
+     * stub files: it must not use or cache the results of the stub files; see {@link
+     * #isLoading()}.
+     */
+    public static class PendingTypes {
+
+        /** The deferred declarations, by fully-qualified name of the declared type. */
+        private final Map<String, List<PendingType>> pending = new HashMap<>();
+
+        /**
+         * The top-level types whose deferred declarations have been processed, or that have none.
+         * Compared by identity, which is cheaper than looking up their names in {@link #pending}.
+         */
+        private final Set<TypeElement> loaded =
+                Collections.newSetFromMap(new IdentityHashMap<TypeElement, Boolean>());
+
+        /** The number of {@link #load} calls that are processing declarations. */
+        private int loading = 0;
+
+        /** Defers the processing of a type declaration. */
+        private void add(PendingType type) {
+            // The type may already have been looked up without finding this declaration.
+            loaded.clear();
+            String name = type.getQualifiedName();
+            List<PendingType> types = pending.get(name);
+            if (types == null) {
+                types = new ArrayList<>(1);
+                pending.put(name, types);
+            }
+            types.add(type);
+        }
+
+        /**
+         * Processes the deferred stub declarations of the top-level type that contains {@code
+         * elt}, if there are any.
+         *
+         * @param elt an element whose stub annotations are about to be looked up
+         */
+        public void load(Element elt) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            TypeElement topLevel = null;
+            for (Element e = elt; e != null && e.getKind() != ElementKind.PACKAGE; ) {
+                if (e instanceof TypeElement) {
+                    topLevel = (TypeElement) e;
+                }
+                e = e.getEnclosingElement();
+            }
+            if (topLevel == null || !loaded.add(topLevel)) {
+                return;
+            }
+            List<PendingType> types = pending.remove(topLevel.getQualifiedName().toString());
+            if (types == null) {
+                return;
+            }
+            loading++;
+            try {
+                for (PendingType type : types) {
+                    type.parser.processPendingType(type);
+                }
+            } finally {
+                loading--;
+            }
+        }
+
+        /**
+         * Returns true if deferred declarations are being processed. The maps of annotated types
+         * and declaration annotations are incomplete until then.
+         *
+         * @return true if deferred declarations are being processed
+         */
+        public boolean isLoading() {
+            return loading > 0;
+        }
+    }
+
     /** Represents a class: its package name and simple name. */
     private static class FqName {
         /** Name of the package being parsed, or null. */
@@ -0,0 +1,111 @@
+package org.checkerframework.framework.stub;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.StubUnit;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import org.checkerframework.javacutil.ErrorReporter;
+
+/**
+ * A process-wide cache of the ASTs that the Stub Parser produces for stub files, keyed by a digest
+ * of the stub file content.
+ *
+ * <p>Parsing a stub file only depends on its text, whereas resolving the parsed declarations
+ * against the elements of a compilation depends on the javac {@code Context}. This class caches
+ * only the former, so that repeated compilations within the same JVM (for example, in a build tool
+ * that runs javac in-process, once per compile task) skip lexing and parsing {@code jdk.astub} and
+ * the {@code -Astubs} files. The resulting {@link StubUnit}s are never modified by the {@link
+ * StubParser}, so they can be shared.
+ *
+ * <p>The cache holds its entries via soft references, so it does not prevent the garbage collector
+ * from reclaiming them when memory is low. Since the cache lives in the same class loader as the
+ * Stub Parser, an entry can never be used by a different version of the Stub Parser or of the
+ * Checker Framework.
+ */
+final class StubUnitCache {
+
+    /** Maps the digest of a stub file's content to the AST of the stub file. */
+    private static final Map<String, SoftReference<StubUnit>> cache = new HashMap<>();
+
+    /** Do not instantiate. */
+    private StubUnitCache() {
+        throw new AssertionError("Class StubUnitCache cannot be instantiated.");
+    }
+
+    /**
+     * Returns the AST of the stub file with the given content, parsing it only if no AST for the
+     * same content is cached.
+     *
+     * @param inputStream the content of the stub file; it is read completely and closed
+     * @return the AST of the stub file
+     * @throws com.github.javaparser.ParseProblemException if the stub file cannot be parsed
+     */
+    static StubUnit parseStubUnit(InputStream inputStream) {
+        byte[] content = readFully(inputStream);
+        String key = digest(content);
+        synchronized (cache) {
+            SoftReference<StubUnit> ref = cache.get(key);
+            StubUnit cached = ref == null ? null : ref.get();
+            if (cached != null) {
+                return cached;
+            }
+        }
+        StubUnit stubUnit = JavaParser.parseStubUnit(new ByteArrayInputStream(content));
+        synchronized (cache) {
+            cache.put(key, new SoftReference<>(stubUnit));
+        }
+        return stubUnit;
+    }
+
+    /**
+     * Reads the stream to its end and closes it.
+     *
+     * @param inputStream the stream to read
+     * @return the content of the stream
+     */
+    private static byte[] readFully(InputStream inputStream) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try {
+            try {
+                int n;
+                while ((n = inputStream.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            ErrorReporter.errorAbort("StubUnitCache: could not read stub file", e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns a hex-encoded SHA-256 digest of the given bytes.
+     *
+     * @param content the bytes to digest
+     * @return the digest of {@code content}
+     */
+    private static String digest(byte[] content) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            ErrorReporter.errorAbort("StubUnitCache: SHA-256 is not available", e);
+            return null; // dead code
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : md.digest(content)) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
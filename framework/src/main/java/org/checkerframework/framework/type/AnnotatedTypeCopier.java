@@ -52,6 +52,9 @@ public class AnnotatedTypeCopier
      */
     protected boolean visitingExecutableTypeParam = false;
 
+    /** The expected number of distinct components of a copied type. */
+    private static final int INITIAL_MAP_SIZE = 4;
+
     /** @see #AnnotatedTypeCopier(boolean) */
     protected final boolean copyAnnotations;
 
@@ -86,7 +89,9 @@ public class AnnotatedTypeCopier
 
     @Override
     public AnnotatedTypeMirror visit(AnnotatedTypeMirror type) {
-        return type.accept(this, new IdentityHashMap<>());
+        // Most copied types have only a few components; the default capacity of an
+        // IdentityHashMap would dominate the cost of copying them.
+        return type.accept(this, new IdentityHashMap<>(INITIAL_MAP_SIZE));
     }
 
     @Override
@@ -398,7 +403,7 @@ public class AnnotatedTypeCopier
     protected void maybeCopyPrimaryAnnotations(
             final AnnotatedTypeMirror source, final AnnotatedTypeMirror dest) {
         if (copyAnnotations) {
-            dest.addAnnotations(source.getAnnotationsField());
+            dest.copyPrimaryAnnotationsFrom(source);
         }
     }
 }
@@ -76,7 +76,9 @@ import org.checkerframework.framework.qual.PolyAll;
 import org.checkerframework.framework.qual.PolymorphicQualifier;
 import org.checkerframework.framework.qual.StubFiles;
 import org.checkerframework.framework.qual.SubtypeOf;
+import org.checkerframework.framework.source.ResourceStatistics;
 import org.checkerframework.framework.source.Result;
+import org.checkerframework.framework.source.SharedTraversal;
 import org.checkerframework.framework.source.SourceChecker;
 import org.checkerframework.framework.stub.StubParser;
 import org.checkerframework.framework.stub.StubResource;
@@ -95,6 +97,7 @@ import org.checkerframework.framework.util.AnnotationFormatter;
 import org.checkerframework.framework.util.CFContext;
 import org.checkerframework.framework.util.DefaultAnnotationFormatter;
 import org.checkerframework.framework.util.FieldInvariants;
+import org.checkerframework.framework.util.FlowExpressionParseUtil;
 import org.checkerframework.framework.util.GraphQualifierHierarchy;
 import org.checkerframework.framework.util.MultiGraphQualifierHierarchy;
 import org.checkerframework.framework.util.MultiGraphQualifierHierarchy.MultiGraphFactory;
@@ -220,6 +223,13 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     // Not final, because it is assigned in postInit().
     private Map<String, Set<AnnotationMirror>> declAnnosFromStubFiles;
 
+    /**
+     * The type declarations of the stub files that have not been added to {@link
+     * #typesFromStubFiles} and {@link #declAnnosFromStubFiles} yet. Null until the stub files are
+     * parsed.
+     */
+    private StubParser.@Nullable PendingTypes pendingStubTypes;
+
     /**
      * A cache used to store elements whose declaration annotations have already been stored by
      * calling the method {@link #getDeclAnnotations(Element)}.
@@ -328,6 +338,9 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     /** Mapping from an Element to the source Tree of the declaration. */
     private final Map<Element, Tree> elementToTreeCache;
 
+    /** Caches the results of {@link FlowExpressionParseUtil#parse}. */
+    private final FlowExpressionParseUtil.ReceiverCache flowExpressionCache;
+
     /**
      * Whether to ignore uninferred type arguments. This is a temporary flag to work around Issue
      * 979.
@@ -367,12 +380,24 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         this.shouldCache = !checker.hasOption("atfDoNotCache");
         if (shouldCache) {
             int cacheSize = getCacheSize();
-            this.classAndMethodTreeCache = CollectionUtils.createLRUCache(cacheSize);
-            this.fromExpressionTreeCache = CollectionUtils.createLRUCache(cacheSize);
-            this.fromMemberTreeCache = CollectionUtils.createLRUCache(cacheSize);
-            this.fromTypeTreeCache = CollectionUtils.createLRUCache(cacheSize);
-            this.elementCache = CollectionUtils.createLRUCache(cacheSize);
-            this.elementToTreeCache = CollectionUtils.createLRUCache(cacheSize);
+            this.classAndMethodTreeCache =
+                    CollectionUtils.createLRUCache(
+                            cacheSize, "AnnotatedTypeFactory.classAndMethodTreeCache");
+            this.fromExpressionTreeCache =
+                    CollectionUtils.createLRUCache(
+                            cacheSize, "AnnotatedTypeFactory.fromExpressionTreeCache");
+            this.fromMemberTreeCache =
+                    CollectionUtils.createLRUCache(
+                            cacheSize, "AnnotatedTypeFactory.fromMemberTreeCache");
+            this.fromTypeTreeCache =
+                    CollectionUtils.createLRUCache(
+                            cacheSize, "AnnotatedTypeFactory.fromTypeTreeCache");
+            this.elementCache =
+                    CollectionUtils.createLRUCache(cacheSize, "AnnotatedTypeFactory.elementCache");
+            this.elementToTreeCache =
+                    CollectionUtils.createLRUCache(
+                            cacheSize, "AnnotatedTypeFactory.elementToTreeCache");
+            this.flowExpressionCache = new FlowExpressionParseUtil.ReceiverCache(cacheSize);
         } else {
             this.classAndMethodTreeCache = null;
             this.fromExpressionTreeCache = null;
@@ -380,6 +405,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             this.fromTypeTreeCache = null;
             this.elementCache = null;
             this.elementToTreeCache = null;
+            this.flowExpressionCache = null;
         }
 
         this.typeFormatter = createAnnotatedTypeFormatter();
@@ -390,8 +416,8 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             checkInvalidOptionsInferSignatures();
             wholeProgramInference =
                     new WholeProgramInferenceScenes(
-                            !"NullnessAnnotatedTypeFactory"
-                                    .equals(this.getClass().getSimpleName()));
+                            !"NullnessAnnotatedTypeFactory".equals(this.getClass().getSimpleName()),
+                            getInferMaxScenes());
         }
         ignoreUninferredTypeArguments = !checker.hasOption("conservativeUninferredTypeArguments");
     }
@@ -506,7 +532,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         initializeReflectionResolution();
 
         if (this.getClass().equals(AnnotatedTypeFactory.class)) {
-            this.parseStubFiles();
+            parseStubFilesTimed();
         }
     }
 
@@ -534,8 +560,16 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     // What's a better name? Maybe "reset" or "start"?
     public void setRoot(@Nullable CompilationUnitTree root) {
         this.root = root;
-        treePathCache.clear();
+        SharedTraversal sharedTraversal = checker.getSharedTraversal();
+        if (sharedTraversal != null && root != null) {
+            treePathCache = sharedTraversal.getTreePathCache(root);
+        } else {
+            treePathCache = new TreePathCacher(true);
+        }
         pathHack.clear();
+        if (typeHierarchy instanceof DefaultTypeHierarchy) {
+            ((DefaultTypeHierarchy) typeHierarchy).clearSubtypeCache();
+        }
 
         if (shouldCache) {
             // Clear the caches with trees because once the compilation unit changes,
@@ -545,6 +579,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             fromMemberTreeCache.clear();
             fromTypeTreeCache.clear();
             classAndMethodTreeCache.clear();
+            flowExpressionCache.clear();
 
             // There is no need to clear the following cache, it is limited by cache size and it
             // contents won't change between compilation units.
@@ -934,8 +969,22 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     // Factories for annotated types that account for implicit qualifiers
     // **********************************************************************
 
-    /** Mapping from a Tree to its TreePath. */
-    private final TreePathCacher treePathCache = new TreePathCacher();
+    /**
+     * Mapping from a Tree to its TreePath. It indexes the parents of all trees of the current root,
+     * so a lookup never needs to scan the compilation unit again. Shared with the other checkers of
+     * the same run if the checker has a {@link SharedTraversal}.
+     */
+    private TreePathCacher treePathCache = new TreePathCacher(true);
+
+    /**
+     * Returns the cache that {@link FlowExpressionParseUtil#parse} uses for flow expressions that
+     * are parsed in the context of this factory's checker.
+     *
+     * @return the cache of parsed flow expressions, or null if caching is disabled
+     */
+    public FlowExpressionParseUtil.@Nullable ReceiverCache getFlowExpressionCache() {
+        return flowExpressionCache;
+    }
 
     /**
      * Returns the int supplied to the checker via the atfCacheSize option or the default cache
@@ -956,6 +1005,25 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         }
     }
 
+    /**
+     * Returns the int supplied to the checker via the inferMaxScenes option, or Integer.MAX_VALUE
+     * if the option is not given.
+     *
+     * @return the maximum number of whole-program inference Scenes to keep in memory
+     */
+    protected int getInferMaxScenes() {
+        String option = checker.getOption("inferMaxScenes");
+        if (option == null) {
+            return Integer.MAX_VALUE;
+        }
+        try {
+            return Integer.valueOf(option);
+        } catch (NumberFormatException ex) {
+            ErrorReporter.errorAbort("inferMaxScenes was not an integer: " + option);
+            return 0; // dead code
+        }
+    }
+
     /**
      * Returns an AnnotatedTypeMirror representing the annotated type of {@code elt}.
      *
@@ -967,13 +1035,19 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             ErrorReporter.errorAbort("AnnotatedTypeFactory.getAnnotatedType: null element");
             return null; // dead code
         }
-        // Annotations explicitly written in the source code,
-        // or obtained from bytecode.
-        AnnotatedTypeMirror type = fromElement(elt);
-        // Implicits due to writing annotation on the class declaration.
-        annotateInheritedFromClass(type);
-        addComputedTypeAnnotations(elt, type);
-        return type;
+        ResourceStatistics statistics = checker.getResourceStatistics();
+        statistics.start(checker, ResourceStatistics.Phase.TYPE_ANNOTATION);
+        try {
+            // Annotations explicitly written in the source code,
+            // or obtained from bytecode.
+            AnnotatedTypeMirror type = fromElement(elt);
+            // Implicits due to writing annotation on the class declaration.
+            annotateInheritedFromClass(type);
+            addComputedTypeAnnotations(elt, type);
+            return type;
+        } finally {
+            statistics.stop();
+        }
     }
 
     @Override
@@ -999,8 +1073,22 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             ErrorReporter.errorAbort("AnnotatedTypeFactory.getAnnotatedType: null tree");
             return null; // dead code
         }
-        if (shouldCache && classAndMethodTreeCache.containsKey(tree)) {
-            return classAndMethodTreeCache.get(tree).deepCopy();
+        ResourceStatistics statistics = checker.getResourceStatistics();
+        statistics.start(checker, ResourceStatistics.Phase.TYPE_ANNOTATION);
+        try {
+            return getAnnotatedTypeOfTree(tree);
+        } finally {
+            statistics.stop();
+        }
+    }
+
+    /** Implements {@link #getAnnotatedType(Tree)} for a non-null tree. */
+    private AnnotatedTypeMirror getAnnotatedTypeOfTree(Tree tree) {
+        if (shouldCache) {
+            AnnotatedTypeMirror cached = classAndMethodTreeCache.get(tree);
+            if (cached != null) {
+                return cached.deepCopy();
+            }
         }
 
         AnnotatedTypeMirror type;
@@ -1096,8 +1184,17 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * @return AnnotatedTypeMirror of the element with explicitly-written and stub file annotations
      */
     public AnnotatedTypeMirror fromElement(Element elt) {
-        if (shouldCache && elementCache.containsKey(elt)) {
-            return elementCache.get(elt).deepCopy();
+        if (pendingStubTypes != null) {
+            pendingStubTypes.load(elt);
+        }
+        // While stub declarations are processed, behave as if the stub files were being parsed.
+        Map<Element, AnnotatedTypeMirror> typesFromStubFiles =
+                isLoadingStubTypes() ? null : this.typesFromStubFiles;
+        if (shouldCache && typesFromStubFiles != null) {
+            AnnotatedTypeMirror cached = elementCache.get(elt);
+            if (cached != null) {
+                return cached.deepCopy();
+            }
         }
         if (elt.getKind() == ElementKind.PACKAGE) {
             return toAnnotatedType(elt.asType(), false);
@@ -1152,7 +1249,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * already annotated with @FromStubFile.
      */
     private void addFromByteCode(Element elt) {
-        if (declAnnosFromStubFiles == null) { // || trees.getTree(elt) != null) {
+        if (declAnnosFromStubFiles == null || isLoadingStubTypes()) {
             // Parsing stub files, don't add @FromByteCode
             return;
         }
@@ -1205,8 +1302,11 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
                             + tree);
             return null; // dead code
         }
-        if (shouldCache && fromMemberTreeCache.containsKey(tree)) {
-            return fromMemberTreeCache.get(tree).deepCopy();
+        if (shouldCache) {
+            AnnotatedTypeMirror cached = fromMemberTreeCache.get(tree);
+            if (cached != null) {
+                return cached.deepCopy();
+            }
         }
         AnnotatedTypeMirror result = TypeFromTree.fromMember(this, tree);
         annotateInheritedFromClass(result);
@@ -1233,8 +1333,11 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * @see TypeFromExpressionVisitor
      */
     private AnnotatedTypeMirror fromExpression(ExpressionTree tree) {
-        if (shouldCache && fromExpressionTreeCache.containsKey(tree)) {
-            return fromExpressionTreeCache.get(tree).deepCopy();
+        if (shouldCache) {
+            AnnotatedTypeMirror cached = fromExpressionTreeCache.get(tree);
+            if (cached != null) {
+                return cached.deepCopy();
+            }
         }
 
         AnnotatedTypeMirror result = TypeFromTree.fromExpression(this, tree);
@@ -1262,8 +1365,11 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * @return the (partially) annotated type of the type in the AST
      */
     /*package private*/ final AnnotatedTypeMirror fromTypeTree(Tree tree) {
-        if (shouldCache && fromTypeTreeCache.containsKey(tree)) {
-            return fromTypeTreeCache.get(tree).deepCopy();
+        if (shouldCache) {
+            AnnotatedTypeMirror cached = fromTypeTreeCache.get(tree);
+            if (cached != null) {
+                return cached.deepCopy();
+            }
         }
 
         AnnotatedTypeMirror result = TypeFromTree.fromTypeTree(this, tree);
@@ -2795,8 +2901,9 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
 
     /**
      * Gets the path for the given {@link Tree} under the current root by checking from the
-     * visitor's current path, and only using {@link Trees#getPath(CompilationUnitTree, Tree)}
-     * (which is much slower) only if {@code node} is not found on the current path.
+     * visitor's current path and its subtree, and only using the {@link TreePathCacher}, which
+     * indexes the parents of all trees of the root on first use, if {@code node} is not found
+     * there.
      *
      * <p>Note that the given Tree has to be within the current compilation unit, otherwise null
      * will be returned.
@@ -2819,7 +2926,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
 
         TreePath currentPath = visitorState.getPath();
         if (currentPath == null) {
-            return TreePath.getPath(root, node);
+            return treePathCache.getPath(root, node);
         }
 
         // This method uses multiple heuristics to avoid calling
@@ -2847,6 +2954,8 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             return currentPath;
         }
 
+        // Scanning the subtree of the current path is cheaper than indexing the whole root,
+        // so try it before falling back on the TreePathCacher below.
         final TreePath pathWithinSubtree = TreePath.getPath(currentPath, node);
         if (pathWithinSubtree != null) {
             return pathWithinSubtree;
@@ -2913,6 +3022,17 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         }
     }
 
+    /** Calls {@link #parseStubFiles()} and records its time in the resource statistics. */
+    protected final void parseStubFilesTimed() {
+        ResourceStatistics statistics = checker.getResourceStatistics();
+        statistics.start(checker, ResourceStatistics.Phase.STUB_PARSING);
+        try {
+            parseStubFiles();
+        } finally {
+            statistics.stop();
+        }
+    }
+
     /**
      * Parses the stub files in the following order:
      *
@@ -2930,6 +3050,9 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * file, the qualifier in the last stub file is applied.
      *
      * <p>Sets typesFromStubFiles and declAnnosFromStubFiles by side effect, just before returning.
+     * The annotations of a type declared in a stub file are only added to them the first time
+     * that {@link #fromElement} or {@link #getDeclAnnotations} is called for an element of that
+     * type; see {@link StubParser.PendingTypes}.
      */
     protected void parseStubFiles() {
         if (this.typesFromStubFiles != null || this.declAnnosFromStubFiles != null) {
@@ -2938,6 +3061,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
 
         Map<Element, AnnotatedTypeMirror> typesFromStubFiles = new HashMap<>();
         Map<String, Set<AnnotationMirror>> declAnnosFromStubFiles = new HashMap<>();
+        StubParser.PendingTypes pendingStubTypes = new StubParser.PendingTypes();
 
         // 1. jdk.astub
         if (!checker.hasOption("ignorejdkastub")) {
@@ -2949,7 +3073,8 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
                         this,
                         processingEnv,
                         typesFromStubFiles,
-                        declAnnosFromStubFiles);
+                        declAnnosFromStubFiles,
+                        pendingStubTypes);
             }
         }
 
@@ -2984,6 +3109,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         if (allStubFiles.isEmpty()) {
             this.typesFromStubFiles = typesFromStubFiles;
             this.declAnnosFromStubFiles = declAnnosFromStubFiles;
+            this.pendingStubTypes = pendingStubTypes;
             return;
         }
 
@@ -3009,7 +3135,8 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
                             this,
                             processingEnv,
                             typesFromStubFiles,
-                            declAnnosFromStubFiles);
+                            declAnnosFromStubFiles,
+                            pendingStubTypes);
                     // We could handle the stubPath -> continue.
                     continue;
                 }
@@ -3039,12 +3166,24 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
                         this,
                         processingEnv,
                         typesFromStubFiles,
-                        declAnnosFromStubFiles);
+                        declAnnosFromStubFiles,
+                        pendingStubTypes);
             }
         }
 
         this.typesFromStubFiles = typesFromStubFiles;
         this.declAnnosFromStubFiles = declAnnosFromStubFiles;
+        this.pendingStubTypes = pendingStubTypes;
+    }
+
+    /**
+     * Returns true if the declarations of a type in the stub files are being processed. Until they
+     * are, the results of the stub files are incomplete, so they must neither be used nor cached.
+     *
+     * @return true if the declarations of a type in the stub files are being processed
+     */
+    private boolean isLoadingStubTypes() {
+        return pendingStubTypes != null && pendingStubTypes.isLoading();
     }
 
     /**
@@ -3155,6 +3294,9 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * @param elt the element for which to determine annotations
      */
     public Set<AnnotationMirror> getDeclAnnotations(Element elt) {
+        if (pendingStubTypes != null) {
+            pendingStubTypes.load(elt);
+        }
         if (cacheDeclAnnos.containsKey(elt)) {
             // Found in cache, return result.
             return cacheDeclAnnos.get(elt);
@@ -3178,7 +3320,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         }
 
         // If declAnnosFromStubFiles == null, return the annotations in the element.
-        if (declAnnosFromStubFiles != null) {
+        if (declAnnosFromStubFiles != null && !isLoadingStubTypes()) {
             // Adding @FromByteCode annotation to declAnnosFromStubFiles entry with key
             // elt, if elt is from bytecode.
             addFromByteCode(elt);
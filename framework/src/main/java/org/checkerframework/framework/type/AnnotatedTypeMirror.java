@@ -2,8 +2,10 @@ package org.checkerframework.framework.type;
 
 import com.sun.tools.javac.code.Symbol.MethodSymbol;
 import java.lang.annotation.Annotation;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
@@ -136,7 +138,18 @@ public abstract class AnnotatedTypeMirror {
     // the class name of Annotation instead.
     // Caution: Assumes that a type can have at most one AnnotationMirror for
     // any Annotation type. JSR308 is pushing to have this change.
-    protected final Set<AnnotationMirror> annotations = AnnotationUtils.createAnnotationSet();
+    // The set may be shared with copies of this type (see copyPrimaryAnnotationsFrom); only
+    // modify it via mutableAnnotations().
+    protected Set<AnnotationMirror> annotations = AnnotationUtils.createAnnotationSet();
+
+    /**
+     * Whether {@link #annotations} may be shared with another type. If so, the set is copied
+     * before it is modified.
+     */
+    private boolean annotationsShared = false;
+
+    /** The view of {@link #annotations} that {@link #getAnnotations} returns, or null. */
+    private @Nullable Set<AnnotationMirror> annotationsView = null;
 
     /** The explicitly written annotations on this type. */
     // TODO: use this to cache the result once computed? For generic types?
@@ -286,10 +299,42 @@ public abstract class AnnotatedTypeMirror {
      *
      * <p>It does not include annotations in deep types (type arguments, array components, etc).
      *
+     * <p>The returned set is a view: it reflects later changes to the annotations on this type.
+     *
      * @return a unmodifiable set of the annotations on this
      */
     public final Set<AnnotationMirror> getAnnotations() {
-        return Collections.unmodifiableSet(annotations);
+        if (annotationsView == null) {
+            annotationsView = new AnnotationsView();
+        }
+        return annotationsView;
+    }
+
+    /**
+     * An unmodifiable view of the annotations on this type. Unlike {@link
+     * Collections#unmodifiableSet}, it reads {@link #annotations} on every access, because that
+     * field is replaced when a shared set is copied before it is modified.
+     */
+    private final class AnnotationsView extends AbstractSet<AnnotationMirror> {
+        @Override
+        public int size() {
+            return annotations.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return annotations.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return annotations.contains(o);
+        }
+
+        @Override
+        public Iterator<AnnotationMirror> iterator() {
+            return Collections.unmodifiableSet(annotations).iterator();
+        }
     }
 
     /**
@@ -297,8 +342,9 @@ public abstract class AnnotatedTypeMirror {
      *
      * <p>It does not include annotations in deep types (type arguments, array components, etc).
      *
-     * <p>The returned set should not be modified, but for efficiency reasons modification is not
-     * prevented. Modifications might break invariants.
+     * <p>The returned set must not be modified: for efficiency reasons modification is not
+     * prevented, but the set may be shared with copies of this type. Use {@link #addAnnotation},
+     * {@link #removeAnnotation}, and their variants instead.
      *
      * @return the set of the annotations on this, directly
      */
@@ -306,6 +352,44 @@ public abstract class AnnotatedTypeMirror {
         return annotations;
     }
 
+    /**
+     * Returns the annotations on this type for modification. If the set is shared with another
+     * type, it is copied first.
+     *
+     * @return the set of the annotations on this, which is not shared with any other type
+     */
+    private Set<AnnotationMirror> mutableAnnotations() {
+        if (annotationsShared) {
+            Set<AnnotationMirror> copy = AnnotationUtils.createAnnotationSet();
+            copy.addAll(annotations);
+            annotations = copy;
+            annotationsShared = false;
+        }
+        return annotations;
+    }
+
+    /**
+     * Adds the primary annotations of {@code source} to this type. This is equivalent to {@code
+     * addAnnotations(source.getAnnotationsField())}, but if this type has no annotations yet, the
+     * two types share their annotation set until one of them is modified. This makes copying
+     * types, in particular for the caches of {@link AnnotatedTypeFactory}, cheaper.
+     *
+     * @param source the type whose primary annotations to add
+     */
+    /*default-visibility*/ void copyPrimaryAnnotationsFrom(AnnotatedTypeMirror source) {
+        // Type variables and wildcards override addAnnotation to also update their bounds.
+        if (annotations.isEmpty()
+                && source.atypeFactory == atypeFactory
+                && !(this instanceof AnnotatedTypeVariable)
+                && !(this instanceof AnnotatedWildcardType)) {
+            annotations = source.annotations;
+            annotationsShared = true;
+            source.annotationsShared = true;
+        } else {
+            addAnnotations(source.getAnnotationsField());
+        }
+    }
+
     /**
      * Returns the "effective" annotations on this type, i.e. the annotations on the type itself, or
      * on the upper/extends bound of a type variable/wildcard (recursively, until a class type is
@@ -527,7 +611,7 @@ public abstract class AnnotatedTypeMirror {
                     "AnnotatedTypeMirror.addAnnotation: null is not a valid annotation.");
         }
         if (atypeFactory.isSupportedQualifier(a)) {
-            this.annotations.add(a);
+            mutableAnnotations().add(a);
         } else {
             AnnotationMirror aliased = atypeFactory.aliasedAnnotation(a);
             if (atypeFactory.isSupportedQualifier(aliased)) {
@@ -612,7 +696,7 @@ public abstract class AnnotatedTypeMirror {
         AnnotationMirror anno =
                 AnnotationUtils.getAnnotationByName(annotations, AnnotationUtils.annotationName(a));
         if (anno != null) {
-            return annotations.remove(anno);
+            return mutableAnnotations().remove(anno);
         } else {
             return false;
         }
@@ -681,7 +765,12 @@ public abstract class AnnotatedTypeMirror {
      * methods.
      */
     public void clearAnnotations() {
-        annotations.clear();
+        if (annotationsShared) {
+            annotations = AnnotationUtils.createAnnotationSet();
+            annotationsShared = false;
+        } else {
+            annotations.clear();
+        }
     }
 
     @SideEffectFree
@@ -934,7 +1023,7 @@ public abstract class AnnotatedTypeMirror {
             AnnotatedDeclaredType type =
                     new AnnotatedDeclaredType(getUnderlyingType(), atypeFactory, declaration);
             if (copyAnnotations) {
-                type.addAnnotations(this.getAnnotationsField());
+                type.copyPrimaryAnnotationsFrom(this);
             }
             type.setEnclosingType(getEnclosingType());
             type.setTypeArguments(getTypeArguments());
@@ -1300,7 +1389,7 @@ public abstract class AnnotatedTypeMirror {
         public AnnotatedArrayType shallowCopy(boolean copyAnnotations) {
             AnnotatedArrayType type = new AnnotatedArrayType((ArrayType) actualType, atypeFactory);
             if (copyAnnotations) {
-                type.addAnnotations(this.getAnnotationsField());
+                type.copyPrimaryAnnotationsFrom(this);
             }
             type.setComponentType(getComponentType());
             return type;
@@ -1559,7 +1648,7 @@ public abstract class AnnotatedTypeMirror {
                             ((TypeVariable) actualType), atypeFactory, declaration);
 
             if (copyAnnotations) {
-                type.addAnnotations(this.getAnnotationsField());
+                type.copyPrimaryAnnotationsFrom(this);
             }
 
             if (!inUpperBounds) {
@@ -1645,7 +1734,7 @@ public abstract class AnnotatedTypeMirror {
         public AnnotatedNoType shallowCopy(boolean copyAnnotations) {
             AnnotatedNoType type = new AnnotatedNoType((NoType) actualType, atypeFactory);
             if (copyAnnotations) {
-                type.addAnnotations(this.getAnnotationsField());
+                type.copyPrimaryAnnotationsFrom(this);
             }
             return type;
         }
@@ -1687,7 +1776,7 @@ public abstract class AnnotatedTypeMirror {
         public AnnotatedNullType shallowCopy(boolean copyAnnotations) {
             AnnotatedNullType type = new AnnotatedNullType((NullType) actualType, atypeFactory);
             if (copyAnnotations) {
-                type.addAnnotations(this.getAnnotationsField());
+                type.copyPrimaryAnnotationsFrom(this);
             }
             return type;
         }
@@ -1733,7 +1822,7 @@ public abstract class AnnotatedTypeMirror {
             AnnotatedPrimitiveType type =
                     new AnnotatedPrimitiveType((PrimitiveType) actualType, atypeFactory);
             if (copyAnnotations) {
-                type.addAnnotations(this.getAnnotationsField());
+                type.copyPrimaryAnnotationsFrom(this);
             }
             return type;
         }
@@ -1907,7 +1996,7 @@ public abstract class AnnotatedTypeMirror {
             type.setExtendsBound(getExtendsBound().shallowCopy());
             type.setSuperBound(getSuperBound().shallowCopy());
             if (copyAnnotations) {
-                type.addAnnotations(this.getAnnotationsField());
+                type.copyPrimaryAnnotationsFrom(this);
             }
 
             type.uninferredTypeArgument = uninferredTypeArgument;
@@ -1993,7 +2082,7 @@ public abstract class AnnotatedTypeMirror {
             AnnotatedIntersectionType type =
                     new AnnotatedIntersectionType((IntersectionType) actualType, atypeFactory);
             if (copyAnnotations) {
-                type.addAnnotations(this.getAnnotationsField());
+                type.copyPrimaryAnnotationsFrom(this);
             }
             type.supertypes = this.supertypes;
             return type;
@@ -2061,7 +2150,7 @@ public abstract class AnnotatedTypeMirror {
         public AnnotatedUnionType shallowCopy(boolean copyAnnotations) {
             AnnotatedUnionType type = new AnnotatedUnionType((UnionType) actualType, atypeFactory);
             if (copyAnnotations) {
-                type.addAnnotations(this.getAnnotationsField());
+                type.copyPrimaryAnnotationsFrom(this);
             }
             type.alternatives = this.alternatives;
             return type;
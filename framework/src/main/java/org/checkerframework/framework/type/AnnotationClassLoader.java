@@ -26,6 +26,7 @@ import javax.tools.Diagnostic.Kind;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.framework.util.AnnotatedTypes;
+import org.checkerframework.framework.util.QualifierIndex;
 import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.InternalUtils;
@@ -40,6 +41,9 @@ import org.checkerframework.javacutil.InternalUtils;
  * <p>To load annotations using this class, their directory structure and package structure must be
  * identical.
  *
+ * <p>If the qual directory contains a {@link QualifierIndex}, the annotation class names are read
+ * from it instead of scanning the jar file or directory.
+ *
  * <p>Only annotation classes that have the {@link Target} meta-annotation with the value of {@link
  * ElementType#TYPE_USE} (and optionally {@link ElementType#TYPE_PARAMETER}) are loaded. If it has
  * other {@link ElementType} values, it won't be loaded. Other annotation classes must be manually
@@ -463,8 +467,13 @@ public class AnnotationClassLoader {
             return;
         }
 
-        // retrieve the fully qualified class names of the annotations
-        Set<String> annotationNames;
+        // retrieve the fully qualified class names of the annotations, from the qualifier index
+        // if there is one, which saves scanning the qual package
+        Set<String> annotationNames = readQualifierIndex();
+        if (annotationNames != null) {
+            supportedBundledAnnotationClasses.addAll(loadAnnotationClasses(annotationNames));
+            return;
+        }
 
         // see whether the resource URL has a protocol of jar or file
         if (resourceURL.getProtocol().contentEquals("jar")) {
@@ -503,6 +512,25 @@ public class AnnotationClassLoader {
         supportedBundledAnnotationClasses.addAll(loadAnnotationClasses(annotationNames));
     }
 
+    /**
+     * Reads the {@link QualifierIndex} of the qual package, if the jar or directory of {@link
+     * #resourceURL} contains one.
+     *
+     * @return the fully qualified class names in the qual package, or null if there is no index
+     */
+    private @Nullable Set<String> readQualifierIndex() {
+        if (classLoader == null) {
+            return null;
+        }
+        URL index =
+                classLoader.getResource(packageNameWithSlashes + SLASH + QualifierIndex.FILE_NAME);
+        // An index in a different jar or directory would not describe the package that is loaded.
+        if (index == null || !index.toString().startsWith(resourceURL.toString())) {
+            return null;
+        }
+        return QualifierIndex.read(index);
+    }
+
     /**
      * Gets the set of annotation classes in the qual directory of a checker shipped with the
      * Checker Framework. Note that the returned set from this method is mutable. This method is
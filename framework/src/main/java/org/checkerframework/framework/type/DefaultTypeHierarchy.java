@@ -6,8 +6,11 @@ import static org.checkerframework.framework.util.AnnotatedTypes.isEnum;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.TypeElement;
@@ -16,6 +19,7 @@ import javax.lang.model.type.TypeMirror;
 import javax.lang.model.type.TypeVariable;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.framework.qual.Covariant;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedArrayType;
@@ -27,10 +31,13 @@ import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedTypeVari
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedUnionType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcardType;
 import org.checkerframework.framework.type.visitor.AbstractAtmComboVisitor;
+import org.checkerframework.framework.type.visitor.AnnotatedTypeScanner;
 import org.checkerframework.framework.util.AnnotatedTypes;
 import org.checkerframework.framework.util.AtmCombo;
 import org.checkerframework.framework.util.TypeArgumentMapper;
+import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.Pair;
 import org.checkerframework.javacutil.TypesUtils;
 
@@ -121,6 +128,27 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Void>
     protected final SubtypeVisitHistory visitHistory;
     protected final SubtypeVisitHistory typeargVisitHistory;
 
+    /** The maximum number of entries in {@link #subtypeCache}. */
+    protected static final int SUBTYPE_CACHE_SIZE = 300;
+
+    /**
+     * Memoizes the results of {@link #isSubtype(AnnotatedTypeMirror, AnnotatedTypeMirror)} for the
+     * current compilation unit; null if the atfDoNotCache option is passed. The keys describe the
+     * compared types and do not refer to them, so later side effects on the types do not affect
+     * the cache.
+     */
+    protected final Map<SubtypeCacheKey, Boolean> subtypeCache;
+
+    /** Computes the keys of {@link #subtypeCache}. */
+    private final IdentityKeyScanner subtypeCacheKeyScanner;
+
+    /**
+     * The number of active calls to {@link #isSubtype(AnnotatedTypeMirror, AnnotatedTypeMirror)}.
+     * Only the outermost call uses the cache, because the result of a nested call may depend on the
+     * visit histories of the enclosing call.
+     */
+    private int isSubtypeDepth = 0;
+
     public DefaultTypeHierarchy(
             final BaseTypeChecker checker,
             final QualifierHierarchy qualifierHierarchy,
@@ -134,6 +162,16 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Void>
 
         this.ignoreRawTypes = ignoreRawTypes;
         this.invariantArrayComponents = invariantArrayComponents;
+
+        // The hits and misses of the cache are reported by -AresourceStats, per checker.
+        this.subtypeCache =
+                checker.hasOption("atfDoNotCache")
+                        ? null
+                        : CollectionUtils.<SubtypeCacheKey, Boolean>createLRUCache(
+                                SUBTYPE_CACHE_SIZE,
+                                "DefaultTypeHierarchy.subtypeCache of "
+                                        + checker.getClass().getSimpleName());
+        this.subtypeCacheKeyScanner = new IdentityKeyScanner(checker.getProcessingEnvironment());
     }
 
     public StructuralEqualityComparer createEqualityComparer() {
@@ -147,6 +185,9 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Void>
      * {@link #isSubtype(AnnotatedTypeMirror, AnnotatedTypeMirror, AnnotationMirror)} or some of the
      * {@code visitXXX} methods.
      *
+     * <p>The results are memoized in {@link #subtypeCache}, keyed on the underlying types and the
+     * canonical annotations of the two types; see {@link IdentityKeyScanner}.
+     *
      * @param subtype expected subtype
      * @param supertype expected supertype
      * @return true if subtype is actually a subtype of supertype
@@ -154,6 +195,36 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Void>
     @Override
     public boolean isSubtype(
             final AnnotatedTypeMirror subtype, final AnnotatedTypeMirror supertype) {
+        if (subtypeCache == null || isSubtypeDepth > 0) {
+            return isSubtypeInAllHierarchies(subtype, supertype);
+        }
+
+        SubtypeCacheKey key = subtypeCacheKeyScanner.key(subtype, supertype);
+        if (key == null) {
+            return isSubtypeInAllHierarchies(subtype, supertype);
+        }
+        Boolean cached = subtypeCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        boolean result;
+        isSubtypeDepth++;
+        try {
+            result = isSubtypeInAllHierarchies(subtype, supertype);
+        } finally {
+            isSubtypeDepth--;
+        }
+        subtypeCache.put(key, result);
+        return result;
+    }
+
+    /**
+     * Returns true if subtype {@literal <:} supertype in every qualifier hierarchy, without
+     * consulting {@link #subtypeCache}.
+     */
+    private boolean isSubtypeInAllHierarchies(
+            final AnnotatedTypeMirror subtype, final AnnotatedTypeMirror supertype) {
         for (final AnnotationMirror top : qualifierHierarchy.getTopAnnotations()) {
             if (!isSubtype(subtype, supertype, top)) {
                 return false;
@@ -163,6 +234,17 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Void>
         return true;
     }
 
+    /**
+     * Clears the memoized results of isSubtype. Called by {@link AnnotatedTypeFactory#setRoot}
+     * whenever a new compilation unit is processed.
+     */
+    public void clearSubtypeCache() {
+        if (subtypeCache != null) {
+            subtypeCache.clear();
+            subtypeCacheKeyScanner.clear();
+        }
+    }
+
     /**
      * Returns true if subtype {@literal <:} supertype, but only for the hierarchy of which {@code
      * top} is the top.
@@ -1176,4 +1258,186 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Void>
             }
         }
     }
+
+    /**
+     * A key of {@link #subtypeCache}: the descriptions of a subtype and a supertype, see {@link
+     * IdentityKeyScanner}. The tokens of the descriptions are compared by identity.
+     */
+    protected static final class SubtypeCacheKey {
+
+        /** The description of the subtype, followed by the description of the supertype. */
+        private final Object[] tokens;
+
+        /** The hash code of this key. */
+        private final int hash;
+
+        SubtypeCacheKey(Object[] tokens) {
+            this.tokens = tokens;
+            int hash = 1;
+            for (Object token : tokens) {
+                hash = 31 * hash + System.identityHashCode(token);
+            }
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SubtypeCacheKey)) {
+                return false;
+            }
+            SubtypeCacheKey other = (SubtypeCacheKey) o;
+            if (hash != other.hash || tokens.length != other.tokens.length) {
+                return false;
+            }
+            for (int i = 0; i < tokens.length; i++) {
+                if (tokens[i] != other.tokens[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Describes an annotated type by a list of tokens that are compared by identity, one group per
+     * component type in depth-first order:
+     *
+     * <ul>
+     *   <li>the kind of the component,
+     *   <li>the underlying javac type,
+     *   <li>whether a declared type was raw or a wildcard is an uninferred type argument,
+     *   <li>the canonical representatives of the primary annotations (see {@link
+     *       AnnotationBuilder#canonicalAnnotation}); an annotation that was not created by {@link
+     *       AnnotationBuilder}, such as one written in source code, is represented by the
+     *       representative of a copy,
+     *   <li>the descriptions of the components of the component, followed by an end marker.
+     * </ul>
+     *
+     * A component that was visited before, such as a recursive type variable bound, is described
+     * by a back reference to its first occurrence. Two types with the same description are
+     * indistinguishable by isSubtype; the same type written twice may have different descriptions,
+     * which only costs a cache miss.
+     */
+    protected static class IdentityKeyScanner extends AnnotatedTypeScanner<Void, List<Object>> {
+
+        /** Marks the end of the components of a component. */
+        private static final Object END = new Object();
+
+        /** The tokens of back references, indexed by the position of the referenced component. */
+        private final List<Object> backReferences = new ArrayList<>();
+
+        /** The position of each visited component, in visiting order. */
+        private final Map<AnnotatedTypeMirror, Integer> positions = new IdentityHashMap<>();
+
+        /** The tokens of the description that is being computed. */
+        private final List<Object> tokens = new ArrayList<>();
+
+        /** Used to copy annotations that were not created by {@link AnnotationBuilder}. */
+        private final ProcessingEnvironment env;
+
+        /**
+         * The canonical representatives of the annotations that were not created by {@link
+         * AnnotationBuilder}. Cleared with the subtype cache.
+         */
+        private final Map<AnnotationMirror, AnnotationMirror> copies = new IdentityHashMap<>();
+
+        /** Whether an annotation without a canonical representative was found. */
+        private boolean incomplete;
+
+        IdentityKeyScanner(ProcessingEnvironment env) {
+            this.env = env;
+        }
+
+        /** Forgets the representatives of the annotations of the previous compilation unit. */
+        void clear() {
+            copies.clear();
+        }
+
+        /**
+         * Returns the description of the two types, or null if an annotation of the types has no
+         * canonical representative.
+         *
+         * @param subtype the subtype
+         * @param supertype the supertype
+         * @return the key of the two types in the subtype cache, or null
+         */
+        @Nullable SubtypeCacheKey key(AnnotatedTypeMirror subtype, AnnotatedTypeMirror supertype) {
+            tokens.clear();
+            incomplete = false;
+            positions.clear();
+            visit(subtype, tokens);
+            positions.clear();
+            visit(supertype, tokens);
+            positions.clear();
+            return incomplete ? null : new SubtypeCacheKey(tokens.toArray());
+        }
+
+        @Override
+        protected Void scan(AnnotatedTypeMirror type, List<Object> tokens) {
+            if (incomplete) {
+                return null;
+            }
+            if (type == null) {
+                tokens.add(END);
+                return null;
+            }
+            Integer position = positions.get(type);
+            if (position != null) {
+                tokens.add(backReference(position));
+                return null;
+            }
+            positions.put(type, positions.size());
+
+            tokens.add(type.getKind());
+            tokens.add(type.getUnderlyingType());
+            if (type.getKind() == TypeKind.DECLARED) {
+                tokens.add(((AnnotatedDeclaredType) type).wasRaw() ? Boolean.TRUE : Boolean.FALSE);
+            } else if (type.getKind() == TypeKind.WILDCARD) {
+                tokens.add(
+                        ((AnnotatedWildcardType) type).isUninferredTypeArgument()
+                                ? Boolean.TRUE
+                                : Boolean.FALSE);
+            }
+            for (AnnotationMirror anno : type.getAnnotations()) {
+                AnnotationMirror canonical = canonical(anno);
+                if (canonical == null) {
+                    incomplete = true;
+                    return null;
+                }
+                tokens.add(canonical);
+            }
+            tokens.add(END);
+            super.scan(type, tokens);
+            tokens.add(END);
+            return null;
+        }
+
+        /** Returns the canonical representative of {@code anno} or of a copy of it, or null. */
+        private @Nullable AnnotationMirror canonical(AnnotationMirror anno) {
+            AnnotationMirror result = AnnotationBuilder.canonicalAnnotation(anno);
+            if (result == null) {
+                result = copies.get(anno);
+                if (result == null) {
+                    result =
+                            AnnotationBuilder.canonicalAnnotation(
+                                    new AnnotationBuilder(env, anno).build());
+                    copies.put(anno, result);
+                }
+            }
+            return result;
+        }
+
+        /** Returns the token for a back reference to the component at {@code position}. */
+        private Object backReference(int position) {
+            while (backReferences.size() <= position) {
+                backReferences.add(new Object());
+            }
+            return backReferences.get(position);
+        }
+    }
 }
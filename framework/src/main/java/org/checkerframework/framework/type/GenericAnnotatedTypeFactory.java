@@ -76,6 +76,7 @@ import org.checkerframework.framework.qual.MonotonicQualifier;
 import org.checkerframework.framework.qual.RelevantJavaTypes;
 import org.checkerframework.framework.qual.TypeUseLocation;
 import org.checkerframework.framework.qual.Unqualified;
+import org.checkerframework.framework.source.ResourceStatistics;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedDeclaredType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedExecutableType;
 import org.checkerframework.framework.type.treeannotator.ImplicitsTreeAnnotator;
@@ -178,11 +179,11 @@ public abstract class GenericAnnotatedTypeFactory<
     protected Store initializationStaticStore;
 
     /**
-     * Caches for {@link AnalysisResult#runAnalysisFor(Node, boolean, TransferInput,
-     * IdentityHashMap, Map)}. This cache is enabled if {@link #shouldCache} is true. The cache size
-     * is derived from {@link #getCacheSize()}.
+     * Caches for {@link AnalysisResult#runAnalysisFor(Node, boolean, TransferInput, Map, Map)}.
+     * This cache is enabled if {@link #shouldCache} is true. The cache size is derived from {@link
+     * #getCacheSize()}.
      *
-     * @see AnalysisResult#runAnalysisFor(Node, boolean, TransferInput, IdentityHashMap, Map)
+     * @see AnalysisResult#runAnalysisFor(Node, boolean, TransferInput, Map, Map)
      */
     protected final Map<
                     TransferInput<Value, Store>,
@@ -216,7 +217,9 @@ public abstract class GenericAnnotatedTypeFactory<
 
         if (shouldCache) {
             int cacheSize = getCacheSize();
-            flowResultAnalysisCaches = CollectionUtils.createLRUCache(cacheSize);
+            flowResultAnalysisCaches =
+                    CollectionUtils.createLRUCache(
+                            cacheSize, "GenericAnnotatedTypeFactory.flowResultAnalysisCaches");
         } else {
             flowResultAnalysisCaches = null;
         }
@@ -244,7 +247,7 @@ public abstract class GenericAnnotatedTypeFactory<
         this.transfer = analysis.getTransferFunction();
         this.emptyStore = analysis.createEmptyStore(transfer.usesSequentialSemantics());
 
-        this.parseStubFiles();
+        parseStubFilesTimed();
     }
 
     /**
@@ -932,7 +935,11 @@ public abstract class GenericAnnotatedTypeFactory<
         }
         Store store =
                 AnalysisResult.runAnalysisFor(
-                        node, true, prevStore, analysis.getNodeValues(), flowResultAnalysisCaches);
+                        node,
+                        true,
+                        prevStore,
+                        analysis.getNodeValueMap(),
+                        flowResultAnalysisCaches);
         return store;
     }
 
@@ -966,7 +973,7 @@ public abstract class GenericAnnotatedTypeFactory<
                         node,
                         false,
                         analysis.getInput(node.getBlock()),
-                        analysis.getNodeValues(),
+                        analysis.getNodeValueMap(),
                         flowResultAnalysisCaches);
         return res;
     }
@@ -1205,7 +1212,14 @@ public abstract class GenericAnnotatedTypeFactory<
             boolean updateInitializationStore,
             boolean isStatic,
             Store capturedStore) {
-        ControlFlowGraph cfg = CFCFGBuilder.build(root, ast, checker, this, processingEnv);
+        ResourceStatistics statistics = checker.getResourceStatistics();
+        ControlFlowGraph cfg;
+        statistics.start(checker, ResourceStatistics.Phase.CFG_CONSTRUCTION);
+        try {
+            cfg = CFCFGBuilder.build(root, ast, checker, this, processingEnv);
+        } finally {
+            statistics.stop();
+        }
 
         if (isInitializationCode) {
             Store initStore = !isStatic ? initializationStore : initializationStaticStore;
@@ -1220,7 +1234,12 @@ public abstract class GenericAnnotatedTypeFactory<
         } else {
             transfer.setFixedInitialStore(capturedStore);
         }
-        analysis.performAnalysis(cfg, fieldValues);
+        statistics.start(checker, ResourceStatistics.Phase.DATAFLOW_ANALYSIS);
+        try {
+            analysis.performAnalysis(cfg, fieldValues);
+        } finally {
+            statistics.stop();
+        }
         AnalysisResult<Value, Store> result = analysis.getResult();
 
         // store result
@@ -17,12 +17,12 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
-import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
@@ -814,12 +814,18 @@ public class AnnotatedTypes {
         return found;
     }
 
-    private static Map<TypeElement, Boolean> isTypeAnnotationCache = new IdentityHashMap<>();
+    /**
+     * Weak, so that the elements of earlier compilations in the same JVM, for example in a {@link
+     * CheckerDaemon}, can be garbage-collected. Elements do not override {@code equals}.
+     */
+    private static final Map<TypeElement, Boolean> isTypeAnnotationCache =
+            new WeakHashMap<>();
 
     public static boolean isTypeAnnotation(AnnotationMirror anno, Class<?> cls) {
         TypeElement elem = (TypeElement) anno.getAnnotationType().asElement();
-        if (isTypeAnnotationCache.containsKey(elem)) {
-            return isTypeAnnotationCache.get(elem);
+        Boolean cached = isTypeAnnotationCache.get(elem);
+        if (cached != null) {
+            return cached;
         }
 
         // the annotation is a type annotation if it has the proper ElementTypes in the @Target
@@ -2,11 +2,17 @@ package org.checkerframework.framework.util;
 
 import static org.checkerframework.javacutil.AnnotationUtils.annotationOrdering;
 
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
 import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import javax.lang.model.element.AnnotationMirror;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
 
 /**
@@ -22,12 +28,26 @@ import org.checkerframework.javacutil.AnnotationUtils;
  *
  * <p>AnnotationMirror is an interface and not all implementing classes provide a correct equals
  * method; therefore, existing implementations of Map cannot be used.
+ *
+ * <p>As long as all keys have a canonical representative (see {@link
+ * AnnotationBuilder#canonicalAnnotation}), lookups use an identity hash map from representatives to
+ * keys instead of comparing the annotations one by one.
  */
 public class AnnotationMirrorMap<V> implements Map<AnnotationMirror, V> {
 
     /** The actual map to which all work is delegated. */
     private final Map<AnnotationMirror, V> shadowMap = new TreeMap<>(annotationOrdering());
 
+    /**
+     * Maps the canonical representative of each key to the key, or null if some key has no
+     * canonical representative. Every change to {@link #shadowMap}, including removal through the
+     * views, also updates the index.
+     */
+    private @Nullable Map<AnnotationMirror, AnnotationMirror> keyIndex = new IdentityHashMap<>();
+
+    /** The {@link AnnotationBuilder#internGeneration} in which {@link #keyIndex} was built. */
+    private int indexGeneration = AnnotationBuilder.internGeneration();
+
     public AnnotationMirrorMap() {}
 
     public AnnotationMirrorMap(Map<AnnotationMirror, ? extends V> primaries) {
@@ -47,12 +67,31 @@ public class AnnotationMirrorMap<V> implements Map<AnnotationMirror, V> {
     @Override
     public boolean containsKey(Object key) {
         if (key instanceof AnnotationMirror) {
-            return AnnotationUtils.containsSame(shadowMap.keySet(), (AnnotationMirror) key);
+            return getSameKey((AnnotationMirror) key) != null;
         } else {
             return false;
         }
     }
 
+    /**
+     * Returns the key that is the same as {@code anno}, or null if there is none.
+     *
+     * @param anno the annotation to look up
+     * @return the key that is the same as {@code anno}, or null
+     */
+    private @Nullable AnnotationMirror getSameKey(AnnotationMirror anno) {
+        if (keyIndex != null && indexGeneration != AnnotationBuilder.internGeneration()) {
+            keyIndex = null;
+        }
+        if (keyIndex != null) {
+            AnnotationMirror canonical = AnnotationBuilder.canonicalAnnotation(anno);
+            if (canonical != null) {
+                return keyIndex.get(canonical);
+            }
+        }
+        return AnnotationUtils.getSame(shadowMap.keySet(), anno);
+    }
+
     @Override
     public boolean containsValue(Object value) {
         return shadowMap.containsValue(value);
@@ -61,8 +100,7 @@ public class AnnotationMirrorMap<V> implements Map<AnnotationMirror, V> {
     @Override
     public V get(Object key) {
         if (key instanceof AnnotationMirror) {
-            AnnotationMirror keyAnno =
-                    AnnotationUtils.getSame(shadowMap.keySet(), (AnnotationMirror) key);
+            AnnotationMirror keyAnno = getSameKey((AnnotationMirror) key);
             if (keyAnno != null) {
                 return shadowMap.get(keyAnno);
             }
@@ -75,21 +113,43 @@ public class AnnotationMirrorMap<V> implements Map<AnnotationMirror, V> {
         V pre = get(key);
         remove(key);
         shadowMap.put(key, value);
+        if (keyIndex != null) {
+            AnnotationMirror canonical = AnnotationBuilder.canonicalAnnotation(key);
+            if (canonical == null) {
+                keyIndex = null;
+            } else {
+                keyIndex.put(canonical, key);
+            }
+        }
         return pre;
     }
 
     @Override
     public V remove(Object key) {
         if (key instanceof AnnotationMirror) {
-            AnnotationMirror keyAnno =
-                    AnnotationUtils.getSame(shadowMap.keySet(), (AnnotationMirror) key);
+            AnnotationMirror keyAnno = getSameKey((AnnotationMirror) key);
             if (keyAnno != null) {
+                removeFromIndex(keyAnno);
                 return shadowMap.remove(keyAnno);
             }
         }
         return null;
     }
 
+    /**
+     * Removes a key from {@link #keyIndex}.
+     *
+     * @param key the removed key
+     */
+    private void removeFromIndex(AnnotationMirror key) {
+        if (keyIndex != null) {
+            AnnotationMirror canonical = AnnotationBuilder.canonicalAnnotation(key);
+            if (canonical != null) {
+                keyIndex.remove(canonical);
+            }
+        }
+    }
+
     @Override
     public void putAll(Map<? extends AnnotationMirror, ? extends V> m) {
         for (Entry<? extends AnnotationMirror, ? extends V> entry : m.entrySet()) {
@@ -100,6 +160,8 @@ public class AnnotationMirrorMap<V> implements Map<AnnotationMirror, V> {
     @Override
     public void clear() {
         shadowMap.clear();
+        keyIndex = new IdentityHashMap<>();
+        indexGeneration = AnnotationBuilder.internGeneration();
     }
 
     @Override
@@ -109,11 +171,75 @@ public class AnnotationMirrorMap<V> implements Map<AnnotationMirror, V> {
 
     @Override
     public Collection<V> values() {
-        return shadowMap.values();
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                final Iterator<Entry<AnnotationMirror, V>> iter = new EntryIterator();
+                return new Iterator<V>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iter.hasNext();
+                    }
+
+                    @Override
+                    public V next() {
+                        return iter.next().getValue();
+                    }
+
+                    @Override
+                    public void remove() {
+                        iter.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return shadowMap.size();
+            }
+        };
     }
 
     @Override
     public Set<Entry<AnnotationMirror, V>> entrySet() {
-        return shadowMap.entrySet();
+        return new AbstractSet<Entry<AnnotationMirror, V>>() {
+            @Override
+            public Iterator<Entry<AnnotationMirror, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return shadowMap.size();
+            }
+        };
+    }
+
+    /** Iterates over the entries of {@link #shadowMap} and keeps {@link #keyIndex} up to date. */
+    private class EntryIterator implements Iterator<Entry<AnnotationMirror, V>> {
+        /** The iterator of {@link #shadowMap}. */
+        private final Iterator<Entry<AnnotationMirror, V>> iter = shadowMap.entrySet().iterator();
+
+        /** The key of the entry that {@link #next()} returned last. */
+        private @Nullable AnnotationMirror lastKey = null;
+
+        @Override
+        public boolean hasNext() {
+            return iter.hasNext();
+        }
+
+        @Override
+        public Entry<AnnotationMirror, V> next() {
+            Entry<AnnotationMirror, V> entry = iter.next();
+            // Read the key now: a TreeMap may reuse the entry for another key after a removal.
+            lastKey = entry.getKey();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            iter.remove();
+            removeFromIndex(lastKey);
+        }
     }
 }
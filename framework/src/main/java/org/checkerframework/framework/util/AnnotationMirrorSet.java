@@ -3,10 +3,14 @@ package org.checkerframework.framework.util;
 import static org.checkerframework.javacutil.AnnotationUtils.annotationOrdering;
 
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import javax.lang.model.element.AnnotationMirror;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
 
 /**
@@ -22,10 +26,25 @@ import org.checkerframework.javacutil.AnnotationUtils;
  *
  * <p>AnnotationMirror is an interface and not all implementing classes provide a correct equals
  * method; therefore, the existing implementations of Set cannot be used.
+ *
+ * <p>As long as all elements have a canonical representative (see {@link
+ * AnnotationBuilder#canonicalAnnotation}), lookups use an identity hash map from representatives to
+ * elements instead of comparing the annotations one by one.
  */
 public class AnnotationMirrorSet implements Set<AnnotationMirror> {
     private Set<AnnotationMirror> shadowSet = new TreeSet<>(annotationOrdering());
 
+    /**
+     * Maps the canonical representative of each element to the element, or null if some element
+     * has no canonical representative. Every change to {@link #shadowSet}, including removal
+     * through the iterator, also updates the index.
+     */
+    private @Nullable Map<AnnotationMirror, AnnotationMirror> identityIndex =
+            new IdentityHashMap<>();
+
+    /** The {@link AnnotationBuilder#internGeneration} in which {@link #identityIndex} was built. */
+    private int indexGeneration = AnnotationBuilder.internGeneration();
+
     public AnnotationMirrorSet() {}
 
     public AnnotationMirrorSet(Collection<? extends AnnotationMirror> values) {
@@ -45,13 +64,89 @@ public class AnnotationMirrorSet implements Set<AnnotationMirror> {
 
     @Override
     public boolean contains(Object o) {
-        return o instanceof AnnotationMirror
-                && AnnotationUtils.containsSame(shadowSet, (AnnotationMirror) o);
+        return o instanceof AnnotationMirror && getSame((AnnotationMirror) o) != null;
+    }
+
+    /**
+     * Returns the element that is the same as {@code anno}, or null if there is none.
+     *
+     * @param anno the annotation to look up
+     * @return the element that is the same as {@code anno}, or null
+     */
+    private @Nullable AnnotationMirror getSame(AnnotationMirror anno) {
+        if (identityIndex != null && indexGeneration != AnnotationBuilder.internGeneration()) {
+            identityIndex = null;
+        }
+        if (identityIndex != null) {
+            AnnotationMirror canonical = AnnotationBuilder.canonicalAnnotation(anno);
+            if (canonical != null) {
+                return identityIndex.get(canonical);
+            }
+        }
+        return AnnotationUtils.getSame(shadowSet, anno);
+    }
+
+    /**
+     * Records a new element in {@link #identityIndex}, or discards the index if the element has no
+     * canonical representative.
+     *
+     * @param anno the new element
+     */
+    private void addToIndex(AnnotationMirror anno) {
+        if (identityIndex != null) {
+            AnnotationMirror canonical = AnnotationBuilder.canonicalAnnotation(anno);
+            if (canonical == null) {
+                identityIndex = null;
+            } else {
+                identityIndex.put(canonical, anno);
+            }
+        }
+    }
+
+    /**
+     * Removes an element from {@link #identityIndex}.
+     *
+     * @param anno the removed element
+     */
+    private void removeFromIndex(AnnotationMirror anno) {
+        if (identityIndex != null) {
+            AnnotationMirror canonical = AnnotationBuilder.canonicalAnnotation(anno);
+            if (canonical != null) {
+                identityIndex.remove(canonical);
+            }
+        }
+    }
+
+    /** Resets {@link #identityIndex} to an empty index for the current generation. */
+    private void resetIndex() {
+        identityIndex = new IdentityHashMap<>();
+        indexGeneration = AnnotationBuilder.internGeneration();
     }
 
     @Override
     public Iterator<AnnotationMirror> iterator() {
-        return shadowSet.iterator();
+        final Iterator<AnnotationMirror> iter = shadowSet.iterator();
+        return new Iterator<AnnotationMirror>() {
+            /** The element that {@link #next()} returned last. */
+            private @Nullable AnnotationMirror last = null;
+
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public AnnotationMirror next() {
+                last = iter.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                iter.remove();
+                removeFromIndex(last);
+            }
+        };
     }
 
     @Override
@@ -70,13 +165,17 @@ public class AnnotationMirrorSet implements Set<AnnotationMirror> {
             return false;
         }
         shadowSet.add(annotationMirror);
+        addToIndex(annotationMirror);
         return true;
     }
 
     @Override
     public boolean remove(Object o) {
         if (o instanceof AnnotationMirror) {
-            AnnotationMirror found = AnnotationUtils.getSame(shadowSet, (AnnotationMirror) o);
+            AnnotationMirror found = getSame((AnnotationMirror) o);
+            if (found != null) {
+                removeFromIndex(found);
+            }
             return found != null && shadowSet.remove(found);
         }
         return false;
@@ -113,6 +212,10 @@ public class AnnotationMirrorSet implements Set<AnnotationMirror> {
         }
         if (newSet.size() != shadowSet.size()) {
             shadowSet = newSet;
+            resetIndex();
+            for (AnnotationMirror anno : newSet) {
+                addToIndex(anno);
+            }
             return true;
         }
         return false;
@@ -132,5 +235,6 @@ public class AnnotationMirrorSet implements Set<AnnotationMirror> {
     @Override
     public void clear() {
         shadowSet.clear();
+        resetIndex();
     }
 }
@@ -0,0 +1,515 @@
+package org.checkerframework.framework.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.framework.util.defaults.QualifierDefaults;
+import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.CollectionUtils;
+
+/**
+ * A long-lived JVM that runs javac for {@link CheckerMain}, so that repeated compilations do not
+ * pay for starting a JVM, loading and JIT-compiling javac and the Checker Framework, and parsing
+ * the stub files again. It is used when CheckerMain is given the {@code -Adaemon} option.
+ *
+ * <p>The daemon runs each compilation in-process with a fresh javac context, so the checkers are
+ * instantiated anew, but the classes of the Checker Framework stay loaded, and process-wide caches
+ * such as the one of the parsed stub files stay populated. The Checker Framework jar is on the
+ * class path of the daemon, so the class loader that javac creates for the processor path loads
+ * the checkers from it.
+ *
+ * <p>A daemon serves the compilations of one JVM configuration (the java command, its class path,
+ * and its {@code -J} options) in one working directory. It listens on a loopback port and writes
+ * the port and a random token to a file in the {@code .checkerframework-daemon} directory of the
+ * user's home directory; a request must start with the token. Requests are served one at a time.
+ * The daemon exits once it has been idle for the given number of minutes.
+ *
+ * <p>The client side is {@link #compile}. It starts a daemon if none is running, sends the javac
+ * arguments, and copies the output of the compilation to its own standard output and error. If it
+ * cannot use a daemon, the caller runs javac in a separate process, as without {@code -Adaemon}.
+ * In particular, no daemon is used on a file system that cannot restrict the port file to the
+ * user, because any local user who can read the token can run javac as this user.
+ *
+ * <p>Problems of the daemon itself are written to its log file, next to the port file. Problems of
+ * a compilation are also reported to the client, on its standard error.
+ */
+public class CheckerDaemon {
+
+    /** The default number of idle minutes after which a daemon exits. */
+    public static final int DEFAULT_IDLE_MINUTES = 60;
+
+    /** A frame of standard output. */
+    private static final byte STDOUT = 1;
+
+    /** A frame of standard error. */
+    private static final byte STDERR = 2;
+
+    /** The last frame of a response, which contains the exit status of javac. */
+    private static final byte EXIT = 0;
+
+    /** The exit status of javac for an abnormal termination. */
+    private static final int EXIT_ABNORMAL = 4;
+
+    /** How long a client waits for a new daemon to start, in milliseconds. */
+    private static final int STARTUP_TIMEOUT = 20000;
+
+    /** How long a daemon waits for a client to send its request, in milliseconds. */
+    private static final int REQUEST_TIMEOUT = 10000;
+
+    /** How long a client waits for a connection to a daemon, in milliseconds. */
+    private static final int CONNECT_TIMEOUT = 1000;
+
+    /**
+     * The tasks to run at the end of the current compilation, or null if this JVM is not a daemon.
+     */
+    private static @Nullable List<Runnable> endOfCompilationHooks = null;
+
+    /** The file that contains the port and the token of this daemon. */
+    private final File portFile;
+
+    /** The number of idle minutes after which this daemon exits. */
+    private final int idleMinutes;
+
+    /** The token that each request must start with. */
+    private final String token;
+
+    /** The log of this daemon: its standard error, which is redirected to the log file. */
+    private final PrintStream log;
+
+    private CheckerDaemon(File portFile, int idleMinutes) {
+        this.portFile = portFile;
+        this.idleMinutes = idleMinutes;
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        this.token = toHex(bytes);
+        this.log = System.err;
+    }
+
+    /**
+     * Runs a daemon. Started by {@link #compile}.
+     *
+     * @param args the file to write the port and the token to, and the number of idle minutes
+     *     after which the daemon exits
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java CheckerDaemon PORT-FILE IDLE-MINUTES");
+            System.exit(2);
+        }
+        endOfCompilationHooks = new ArrayList<>();
+        new CheckerDaemon(new File(args[0]), Integer.parseInt(args[1])).serve();
+        // Threads that a compilation left behind must not keep the JVM alive.
+        System.exit(0);
+    }
+
+    /**
+     * If this JVM is a daemon, arranges for {@code hook} to be run at the end of the current
+     * compilation. Checkers use this instead of a JVM shutdown hook, which would only run when the
+     * daemon exits.
+     *
+     * @param hook the task to run
+     * @return true if this JVM is a daemon, false if the caller should add a JVM shutdown hook
+     */
+    public static boolean addEndOfCompilationHook(Runnable hook) {
+        List<Runnable> hooks = endOfCompilationHooks;
+        if (hooks == null) {
+            return false;
+        }
+        synchronized (hooks) {
+            hooks.add(hook);
+        }
+        return true;
+    }
+
+    /** Serves requests until the daemon has been idle for {@link #idleMinutes}. */
+    private void serve() throws IOException {
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(idleMinutes * 60 * 1000);
+            String contents = server.getLocalPort() + " " + token;
+            writePortFile(contents);
+            try {
+                while (true) {
+                    try (Socket socket = accept(server)) {
+                        if (socket == null) {
+                            return;
+                        }
+                        serveRequest(socket);
+                    } catch (IOException e) {
+                        // The client went away, which is not a problem of the daemon; wait for
+                        // the next one.
+                    }
+                }
+            } finally {
+                deletePortFile(contents);
+            }
+        }
+    }
+
+    /**
+     * Waits for the next client.
+     *
+     * @param server the socket to accept a client on
+     * @return the socket of the client, or null if the daemon has been idle for too long
+     */
+    private static @Nullable Socket accept(ServerSocket server) throws IOException {
+        try {
+            return server.accept();
+        } catch (SocketTimeoutException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes {@code contents} to {@link #portFile} so that only the user can read it.
+     *
+     * @throws IOException if the file cannot be written, or its permissions cannot be restricted
+     *     because the file system is not a POSIX file system
+     */
+    private void writePortFile(String contents) throws IOException {
+        Path tmp = new File(portFile.getPath() + ".tmp").toPath();
+        Files.deleteIfExists(tmp);
+        try {
+            Files.createFile(
+                    tmp,
+                    PosixFilePermissions.asFileAttribute(
+                            PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            // Do not publish the token in a file that other users might be able to read.
+            throw new IOException("Cannot restrict the permissions of " + tmp, e);
+        }
+        Files.write(tmp, contents.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, portFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Deletes {@link #portFile} unless a newer daemon has replaced it.
+     *
+     * @param contents the contents this daemon wrote to the file
+     */
+    private void deletePortFile(String contents) {
+        if (contents.equals(readPortFile(portFile))) {
+            portFile.delete();
+        }
+    }
+
+    /**
+     * Runs javac for one request. The standard output and error of this JVM are redirected to the
+     * client while javac runs, because checkers print to them directly.
+     */
+    private void serveRequest(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        // A client that does not send its request must not block the daemon.
+        socket.setSoTimeout(REQUEST_TIMEOUT);
+        if (!MessageDigest.isEqual(
+                token.getBytes(StandardCharsets.UTF_8),
+                readString(in, token.length()).getBytes(StandardCharsets.UTF_8))) {
+            return;
+        }
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = readString(in, Integer.MAX_VALUE);
+        }
+        socket.setSoTimeout(0);
+
+        PrintStream oldOut = System.out;
+        PrintStream oldErr = System.err;
+        PrintStream newOut = new PrintStream(new FrameOutputStream(out, STDOUT), true);
+        PrintStream newErr = new PrintStream(new FrameOutputStream(out, STDERR), true);
+        int exitStatus;
+        System.setOut(newOut);
+        System.setErr(newErr);
+        try {
+            try {
+                exitStatus = com.sun.tools.javac.Main.compile(args);
+            } catch (Throwable t) {
+                newErr.println("CheckerDaemon: javac terminated abnormally: " + t);
+                logException("javac terminated abnormally", t);
+                exitStatus = EXIT_ABNORMAL;
+            }
+            runEndOfCompilationHooks(newErr);
+        } finally {
+            newOut.flush();
+            newErr.flush();
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+        }
+        synchronized (out) {
+            out.writeByte(EXIT);
+            out.writeInt(exitStatus);
+            out.flush();
+        }
+    }
+
+    /**
+     * Runs and forgets the tasks registered by {@link #addEndOfCompilationHook}. Then resets the
+     * process-wide state that a compilation leaves behind and that the next compilation must not
+     * see.
+     *
+     * @param err the standard error of the client
+     */
+    private void runEndOfCompilationHooks(PrintStream err) {
+        List<Runnable> hooks;
+        synchronized (endOfCompilationHooks) {
+            hooks = new ArrayList<>(endOfCompilationHooks);
+            endOfCompilationHooks.clear();
+        }
+        for (Runnable hook : hooks) {
+            try {
+                hook.run();
+            } catch (Throwable t) {
+                err.println("CheckerDaemon: an end-of-compilation task failed: " + t);
+                logException("an end-of-compilation task failed", t);
+            }
+        }
+        // The elements and annotations of this compilation belong to its javac context.
+        AnnotationBuilder.clearInternedAnnotations();
+        QualifierDefaults.clearBoundTypeCache();
+        CollectionUtils.disableCacheStatistics();
+    }
+
+    /**
+     * Writes an exception to the log of this daemon.
+     *
+     * @param message what failed
+     * @param t the exception
+     */
+    private void logException(String message, Throwable t) {
+        log.println("CheckerDaemon: " + message + ":");
+        t.printStackTrace(log);
+        log.flush();
+    }
+
+    /** Sends everything written to it to the client as frames of one kind. */
+    private static class FrameOutputStream extends OutputStream {
+        /** The stream to the client; all frames are written while holding its lock. */
+        private final DataOutputStream out;
+
+        /** The kind of the frames. */
+        private final byte kind;
+
+        FrameOutputStream(DataOutputStream out, byte kind) {
+            this.out = out;
+            this.kind = kind;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (out) {
+                out.writeByte(kind);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    /// Client
+    ///
+
+    /**
+     * Runs javac in a daemon, starting one if necessary.
+     *
+     * @param command the command that starts a daemon, without the arguments of {@link #main}
+     * @param jars the jars that the daemon runs; a daemon is not used after one of them changed
+     * @param javacArgs the arguments to pass to javac
+     * @param idleMinutes the number of idle minutes after which a new daemon exits
+     * @return the exit status of javac, or null if no daemon could be used and nothing was output
+     */
+    public static @Nullable Integer compile(
+            List<String> command, List<File> jars, List<String> javacArgs, int idleMinutes) {
+        File dir = new File(System.getProperty("user.home"), ".checkerframework-daemon");
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            // The daemon could not restrict its port file to the user; see writePortFile.
+            return null;
+        }
+        File portFile = new File(dir, daemonKey(command, jars) + ".port");
+        String stale = readPortFile(portFile);
+        if (stale != null) {
+            Integer result = compile(stale, javacArgs);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            System.err.println("CheckerDaemon: could not create " + dir);
+            return null;
+        }
+        List<String> daemonCommand = new ArrayList<>(command);
+        daemonCommand.add(portFile.getAbsolutePath());
+        daemonCommand.add(Integer.toString(idleMinutes));
+        File log = new File(dir, portFile.getName().replace(".port", ".log"));
+        Process daemon;
+        try {
+            daemon =
+                    new ProcessBuilder(daemonCommand)
+                            .redirectErrorStream(true)
+                            .redirectOutput(log)
+                            .start();
+        } catch (IOException e) {
+            System.err.println("CheckerDaemon: could not start a daemon: " + e);
+            return null;
+        }
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT;
+        while (System.currentTimeMillis() < deadline && daemon.isAlive()) {
+            String contents = readPortFile(portFile);
+            if (contents != null && !contents.equals(stale)) {
+                return compile(contents, javacArgs);
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        System.err.println("CheckerDaemon: the daemon did not start; see " + log);
+        return null;
+    }
+
+    /**
+     * Sends a request to a running daemon and copies its output.
+     *
+     * @param portFileContents the port and the token of the daemon
+     * @param javacArgs the arguments to pass to javac
+     * @return the exit status of javac, or null if the daemon could not be reached
+     */
+    private static @Nullable Integer compile(String portFileContents, List<String> javacArgs) {
+        String[] portAndToken = portFileContents.split(" ");
+        if (portAndToken.length != 2) {
+            return null;
+        }
+        boolean received = false;
+        try (Socket socket = new Socket()) {
+            socket.connect(
+                    new InetSocketAddress(
+                            InetAddress.getLoopbackAddress(), Integer.parseInt(portAndToken[0])),
+                    CONNECT_TIMEOUT);
+            DataOutputStream out =
+                    new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            writeString(out, portAndToken[1]);
+            out.writeInt(javacArgs.size());
+            for (String arg : javacArgs) {
+                writeString(out, arg);
+            }
+            out.flush();
+
+            DataInputStream in =
+                    new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            while (true) {
+                byte kind = in.readByte();
+                received = true;
+                if (kind == EXIT) {
+                    return in.readInt();
+                }
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                PrintStream stream = kind == STDOUT ? System.out : System.err;
+                stream.write(bytes);
+                stream.flush();
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        } catch (IOException e) {
+            if (!received) {
+                return null;
+            }
+            System.err.println("CheckerDaemon: the daemon terminated unexpectedly: " + e);
+            return EXIT_ABNORMAL;
+        }
+    }
+
+    /**
+     * Returns the name of the daemon for a command, the jars it runs, and the working directory.
+     *
+     * @param command the command that starts a daemon
+     * @param jars the jars that the daemon runs
+     * @return a digest that identifies the daemon
+     */
+    private static String daemonKey(List<String> command, List<File> jars) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        StringBuilder key = new StringBuilder(System.getProperty("user.dir"));
+        for (String arg : command) {
+            key.append('\0').append(arg);
+        }
+        for (File jar : jars) {
+            key.append('\0').append(jar.lastModified());
+        }
+        return toHex(md.digest(key.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /** Returns the contents of a port file, or null if it does not exist. */
+    private static @Nullable String readPortFile(File portFile) {
+        try {
+            return new String(Files.readAllBytes(portFile.toPath()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in, int maxLength) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > maxLength) {
+            throw new EOFException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder result = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+}
@@ -17,6 +17,7 @@ import java.util.jar.JarInputStream;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
+import org.checkerframework.common.wholeprograminference.WholeProgramInferenceFixpoint;
 import org.checkerframework.javacutil.PluginUtil;
 
 /**
@@ -35,6 +36,12 @@ import org.checkerframework.javacutil.PluginUtil;
  * To debug this class, use the {@code -AoutputArgsToFile=FILENAME} command-line argument or {@code
  * -AoutputArgsToFile=-} to output to standard out.
  *
+ * <p>With the {@code -Adaemon} option, CheckerMain runs javac in a long-lived {@link CheckerDaemon}
+ * instead of a new JVM, and falls back to a new JVM if it cannot use the daemon.
+ *
+ * <p>With the {@code -AinferFixpoint} option, CheckerMain runs whole-program inference to a
+ * fixpoint in a new JVM; see {@link WholeProgramInferenceFixpoint}.
+ *
  * <p>"To run the Checker Framework" really means to run java, where the program being run is a
  * special version of javac, and javac is passed a {@code -processor} command-line argument that
  * mentions a Checker Framework checker. There are 5 relevant classpaths: The classpath and
@@ -72,6 +79,12 @@ public class CheckerMain {
     /** The path to checker-qual.jar. */
     protected final File checkerQualJar;
 
+    /**
+     * The path to the class data sharing archive that the {@code cdsArchive} build task creates.
+     * It is used if it exists.
+     */
+    protected final File cdsArchive;
+
     private final List<String> compilationBootclasspath;
 
     private final List<String> runtimeClasspath;
@@ -112,6 +125,8 @@ public class CheckerMain {
         this.javacJar =
                 extractFileArg(PluginUtil.JAVAC_PATH_OPT, new File(searchPath, "javac.jar"), args);
 
+        this.cdsArchive = new File(searchPath, "checker.jsa");
+
         final String jdkJarName = PluginUtil.getJdkJarName();
         this.jdkJar =
                 extractFileArg(PluginUtil.JDK_PATH_OPT, new File(searchPath, jdkJarName), args);
@@ -381,20 +396,69 @@ public class CheckerMain {
      * classpath.
      */
     public List<String> getExecArguments() {
-        List<String> args = new ArrayList<>(jvmOpts.size() + cpOpts.size() + toolOpts.size() + 7);
+        List<String> args = getJvmArguments(runtimeClasspath);
+        addMainToArgs(args);
+        args.addAll(getJavacArguments(true));
+        return args;
+    }
+
+    /**
+     * Returns the command that starts the JVM that runs javac, without the main class.
+     *
+     * @param classpath the runtime classpath of the JVM
+     * @return the java command and its options
+     */
+    protected List<String> getJvmArguments(final List<String> classpath) {
+        List<String> args = new ArrayList<>(jvmOpts.size() + 5);
 
         final String java = PluginUtil.getJavaCommand(System.getProperty("java.home"), System.out);
         args.add(java);
 
         args.add("-classpath");
-        args.add(String.join(File.pathSeparator, runtimeClasspath));
+        args.add(String.join(File.pathSeparator, classpath));
         args.add("-ea");
         // com.sun.tools needs to be enabled separately
         args.add("-ea:com.sun.tools...");
 
+        if (cdsArchive.exists()
+                && PluginUtil.getJreVersion() >= 1.8
+                && isCdsArchiveClasspath(classpath)) {
+            // Map the classes that the training run of the cdsArchive build task loaded, instead of
+            // loading them one by one. -Xshare:auto silently ignores an archive that the JVM cannot
+            // use, e.g. one created by a different JVM. Users can pass -J-Xshare:off, which comes
+            // later and therefore takes precedence.
+            args.add("-XX:SharedArchiveFile=" + cdsArchive.getAbsolutePath());
+            args.add("-Xshare:auto");
+        }
+
         args.addAll(jvmOpts);
+        return args;
+    }
 
-        addMainToArgs(args);
+    /**
+     * Returns true if the class data sharing archive was created with the given runtime classpath.
+     * The {@code cdsArchive} build task creates the archive with only the {@code javac.jar} next to
+     * the archive on the classpath. A JVM with any other classpath, such as the ones for {@code
+     * -Adaemon} and {@code -AinferFixpoint}, which also contain checker.jar, cannot use the
+     * archive.
+     *
+     * @param classpath the runtime classpath of the JVM
+     * @return true if the JVM can use the class data sharing archive
+     */
+    private boolean isCdsArchiveClasspath(final List<String> classpath) {
+        File archiveJavacJar = new File(cdsArchive.getParentFile(), "javac.jar");
+        return classpath.equals(Collections.singletonList(archiveJavacJar.getAbsolutePath()));
+    }
+
+    /**
+     * Returns the arguments to pass to javac.
+     *
+     * @param quotePaths whether to quote the classpath and processorpath if they contain spaces;
+     *     true for arguments that are passed on a command line
+     * @return the arguments to pass to javac
+     */
+    protected List<String> getJavacArguments(final boolean quotePaths) {
+        List<String> args = new ArrayList<>(toolOpts.size() + 5);
 
         // No classes on the compilation bootclasspath will be loaded
         // during compilation, but the classes are read by the compiler
@@ -407,12 +471,14 @@ public class CheckerMain {
         args.add("-Xbootclasspath/p:" + String.join(File.pathSeparator, compilationBootclasspath));
 
         if (!argsListHasClassPath(argListFiles)) {
+            String classpath = concatenatePaths(cpOpts);
             args.add("-classpath");
-            args.add(quote(concatenatePaths(cpOpts)));
+            args.add(quotePaths ? quote(classpath) : classpath);
         }
         if (!argsListHasProcessorPath(argListFiles)) {
+            String processorpath = concatenatePaths(ppOpts);
             args.add("-processorpath");
-            args.add(quote(concatenatePaths(ppOpts)));
+            args.add(quotePaths ? quote(processorpath) : processorpath);
         }
 
         args.addAll(toolOpts);
@@ -466,6 +532,8 @@ public class CheckerMain {
      * classpath.
      */
     public int invokeCompiler() {
+        String daemonIdleMinutes = extractDaemonOption(toolOpts);
+        boolean inferFixpoint = toolOpts.remove("-AinferFixpoint");
         List<String> args = getExecArguments();
 
         for (int i = 0; i < args.size(); i++) {
@@ -474,15 +542,101 @@ public class CheckerMain {
             if (arg.startsWith("-AoutputArgsToFile=")) {
                 String fileName = arg.substring(19);
                 args.remove(i);
+                toolOpts.remove(arg);
                 outputArgumentsToFile(fileName, args);
                 break;
             }
         }
 
+        if (inferFixpoint) {
+            return invokeInferFixpoint();
+        }
+
+        if (daemonIdleMinutes != null) {
+            Integer exitStatus = invokeDaemon(daemonIdleMinutes);
+            if (exitStatus != null) {
+                return exitStatus;
+            }
+        }
+
         // Actually invoke the compiler
         return ExecUtil.execute(args.toArray(new String[args.size()]), System.out, System.err);
     }
 
+    /**
+     * Remove the {@code -Adaemon} option from args.
+     *
+     * @param args the current list of arguments
+     * @return the argument of the last {@code -Adaemon} option (the empty string if it has none),
+     *     or null if there is no {@code -Adaemon} option
+     */
+    private static String extractDaemonOption(final List<String> args) {
+        String result = null;
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            if (arg.equals("-Adaemon") || arg.startsWith("-Adaemon=")) {
+                args.remove(i);
+                result = arg.substring(Math.min(arg.length(), "-Adaemon=".length()));
+                // re-process whatever is currently at element i
+                i--;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Run javac in a {@link CheckerDaemon}, which is started if necessary.
+     *
+     * @param idleMinutes the argument of the {@code -Adaemon} option: the number of idle minutes
+     *     after which a new daemon exits, or the empty string for the default
+     * @return the exit status of javac, or null if no daemon could be used
+     */
+    private Integer invokeDaemon(final String idleMinutes) {
+        int minutes = CheckerDaemon.DEFAULT_IDLE_MINUTES;
+        if (!idleMinutes.isEmpty()) {
+            try {
+                minutes = Integer.parseInt(idleMinutes);
+            } catch (NumberFormatException e) {
+                minutes = -1;
+            }
+            if (minutes <= 0) {
+                throw new RuntimeException(
+                        "The -Adaemon option requires a positive number of minutes: "
+                                + idleMinutes);
+            }
+        }
+
+        // The daemon loads the checkers itself, so that they stay loaded between compilations.
+        List<String> classpath = new ArrayList<>(runtimeClasspath);
+        classpath.add(checkerJar.getAbsolutePath());
+        List<String> command = getJvmArguments(classpath);
+        command.add(CheckerDaemon.class.getName());
+        return CheckerDaemon.compile(
+                command,
+                Arrays.asList(javacJar, jdkJar, checkerJar, checkerQualJar),
+                getJavacArguments(false),
+                minutes);
+    }
+
+    /**
+     * Run whole-program inference to a fixpoint in a new JVM, which runs javac once per iteration.
+     *
+     * @return the exit status of the JVM
+     */
+    private int invokeInferFixpoint() {
+        if (!toolOpts.contains("-Ainfer")) {
+            throw new RuntimeException("The -AinferFixpoint option requires the -Ainfer option");
+        }
+        // The JVM runs javac and the checkers in-process, like a daemon.
+        List<String> classpath = new ArrayList<>(runtimeClasspath);
+        classpath.add(checkerJar.getAbsolutePath());
+        List<String> command = getJvmArguments(classpath);
+        command.add(WholeProgramInferenceFixpoint.class.getName());
+        command.addAll(getJavacArguments(false));
+        return ExecUtil.execute(
+                command.toArray(new String[command.size()]), System.out, System.err);
+    }
+
     private static void outputArgumentsToFile(String outputFilename, List<String> args) {
         if (outputFilename != null) {
             String errorMessage = null;
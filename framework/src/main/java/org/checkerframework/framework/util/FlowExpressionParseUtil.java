@@ -16,7 +16,11 @@ import com.sun.tools.javac.code.Type;
 import com.sun.tools.javac.code.Type.ArrayType;
 import com.sun.tools.javac.code.Type.ClassType;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.processing.ProcessingEnvironment;
@@ -32,6 +36,8 @@ import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 import org.checkerframework.checker.compilermsgs.qual.CompilerMessageKey;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.dataflow.analysis.FlowExpressions;
 import org.checkerframework.dataflow.analysis.FlowExpressions.ArrayAccess;
 import org.checkerframework.dataflow.analysis.FlowExpressions.ClassName;
@@ -49,7 +55,9 @@ import org.checkerframework.dataflow.cfg.node.Node;
 import org.checkerframework.dataflow.cfg.node.ObjectCreationNode;
 import org.checkerframework.framework.source.Result;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
+import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.Pair;
 import org.checkerframework.javacutil.Resolver;
 import org.checkerframework.javacutil.TreeUtils;
@@ -96,10 +104,23 @@ public class FlowExpressionParseUtil {
     /** Matches an expression contained in matching start and end parentheses. */
     protected static final Pattern PARENTHESES_PATTERN = anchored("\\((.*)\\)");
 
+    /** Matches a string literal followed by a member select. */
+    private static final Pattern MEMBER_SELECT_OF_STRING_PATTERN =
+            anchored("(" + STRING_REGEX + ")" + "\\.(.*)");
+    /** Matches a string that starts with an identifier. */
+    private static final Pattern IDENTIFIER_PREFIX_PATTERN =
+            anchored("(" + IDENTIFIER_REGEX + ").*");
+    /** Matches a string that starts with a string literal. */
+    private static final Pattern STRING_PREFIX_PATTERN = anchored("(" + STRING_REGEX + ").*");
+
     /**
      * Parse a string and return its representation as a {@link Receiver}, or throw an {@link
      * FlowExpressionParseException}.
      *
+     * <p>The string is parsed into an {@link ExpressionSyntax} only once per compilation unit, and
+     * the result is cached in the {@link ReceiverCache} of the type factory of the context, if
+     * any.
+     *
      * @param expression flow expression to parse
      * @param context information about any receiver and arguments
      * @param localScope path to local scope to use
@@ -112,55 +133,92 @@ public class FlowExpressionParseUtil {
             boolean useLocalScope)
             throws FlowExpressionParseException {
         context.useLocalScope = useLocalScope;
-        FlowExpressions.Receiver result = parseHelper(expression, context, localScope);
+        ReceiverCache cache = getReceiverCache(context);
+        ReceiverCacheKey key = null;
+        if (cache != null) {
+            key = new ReceiverCacheKey(expression, context, localScope);
+            FlowExpressions.Receiver cached = cache.cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        FlowExpressions.Receiver result = parseHelper(expression, context, localScope, cache);
         if (result instanceof ClassName && !expression.endsWith("class")) {
             throw constructParserException(
                     expression, "a class name cannot terminate a flow expression string");
         }
+        if (cache != null) {
+            cache.cache.put(key, result);
+        }
         return result;
     }
 
+    /** @return the cache of the type factory of {@code context}, or null if there is none */
+    private static @Nullable ReceiverCache getReceiverCache(FlowExpressionContext context) {
+        if (!(context.checkerContext instanceof BaseTypeChecker)) {
+            return null;
+        }
+        AnnotatedTypeFactory factory = ((BaseTypeChecker) context.checkerContext).getTypeFactory();
+        return factory == null ? null : factory.getFlowExpressionCache();
+    }
+
     private static FlowExpressions.Receiver parseHelper(
-            String expression, FlowExpressionContext context, TreePath path)
+            String expression,
+            FlowExpressionContext context,
+            TreePath path,
+            @Nullable ReceiverCache cache)
             throws FlowExpressionParseException {
-        expression = expression.trim();
+        return resolve(
+                ExpressionSyntax.of(expression, context.parsingMember, cache), context, path);
+    }
 
+    /**
+     * Returns the {@link Receiver} that {@code syntax} denotes in {@code context}, or throws an
+     * {@link FlowExpressionParseException}.
+     */
+    private static FlowExpressions.Receiver resolve(
+            ExpressionSyntax syntax, FlowExpressionContext context, TreePath path)
+            throws FlowExpressionParseException {
         ProcessingEnvironment env = context.checkerContext.getProcessingEnvironment();
         Types types = env.getTypeUtils();
-
-        if (isNullLiteral(expression, context)) {
-            return parseNullLiteral(expression, types);
-        } else if (isIntLiteral(expression, context)) {
-            return parseIntLiteral(expression, types);
-        } else if (isLongLiteral(expression, context)) {
-            return parseLongLiteral(expression, types);
-        } else if (isStringLiteral(expression, context)) {
-            return parseStringLiteral(expression, types, env.getElementUtils());
-        } else if (isThisLiteral(expression, context)) {
-            return parseThis(expression, context);
-        } else if (isSuperLiteral(expression, context)) {
-            return parseSuper(expression, types, context);
-        } else if (isIdentifier(expression, context)) {
-            return parseIdentifier(expression, env, path, context);
-        } else if (isParameter(expression, context)) {
-            return parseParameter(expression, context);
-        } else if (isArray(expression, context)) {
-            return parseArray(expression, context, path);
-        } else if (isMethod(expression, context)) {
-            return parseMethod(expression, context, path, env);
-        } else if (isMemberSelect(expression, context)) {
-            return parseMemberSelect(expression, env, context, path);
-        } else if (isParentheses(expression, context)) {
-            return parseParentheses(expression, context, path);
-        } else {
-            throw constructParserException(expression);
+        String s = syntax.text;
+
+        switch (syntax.kind) {
+            case NULL_LITERAL:
+                return parseNullLiteral(s, types);
+            case INT_LITERAL:
+                return parseIntLiteral(s, types);
+            case LONG_LITERAL:
+                return parseLongLiteral(s, types);
+            case STRING_LITERAL:
+                return parseStringLiteral(s, types, env.getElementUtils());
+            case THIS:
+                return parseThis(s, context);
+            case SUPER:
+                return parseSuper(s, types, context);
+            case IDENTIFIER:
+                return parseIdentifier(s, env, path, context);
+            case PARAMETER:
+                return parseParameter(s, context);
+            case ARRAY_ACCESS:
+                return parseArray(syntax, context, path);
+            case METHOD_CALL:
+                return parseMethod(syntax, context, path, env);
+            case MEMBER_SELECT:
+                return parseMemberSelect(syntax, env, context, path);
+            case PARENTHESES:
+                // Do not modify the context, since a parenthesis match is essentially a match to
+                // a no-op and should not semantically affect the parsing.
+                return resolve(syntax.operands.get(0), context, path);
+            case ERROR:
+                throw constructParserException(s, syntax.detail);
+            default:
+                ErrorReporter.errorAbort(
+                        "FlowExpressionParseUtil: unexpected syntax kind " + syntax.kind);
+                return null; // dead code
         }
     }
 
-    private static boolean isMemberSelect(String s, FlowExpressionContext context) {
-        return parseMemberSelect(s) != null;
-    }
-
     /**
      * Matches a field access. First of returned pair is object and second is field.
      *
@@ -181,8 +239,7 @@ public class FlowExpressionParseUtil {
                     array.first.first + "[" + array.first.second + "]", array.second.substring(1));
         }
 
-        Pattern memberSelectOfStringPattern = anchored("(" + STRING_REGEX + ")" + "\\.(.*)");
-        Matcher m = memberSelectOfStringPattern.matcher(s);
+        Matcher m = MEMBER_SELECT_OF_STRING_PATTERN.matcher(s);
         if (m.matches()) {
             return Pair.of(m.group(1), m.group(2));
         }
@@ -210,13 +267,15 @@ public class FlowExpressionParseUtil {
     }
 
     private static Receiver parseMemberSelect(
-            String s, ProcessingEnvironment env, FlowExpressionContext context, TreePath path)
+            ExpressionSyntax select,
+            ProcessingEnvironment env,
+            FlowExpressionContext context,
+            TreePath path)
             throws FlowExpressionParseException {
-        Pair<String, String> select = parseMemberSelect(s);
-        assert select != null : "isMemberSelect must be called first";
-
+        String s = select.text;
         Receiver receiver;
         String memberSelected;
+        ExpressionSyntax member;
 
         Resolver resolver = new Resolver(env);
 
@@ -230,10 +289,11 @@ public class FlowExpressionParseUtil {
                 throw constructParserException(
                         s, "a class cannot terminate a flow expression string");
             }
+            member = ExpressionSyntax.of(memberSelected, true, getReceiverCache(context));
         } else {
-            String receiverString = select.first;
-            memberSelected = select.second;
-            receiver = parseHelper(receiverString, context, path);
+            receiver = resolve(select.operands.get(0), context, path);
+            memberSelected = select.detail;
+            member = select.operands.get(1);
         }
 
         if (memberSelected.equals("class")) {
@@ -246,43 +306,20 @@ public class FlowExpressionParseUtil {
 
         // Parse the rest, with a new receiver.
         FlowExpressionContext newContext = context.copyChangeToParsingMemberOfReceiver(receiver);
-        return parseHelper(memberSelected, newContext, path);
+        return resolve(member, newContext, path);
     }
 
     // ########
 
-    private static boolean isNullLiteral(String s, FlowExpressionContext context) {
-        if (context.parsingMember) {
-            return false;
-        }
-        return s.equals("null");
-    }
-
     private static Receiver parseNullLiteral(String expression, Types types) {
         return new ValueLiteral(types.getNullType(), (Object) null);
     }
 
-    private static boolean isIntLiteral(String s, FlowExpressionContext context) {
-        if (context.parsingMember) {
-            return false;
-        }
-        Matcher intMatcher = INT_PATTERN.matcher(s);
-        return intMatcher.matches();
-    }
-
     private static Receiver parseIntLiteral(String s, Types types) {
         int val = Integer.parseInt(s);
         return new ValueLiteral(types.getPrimitiveType(TypeKind.INT), val);
     }
 
-    private static boolean isLongLiteral(String s, FlowExpressionContext context) {
-        if (context.parsingMember) {
-            return false;
-        }
-        Matcher longMatcher = LONG_PATTERN.matcher(s);
-        return longMatcher.matches();
-    }
-
     private static Receiver parseLongLiteral(String s, Types types) {
         // Remove L or l at the end of a long literal
         s = s.substring(0, s.length() - 1);
@@ -290,32 +327,12 @@ public class FlowExpressionParseUtil {
         return new ValueLiteral(types.getPrimitiveType(TypeKind.LONG), val);
     }
 
-    /** Return true iff s is a string literal. */
-    private static boolean isStringLiteral(String s, FlowExpressionContext context) {
-        if (context.parsingMember) {
-            return false;
-        }
-        Matcher stringMatcher = STRING_PATTERN.matcher(s);
-        return stringMatcher.matches();
-    }
-
     private static Receiver parseStringLiteral(String s, Types types, Elements elements) {
         TypeElement stringTypeElem = elements.getTypeElement("java.lang.String");
         return new ValueLiteral(
                 types.getDeclaredType(stringTypeElem), s.substring(1, s.length() - 1));
     }
 
-    private static boolean isThisLiteral(String s, FlowExpressionContext context) {
-        if (context.parsingMember) {
-            // TODO: this is probably wrong because you could have and inner class receiver
-            // Outer.this
-            return false;
-        }
-        // Do not allow "#0" because it's ambiguous:  a reader might assume that #0 is the first
-        // formal parameter.
-        return s.equals("this");
-    }
-
     private static Receiver parseThis(String s, FlowExpressionContext context) {
         if (!(context.receiver == null || context.receiver.containsUnknown())) {
             // "this" is the receiver of the context
@@ -325,13 +342,6 @@ public class FlowExpressionParseUtil {
         }
     }
 
-    private static boolean isSuperLiteral(String s, FlowExpressionContext context) {
-        if (context.parsingMember) {
-            return false;
-        }
-        return s.equals("super");
-    }
-
     private static Receiver parseSuper(String s, Types types, FlowExpressionContext context)
             throws FlowExpressionParseException {
         // super literal
@@ -355,11 +365,6 @@ public class FlowExpressionParseUtil {
         return new ThisReference(superType);
     }
 
-    private static boolean isIdentifier(String s, FlowExpressionContext context) {
-        Matcher identifierMatcher = IDENTIFIER_PATTERN.matcher(s);
-        return identifierMatcher.matches();
-    }
-
     private static Receiver parseIdentifier(
             String s, ProcessingEnvironment env, TreePath path, FlowExpressionContext context)
             throws FlowExpressionParseException {
@@ -440,14 +445,6 @@ public class FlowExpressionParseUtil {
         return new FieldAccess(locationOfField, fieldType, fieldElem);
     }
 
-    private static boolean isParameter(String s, FlowExpressionContext contex) {
-        if (contex.parsingMember) {
-            return false;
-        }
-        Matcher parameterMatcher = PARAMETER_PATTERN.matcher(s);
-        return parameterMatcher.matches();
-    }
-
     private static Receiver parseParameter(String s, FlowExpressionContext context)
             throws FlowExpressionParseException {
         Matcher parameterMatcher = PARAMETER_PATTERN.matcher(s);
@@ -480,8 +477,7 @@ public class FlowExpressionParseUtil {
      */
     private static Pair<Pair<String, String>, String> parseMethod(String s) {
         // Parse Identifier
-        Pattern identParser = Pattern.compile("^(" + IDENTIFIER_REGEX + ").*$");
-        Matcher m = identParser.matcher(s);
+        Matcher m = IDENTIFIER_PREFIX_PATTERN.matcher(s);
         if (!m.matches()) {
             return null;
         }
@@ -498,26 +494,21 @@ public class FlowExpressionParseUtil {
         return Pair.of(Pair.of(ident, arguments), remaining);
     }
 
-    private static boolean isMethod(String s, FlowExpressionContext contex) {
-        Pair<Pair<String, String>, String> result = parseMethod(s);
-        return result != null && result.second.isEmpty();
-    }
-
     private static Receiver parseMethod(
-            String s, FlowExpressionContext context, TreePath path, ProcessingEnvironment env)
+            ExpressionSyntax method,
+            FlowExpressionContext context,
+            TreePath path,
+            ProcessingEnvironment env)
             throws FlowExpressionParseException {
-        Pair<Pair<String, String>, String> method = parseMethod(s);
-        if (method == null) {
-            return null;
-        }
-
-        String methodName = method.first.first;
+        String s = method.text;
+        String methodName = method.detail;
 
         // parse parameter list
-        String parameterList = method.first.second;
-        List<Receiver> parameters =
-                ParameterListParser.parseParameterList(
-                        parameterList, true, context.copyAndUseOuterReceiver(), path);
+        FlowExpressionContext contextForParameters = context.copyAndUseOuterReceiver();
+        List<Receiver> parameters = new ArrayList<>();
+        for (ExpressionSyntax parameter : method.operands) {
+            parameters.add(resolve(parameter, contextForParameters, path));
+        }
 
         // get types for parameters
         List<TypeMirror> parameterTypes = new ArrayList<>();
@@ -655,9 +646,7 @@ public class FlowExpressionParseUtil {
             char ch = s.charAt(i++);
             if (ch == '"') {
                 i--;
-                // TODO: inefficient to re-compute this on every iteration, should be static
-                Pattern stringPattern = anchored("(" + STRING_REGEX + ").*");
-                Matcher m = stringPattern.matcher(s.substring(i));
+                Matcher m = STRING_PREFIX_PATTERN.matcher(s.substring(i));
                 if (!m.matches()) {
                     break;
                 }
@@ -676,23 +665,13 @@ public class FlowExpressionParseUtil {
         return -1;
     }
 
-    private static boolean isArray(String s, FlowExpressionContext context) {
-        Pair<Pair<String, String>, String> result = parseArray(s);
-        return result != null && result.second.isEmpty();
-    }
-
-    private static Receiver parseArray(String s, FlowExpressionContext context, TreePath path)
+    private static Receiver parseArray(
+            ExpressionSyntax array, FlowExpressionContext context, TreePath path)
             throws FlowExpressionParseException {
-        Pair<Pair<String, String>, String> array = parseArray(s);
-        if (array == null) {
-            return null;
-        }
-
-        String receiverStr = array.first.first;
-        String indexStr = array.first.second;
-        Receiver receiver = parseHelper(receiverStr, context, path);
+        String s = array.text;
+        Receiver receiver = resolve(array.operands.get(0), context, path);
         FlowExpressionContext contextForIndex = context.copyAndUseOuterReceiver();
-        Receiver index = parseHelper(indexStr, contextForIndex, path);
+        Receiver index = resolve(array.operands.get(1), contextForIndex, path);
         TypeMirror receiverType = receiver.getType();
         if (!(receiverType instanceof ArrayType)) {
             throw constructParserException(
@@ -704,22 +683,10 @@ public class FlowExpressionParseUtil {
     }
 
     // TODO: this returns true for "(a)+(b)" where the inital and final parens do not match.
-    private static boolean isParentheses(String s, FlowExpressionContext contex) {
+    private static boolean isParentheses(String s) {
         return s.length() > 2 && s.charAt(0) == '(' && s.charAt(s.length() - 1) == ')';
     }
 
-    private static Receiver parseParentheses(String s, FlowExpressionContext context, TreePath path)
-            throws FlowExpressionParseException {
-        if (!isParentheses(s, context)) {
-            return null;
-        }
-        // TODO: this is the wrong thing for an expression like "(a)+(b)".
-        String expressionString = s.substring(1, s.length() - 1);
-        // Do not modify the value of recursiveCall, since a parenthesis match is essentially
-        // a match to a no-op and should not semantically affect the parsing.
-        return parseHelper(expressionString, context, path);
-    }
-
     /**
      * Matches a substring of {@code expression} to a package and class name (starting from the
      * beginning of the string).
@@ -869,6 +836,169 @@ public class FlowExpressionParseUtil {
         return Pair.of(result, remainingString);
     }
 
+    /**
+     * The syntax tree of a flow expression string. The syntax tree only depends on the string and
+     * on whether the string is the member part of a member select, so each distinct string is
+     * parsed only once per compilation unit (see {@link #of}) and then resolved in every context
+     * in which it is used (see {@link FlowExpressionParseUtil#resolve}).
+     *
+     * <p>Errors are part of the syntax tree, as {@link Kind#ERROR} nodes, and are only reported
+     * when they are resolved. That way, the errors of an expression are reported in the same order
+     * as if the expression was parsed and resolved in a single pass.
+     */
+    private static final class ExpressionSyntax {
+
+        /** The kinds of syntax trees. */
+        enum Kind {
+            NULL_LITERAL,
+            INT_LITERAL,
+            LONG_LITERAL,
+            STRING_LITERAL,
+            THIS,
+            SUPER,
+            IDENTIFIER,
+            PARAMETER,
+            /** The operands are the array and the index. */
+            ARRAY_ACCESS,
+            /** The operands are the arguments, the last of which may be an {@link #ERROR}. */
+            METHOD_CALL,
+            /** The operands are the receiver and the selected member. */
+            MEMBER_SELECT,
+            /** The operand is the parenthesized expression. */
+            PARENTHESES,
+            ERROR
+        }
+
+        /** The kind of this syntax tree. */
+        final Kind kind;
+
+        /** The trimmed expression string, or for an {@link Kind#ERROR} the erroneous string. */
+        final String text;
+
+        /**
+         * The name of a {@link Kind#METHOD_CALL}, the selected member (as written) of a {@link
+         * Kind#MEMBER_SELECT}, or the explanation (possibly null) of an {@link Kind#ERROR}.
+         */
+        final @Nullable String detail;
+
+        /** The sub-expressions; see {@link Kind}. */
+        final List<ExpressionSyntax> operands;
+
+        private ExpressionSyntax(
+                Kind kind, String text, @Nullable String detail, List<ExpressionSyntax> operands) {
+            this.kind = kind;
+            this.text = text;
+            this.detail = detail;
+            this.operands = operands;
+        }
+
+        private static ExpressionSyntax leaf(Kind kind, String text) {
+            return new ExpressionSyntax(
+                    kind, text, null, Collections.<ExpressionSyntax>emptyList());
+        }
+
+        private static ExpressionSyntax error(String text, @Nullable String explanation) {
+            return new ExpressionSyntax(
+                    Kind.ERROR, text, explanation, Collections.<ExpressionSyntax>emptyList());
+        }
+
+        /**
+         * Returns the syntax tree of {@code expression}.
+         *
+         * @param expression a flow expression string
+         * @param parsingMember whether {@code expression} is the member part of a member select
+         * @param cache the cache to look up and store the syntax tree in, or null to parse {@code
+         *     expression} again
+         * @return the syntax tree of {@code expression}
+         */
+        static ExpressionSyntax of(
+                String expression, boolean parsingMember, @Nullable ReceiverCache cache) {
+            if (cache == null) {
+                return parse(expression.trim(), parsingMember, null);
+            }
+            Map<String, ExpressionSyntax> syntaxCache =
+                    parsingMember ? cache.memberSyntaxCache : cache.syntaxCache;
+            ExpressionSyntax result = syntaxCache.get(expression);
+            if (result == null) {
+                result = parse(expression.trim(), parsingMember, cache);
+                syntaxCache.put(expression, result);
+            }
+            return result;
+        }
+
+        private static ExpressionSyntax parse(
+                String s, boolean parsingMember, @Nullable ReceiverCache cache) {
+            // Literals, "this", "super", and parameters cannot be the member part of a member
+            // select.
+            // TODO: "this" is probably wrong because you could have an inner class receiver
+            // Outer.this
+            if (!parsingMember) {
+                if (s.equals("null")) {
+                    return leaf(Kind.NULL_LITERAL, s);
+                } else if (INT_PATTERN.matcher(s).matches()) {
+                    return leaf(Kind.INT_LITERAL, s);
+                } else if (LONG_PATTERN.matcher(s).matches()) {
+                    return leaf(Kind.LONG_LITERAL, s);
+                } else if (STRING_PATTERN.matcher(s).matches()) {
+                    return leaf(Kind.STRING_LITERAL, s);
+                } else if (s.equals("this")) {
+                    // Do not allow "#0" because it's ambiguous:  a reader might assume that #0 is
+                    // the first formal parameter.
+                    return leaf(Kind.THIS, s);
+                } else if (s.equals("super")) {
+                    return leaf(Kind.SUPER, s);
+                } else if (PARAMETER_PATTERN.matcher(s).matches()) {
+                    return leaf(Kind.PARAMETER, s);
+                }
+            }
+            if (IDENTIFIER_PATTERN.matcher(s).matches()) {
+                return leaf(Kind.IDENTIFIER, s);
+            }
+
+            Pair<Pair<String, String>, String> array = parseArray(s);
+            if (array != null && array.second.isEmpty()) {
+                return new ExpressionSyntax(
+                        Kind.ARRAY_ACCESS,
+                        s,
+                        null,
+                        Arrays.asList(
+                                of(array.first.first, parsingMember, cache),
+                                of(array.first.second, false, cache)));
+            }
+
+            Pair<Pair<String, String>, String> method = parseMethod(s);
+            if (method != null && method.second.isEmpty()) {
+                List<ExpressionSyntax> arguments = new ArrayList<>();
+                ParameterListParser.parseParameterList(
+                        method.first.second, true, arguments, cache);
+                return new ExpressionSyntax(Kind.METHOD_CALL, s, method.first.first, arguments);
+            }
+
+            Pair<String, String> select = parseMemberSelect(s);
+            if (select != null) {
+                return new ExpressionSyntax(
+                        Kind.MEMBER_SELECT,
+                        s,
+                        select.second,
+                        Arrays.asList(
+                                of(select.first, parsingMember, cache),
+                                of(select.second, true, cache)));
+            }
+
+            if (isParentheses(s)) {
+                // TODO: this is the wrong thing for an expression like "(a)+(b)".
+                return new ExpressionSyntax(
+                        Kind.PARENTHESES,
+                        s,
+                        null,
+                        Collections.singletonList(
+                                of(s.substring(1, s.length() - 1), parsingMember, cache)));
+            }
+
+            return error(s, null);
+        }
+    }
+
     /**
      * A very simple parser for parameter lists, i.e. strings of the form {@code a, b, c} for some
      * expressions {@code a}, {@code b} and {@code c}.
@@ -876,16 +1006,15 @@ public class FlowExpressionParseUtil {
     private static class ParameterListParser {
 
         /**
-         * Parse a parameter list and return the parameters as a list (or throw a {@link
-         * FlowExpressionParseException}).
+         * Parse a parameter list and add the syntax trees of the parameters to {@code result}. If
+         * the parameter list is malformed, the last syntax tree that is added is an {@link
+         * ExpressionSyntax.Kind#ERROR}.
          */
-        private static List<Receiver> parseParameterList(
+        private static void parseParameterList(
                 String parameterString,
                 boolean allowEmptyList,
-                FlowExpressionContext context,
-                TreePath path)
-                throws FlowExpressionParseException {
-            ArrayList<Receiver> result = new ArrayList<>();
+                List<ExpressionSyntax> result,
+                @Nullable ReceiverCache cache) {
             // the index of the character in 'parameterString' that the parser
             // is currently looking at
             int idx = 0;
@@ -901,15 +1030,17 @@ public class FlowExpressionParseUtil {
                 if (idx == parameterString.length()) {
                     // finish current param
                     if (inString) {
-                        throw constructParserException(parameterString, "unterminated string");
+                        result.add(ExpressionSyntax.error(parameterString, "unterminated string"));
                     } else if (callLevel > 0) {
-                        throw constructParserException(
-                                parameterString,
-                                "unterminated method invocation, callLevel==" + callLevel);
+                        result.add(
+                                ExpressionSyntax.error(
+                                        parameterString,
+                                        "unterminated method invocation, callLevel=="
+                                                + callLevel));
                     } else {
-                        finishParam(parameterString, allowEmptyList, context, path, result, idx);
-                        return result;
+                        finishParam(parameterString, allowEmptyList, result, idx, cache);
                     }
+                    return;
                 }
 
                 // get next character
@@ -924,22 +1055,13 @@ public class FlowExpressionParseUtil {
                         } else {
                             if (callLevel == 0) {
                                 // parse first parameter
-                                finishParam(
-                                        parameterString,
-                                        allowEmptyList,
-                                        context,
-                                        path,
-                                        result,
-                                        idx - 1);
-                                // parse remaining parameters
-                                List<Receiver> rest =
-                                        parseParameterList(
-                                                parameterString.substring(idx),
-                                                false,
-                                                context,
-                                                path);
-                                result.addAll(rest);
-                                return result;
+                                if (finishParam(
+                                        parameterString, allowEmptyList, result, idx - 1, cache)) {
+                                    // parse remaining parameters
+                                    parseParameterList(
+                                            parameterString.substring(idx), false, result, cache);
+                                }
+                                return;
                             } else {
                                 // not the outermost method call, defer parsing of
                                 // this parameter list to recursive call.
@@ -962,7 +1084,8 @@ public class FlowExpressionParseUtil {
                             // stay in same state and consume the character
                         } else {
                             if (callLevel == 0) {
-                                throw constructParserException(parameterString, "callLevel==0");
+                                result.add(ExpressionSyntax.error(parameterString, "callLevel==0"));
+                                return;
                             } else {
                                 callLevel--;
                             }
@@ -978,26 +1101,155 @@ public class FlowExpressionParseUtil {
             }
         }
 
-        private static void finishParam(
+        /** @return false if the parameter list is malformed */
+        private static boolean finishParam(
                 String parameterString,
                 boolean allowEmptyList,
-                FlowExpressionContext context,
-                TreePath path,
-                ArrayList<Receiver> result,
-                int idx)
-                throws FlowExpressionParseException {
+                List<ExpressionSyntax> result,
+                int idx,
+                @Nullable ReceiverCache cache) {
             if (idx == 0) {
                 if (allowEmptyList) {
-                    return;
+                    return true;
                 } else {
-                    throw constructParserException(parameterString, "empty parameter list; idx==0");
+                    result.add(
+                            ExpressionSyntax.error(
+                                    parameterString, "empty parameter list; idx==0"));
+                    return false;
                 }
             } else {
-                result.add(parseHelper(parameterString.substring(0, idx), context, path));
+                result.add(ExpressionSyntax.of(parameterString.substring(0, idx), false, cache));
+                return true;
             }
         }
     }
 
+    /**
+     * A cache of the results of {@link FlowExpressionParseUtil#parse}. A result is reused if the
+     * expression string, the leaf of the local scope, and the context are the same; receivers of
+     * the context are only the same if they are equal and have the same type.
+     *
+     * <p>The cache refers to trees, so it must be cleared when the compilation unit changes.
+     */
+    public static class ReceiverCache {
+        /** The cached results. */
+        private final Map<ReceiverCacheKey, Receiver> cache;
+
+        /** The syntax trees of strings that are not the member part of a member select. */
+        private final Map<String, ExpressionSyntax> syntaxCache;
+
+        /** The syntax trees of strings that are the member part of a member select. */
+        private final Map<String, ExpressionSyntax> memberSyntaxCache;
+
+        /** @param size the maximum number of cached results, and of cached syntax trees */
+        public ReceiverCache(int size) {
+            this.cache =
+                    CollectionUtils.createLRUCache(size, "FlowExpressionParseUtil.ReceiverCache");
+            this.syntaxCache =
+                    CollectionUtils.createLRUCache(size, "FlowExpressionParseUtil.syntaxCache");
+            this.memberSyntaxCache =
+                    CollectionUtils.createLRUCache(
+                            size, "FlowExpressionParseUtil.memberSyntaxCache");
+        }
+
+        /** Remove all cached results and syntax trees. */
+        public void clear() {
+            cache.clear();
+            syntaxCache.clear();
+            memberSyntaxCache.clear();
+        }
+    }
+
+    /** A key of a {@link ReceiverCache}. */
+    private static final class ReceiverCacheKey {
+        private final String expression;
+        private final @Nullable Tree leaf;
+        private final BaseContext checkerContext;
+        private final @Nullable Receiver receiver;
+        private final @Nullable Receiver outerReceiver;
+        private final @Nullable List<Receiver> arguments;
+        private final boolean parsingMember;
+        private final boolean useLocalScope;
+        private final int hashCode;
+
+        ReceiverCacheKey(String expression, FlowExpressionContext context, TreePath localScope) {
+            this.expression = expression;
+            this.leaf = localScope == null ? null : localScope.getLeaf();
+            this.checkerContext = context.checkerContext;
+            this.receiver = context.receiver;
+            this.outerReceiver = context.outerReceiver;
+            this.arguments = context.arguments;
+            this.parsingMember = context.parsingMember;
+            this.useLocalScope = context.useLocalScope;
+            this.hashCode =
+                    Objects.hash(
+                            expression,
+                            System.identityHashCode(leaf),
+                            receiver,
+                            arguments,
+                            parsingMember,
+                            useLocalScope);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ReceiverCacheKey)) {
+                return false;
+            }
+            ReceiverCacheKey other = (ReceiverCacheKey) o;
+            if (hashCode != other.hashCode
+                    || leaf != other.leaf
+                    || checkerContext != other.checkerContext
+                    || parsingMember != other.parsingMember
+                    || useLocalScope != other.useLocalScope
+                    || !expression.equals(other.expression)) {
+                return false;
+            }
+            if (!sameReceiver(receiver, other.receiver)
+                    || !sameReceiver(outerReceiver, other.outerReceiver)) {
+                return false;
+            }
+            if (arguments == null || other.arguments == null) {
+                return arguments == other.arguments;
+            }
+            if (arguments.size() != other.arguments.size()) {
+                return false;
+            }
+            for (int i = 0; i < arguments.size(); i++) {
+                if (!sameReceiver(arguments.get(i), other.arguments.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Receivers whose types differ may be equal, for example {@link ThisReference}s, but a flow
+         * expression may have different meanings for them.
+         */
+        private boolean sameReceiver(@Nullable Receiver r1, @Nullable Receiver r2) {
+            if (r1 == r2) {
+                return true;
+            }
+            if (r1 == null || r2 == null || !r1.equals(r2)) {
+                return false;
+            }
+            TypeMirror t1 = r1.getType();
+            TypeMirror t2 = r2.getType();
+            if (t1 == t2) {
+                return true;
+            }
+            return t1 != null
+                    && t2 != null
+                    && checkerContext.getTypeUtils().isSameType(t1, t2);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
     /**
      * @return a list of 1-based indices of all formal parameters that occur in {@code s}. Each
      *     formal parameter occurs in s as a string like "#1" or "#4". This routine does not do
@@ -1,6 +1,9 @@
 package org.checkerframework.framework.util;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -9,6 +12,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Name;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
 import org.checkerframework.dataflow.qual.Pure;
 import org.checkerframework.dataflow.qual.SideEffectFree;
 import org.checkerframework.framework.qual.PolymorphicQualifier;
@@ -170,6 +176,44 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
     /** All qualifiers, including polymorphic qualifiers. */
     private final Set<AnnotationMirror> typeQualifiers;
 
+    // The compiled representation of the parameterless qualifiers. Every qualifier whose
+    // annotation type declares no elements gets a dense int id. Since all annotations of such a
+    // type are the same, an annotation can be mapped to its id by its name alone, and subtyping,
+    // lub, and glb become bit and array lookups. Qualifiers with elements use the map-based
+    // representation above.
+
+    /** Maps the name of each parameterless qualifier to its id. */
+    private final Map<Name, Integer> qualifierIds;
+
+    /** The parameterless qualifiers, indexed by id. */
+    private final AnnotationMirror[] compiledQualifiers;
+
+    /** For each parameterless qualifier, the ids of its parameterless strict supertypes. */
+    private final BitSet[] compiledSupertypes;
+
+    /**
+     * The lubs of pairs of parameterless qualifiers, indexed by {@code id1 * n + id2}. An entry is
+     * only valid if the corresponding bit of {@link #compiledLubsKnown} is set.
+     */
+    private final AnnotationMirror[] compiledLubs;
+
+    /** The indexes of the entries of {@link #compiledLubs} that have been computed. */
+    private final BitSet compiledLubsKnown;
+
+    /** The glbs of pairs of parameterless qualifiers, indexed like {@link #compiledLubs}. */
+    private final AnnotationMirror[] compiledGlbs;
+
+    /** The indexes of the entries of {@link #compiledGlbs} that have been computed. */
+    private final BitSet compiledGlbsKnown;
+
+    /**
+     * Whether the lubs and glbs of parameterless qualifiers are memoized in {@link #compiledLubs}
+     * and {@link #compiledGlbs}. Only true if the class of this hierarchy does not override any of
+     * the methods that compute them, because an overriding method need not always give the same
+     * result.
+     */
+    private final boolean memoizeBounds;
+
     public MultiGraphQualifierHierarchy(MultiGraphFactory f) {
         this(f, (Object[]) null);
     }
@@ -205,9 +249,81 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
         Set<AnnotationMirror> typeQualifiers = AnnotationUtils.createAnnotationSet();
         typeQualifiers.addAll(supertypesMap.keySet());
         this.typeQualifiers = Collections.unmodifiableSet(typeQualifiers);
+
+        this.qualifierIds = new HashMap<>();
+        int numCompiled = 0;
+        for (AnnotationMirror qual : typeQualifiers) {
+            TypeElement qualElt = (TypeElement) qual.getAnnotationType().asElement();
+            if (ElementFilter.methodsIn(qualElt.getEnclosedElements()).isEmpty()) {
+                qualifierIds.put(qualElt.getQualifiedName(), numCompiled++);
+            }
+        }
+        this.compiledQualifiers = new AnnotationMirror[numCompiled];
+        for (AnnotationMirror qual : typeQualifiers) {
+            int id = qualifierId(qual);
+            if (id >= 0) {
+                compiledQualifiers[id] = qual;
+            }
+        }
+        this.compiledSupertypes = new BitSet[numCompiled];
+        for (int id = 0; id < numCompiled; id++) {
+            BitSet supers = new BitSet(numCompiled);
+            for (AnnotationMirror sup : supertypesMap.get(compiledQualifiers[id])) {
+                int supId = qualifierId(sup);
+                if (supId >= 0 && supId != id) {
+                    supers.set(supId);
+                }
+            }
+            compiledSupertypes[id] = supers;
+        }
+        // The bounds are computed on demand: computing them calls methods such as isSubtype and
+        // findLub, which subclasses may override and which must not be called from a constructor.
+        this.compiledLubs = new AnnotationMirror[numCompiled * numCompiled];
+        this.compiledLubsKnown = new BitSet(numCompiled * numCompiled);
+        this.compiledGlbs = new AnnotationMirror[numCompiled * numCompiled];
+        this.compiledGlbsKnown = new BitSet(numCompiled * numCompiled);
+        this.memoizeBounds = !overridesBoundComputation(getClass());
         // System.out.println("MGH: " + this);
     }
 
+    /**
+     * Returns true if the given class overrides one of the methods that {@link
+     * #leastUpperBound(AnnotationMirror, AnnotationMirror)} and {@link
+     * #greatestLowerBound(AnnotationMirror, AnnotationMirror)} use to compute the bounds.
+     *
+     * @param hierarchyClass the class of a qualifier hierarchy
+     * @return true if {@code hierarchyClass} overrides one of the methods
+     */
+    private static boolean overridesBoundComputation(Class<?> hierarchyClass) {
+        for (Class<?> c = hierarchyClass;
+                c != MultiGraphQualifierHierarchy.class;
+                c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                switch (method.getName()) {
+                    case "isSubtype":
+                    case "findLub":
+                        if (Arrays.equals(
+                                method.getParameterTypes(),
+                                new Class<?>[] {AnnotationMirror.class, AnnotationMirror.class})) {
+                            return true;
+                        }
+                        break;
+                    case "getTopAnnotation":
+                    case "getBottomAnnotation":
+                        if (Arrays.equals(
+                                method.getParameterTypes(),
+                                new Class<?>[] {AnnotationMirror.class})) {
+                            return true;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Method to finalize the qualifier hierarchy before it becomes unmodifiable. The parameters
      * pass all fields and allow modification.
@@ -393,6 +509,28 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
 
     @Override
     public AnnotationMirror leastUpperBound(AnnotationMirror a1, AnnotationMirror a2) {
+        int id1 = qualifierId(a1);
+        int id2 = qualifierId(a2);
+        if (memoizeBounds && id1 >= 0 && id2 >= 0) {
+            int index = id1 * compiledQualifiers.length + id2;
+            if (!compiledLubsKnown.get(index)) {
+                compiledLubs[index] = computeLeastUpperBound(a1, a2);
+                compiledLubsKnown.set(index);
+            }
+            return compiledLubs[index];
+        }
+        return computeLeastUpperBound(a1, a2);
+    }
+
+    /**
+     * Computes the least upper bound of two qualifiers from the map-based representation of the
+     * hierarchy.
+     *
+     * @param a1 the first qualifier
+     * @param a2 the second qualifier
+     * @return the lub of {@code a1} and {@code a2}, or null if they are in different hierarchies
+     */
+    private AnnotationMirror computeLeastUpperBound(AnnotationMirror a1, AnnotationMirror a2) {
         if (!AnnotationUtils.areSameIgnoringValues(getTopAnnotation(a1), getTopAnnotation(a2))) {
             return null;
         } else if (isSubtype(a1, a2)) {
@@ -423,6 +561,28 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
 
     @Override
     public AnnotationMirror greatestLowerBound(AnnotationMirror a1, AnnotationMirror a2) {
+        int id1 = qualifierId(a1);
+        int id2 = qualifierId(a2);
+        if (memoizeBounds && id1 >= 0 && id2 >= 0) {
+            int index = id1 * compiledQualifiers.length + id2;
+            if (!compiledGlbsKnown.get(index)) {
+                compiledGlbs[index] = computeGreatestLowerBound(a1, a2);
+                compiledGlbsKnown.set(index);
+            }
+            return compiledGlbs[index];
+        }
+        return computeGreatestLowerBound(a1, a2);
+    }
+
+    /**
+     * Computes the greatest lower bound of two qualifiers from the map-based representation of the
+     * hierarchy.
+     *
+     * @param a1 the first qualifier
+     * @param a2 the second qualifier
+     * @return the glb of {@code a1} and {@code a2}
+     */
+    private AnnotationMirror computeGreatestLowerBound(AnnotationMirror a1, AnnotationMirror a2) {
         if (AnnotationUtils.areSameIgnoringValues(a1, a2)) {
             return AnnotationUtils.areSame(a1, a2) ? a1 : getBottomAnnotation(a1);
         }
@@ -464,6 +624,12 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
         checkAnnoInGraph(subAnno);
         checkAnnoInGraph(superAnno);
 
+        int subId = qualifierId(subAnno);
+        int superId = qualifierId(superAnno);
+        if (subId >= 0 && superId >= 0) {
+            return subId == superId || compiledSupertypes[subId].get(superId);
+        }
+
         /* TODO: this optimization leads to recursion
         for (AnnotationMirror top : tops) {
             System.out.println("Looking at top: " + tops + " and " + anno1);
@@ -492,8 +658,27 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
         return isSubtype(subAnno, superAnno);
     }
 
+    /**
+     * Returns the id of the given qualifier in the compiled representation of the hierarchy.
+     *
+     * @param anno a qualifier, or null
+     * @return the id of {@code anno}, or -1 if {@code anno} is null or is not a parameterless
+     *     qualifier of this hierarchy
+     */
+    private int qualifierId(AnnotationMirror anno) {
+        if (anno == null) {
+            return -1;
+        }
+        Integer id =
+                qualifierIds.get(
+                        ((TypeElement) anno.getAnnotationType().asElement()).getQualifiedName());
+        return id == null ? -1 : id;
+    }
+
     private final void checkAnnoInGraph(AnnotationMirror a) {
-        if (AnnotationUtils.containsSame(supertypesMap.keySet(), a)
+        // Every annotation of a parameterless qualifier of this hierarchy is in the graph.
+        if (qualifierId(a) >= 0
+                || AnnotationUtils.containsSame(supertypesMap.keySet(), a)
                 || AnnotationUtils.containsSame(polyQualifiers.values(), a)) {
             return;
         }
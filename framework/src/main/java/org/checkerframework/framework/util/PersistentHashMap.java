@@ -0,0 +1,627 @@
+package org.checkerframework.framework.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A {@link Map} whose copies share structure with the original.
+ *
+ * <p>The mappings are stored in an immutable hash array mapped trie. Each modification replaces the
+ * path from the root to the modified entry and shares everything else, so {@link
+ * #PersistentHashMap(PersistentHashMap) copying} takes constant time and a modification of a copy
+ * takes time logarithmic in the size of the map. {@link #intersect} and {@link #containsAllOf} skip
+ * subtrees that two maps share, so their cost is proportional to the parts in which the maps
+ * differ.
+ *
+ * <p>Iterators operate on a snapshot of the map that is taken when the iterator is created. The map
+ * may be modified while it is iterated over; {@link Iterator#remove()} is supported. Null keys and
+ * null values are permitted.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    /** Number of hash bits consumed by each level of the trie. */
+    private static final int BITS = 5;
+
+    /** Mask for the hash bits of one level. */
+    private static final int MASK = (1 << BITS) - 1;
+
+    /** The root of the trie, or null if the map is empty. */
+    private @Nullable Node root;
+
+    /** Creates an empty map. */
+    public PersistentHashMap() {}
+
+    /**
+     * Creates a map with the same mappings as {@code other}, in constant time.
+     *
+     * @param other the map to copy
+     */
+    public PersistentHashMap(PersistentHashMap<K, V> other) {
+        this.root = other.root;
+    }
+
+    /**
+     * Returns a new map with the same mappings as {@code map}. Takes constant time if {@code map}
+     * is a {@link PersistentHashMap}.
+     *
+     * @param map the map to copy
+     * @return a copy of {@code map}
+     */
+    public static <K, V> PersistentHashMap<K, V> copyOf(Map<K, V> map) {
+        if (map instanceof PersistentHashMap) {
+            return new PersistentHashMap<>((PersistentHashMap<K, V>) map);
+        }
+        PersistentHashMap<K, V> result = new PersistentHashMap<>();
+        result.putAll(map);
+        return result;
+    }
+
+    /**
+     * Replaces the mappings of this map by the mappings of {@code other}, in constant time.
+     *
+     * @param other the map whose mappings to use
+     */
+    public void setTo(PersistentHashMap<K, V> other) {
+        this.root = other.root;
+    }
+
+    @Override
+    public int size() {
+        return root == null ? 0 : root.size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return root != null && find(root, hash(key), key, 0) != null;
+    }
+
+    @Override
+    public @Nullable V get(Object key) {
+        if (root == null) {
+            return null;
+        }
+        Leaf<K, V> leaf = find(root, hash(key), key, 0);
+        return leaf == null ? null : leaf.value;
+    }
+
+    @Override
+    public @Nullable V put(K key, V value) {
+        int hash = hash(key);
+        Leaf<K, V> old = root == null ? null : find(root, hash, key, 0);
+        root = put(root, 0, new Leaf<>(hash, key, value, null));
+        return old == null ? null : old.value;
+    }
+
+    @Override
+    public @Nullable V remove(Object key) {
+        if (root == null) {
+            return null;
+        }
+        int hash = hash(key);
+        Leaf<K, V> old = find(root, hash, key, 0);
+        if (old == null) {
+            return null;
+        }
+        root = remove(root, 0, hash, key);
+        return old.value;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return PersistentHashMap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof PersistentHashMap && ((PersistentHashMap<?, ?>) o).root == root) {
+            return true;
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    /** Combines the values that two maps have for the same key. */
+    public interface Merger<V> {
+        /**
+         * Returns the value for a key that is mapped to {@code thisValue} in one map and to {@code
+         * otherValue} in the other map, or null to drop the key from the result.
+         *
+         * <p>{@code merge(v, v)} must be equal to {@code v}: subtrees that both maps share are
+         * retained without calling this method.
+         */
+        @Nullable V merge(V thisValue, V otherValue);
+    }
+
+    /**
+     * Returns a map that contains the keys that are in both this map and {@code other}. Each key is
+     * mapped to the result of {@code merger}, applied to its value in this map and its value in
+     * {@code other}.
+     *
+     * <p>Subtrees that the two maps share are reused without visiting their entries, and so are
+     * entries whose merged value equals their value in this map.
+     *
+     * @param other the other map
+     * @param merger combines the values of keys in both maps
+     * @return the intersection of this map and {@code other}
+     */
+    public PersistentHashMap<K, V> intersect(PersistentHashMap<K, V> other, Merger<V> merger) {
+        PersistentHashMap<K, V> result = new PersistentHashMap<>();
+        if (root != null && other.root != null) {
+            result.root = toNode(intersect(root, other.root, 0, merger), 0);
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if this map contains every mapping of {@code other}, with an equal value.
+     * Subtrees that the two maps share are not visited.
+     *
+     * @param other the other map
+     * @return true if this map contains every mapping of {@code other}
+     */
+    public boolean containsAllOf(PersistentHashMap<K, V> other) {
+        if (other.root == null) {
+            return true;
+        }
+        return root != null && containsAll(root, other.root, 0);
+    }
+
+    /* --------------------------------------------------------- */
+    /* Trie implementation */
+    /* --------------------------------------------------------- */
+
+    // A slot of a node is either a Node, whose own slots are indexed by the next BITS bits of the
+    // hash, or a non-empty chain of Leafs that all have the same hash.
+
+    /** An inner node of the trie. Immutable. */
+    private static final class Node {
+        /** Bit i is set iff the slot for hash chunk i is present. */
+        final int bitmap;
+        /** The present slots, in the order of their hash chunks. */
+        final Object[] slots;
+        /** The number of mappings in this subtree. */
+        final int size;
+
+        Node(int bitmap, Object[] slots, int size) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+            this.size = size;
+        }
+    }
+
+    /** A mapping, and the head of a chain of mappings with the same hash. Immutable. */
+    private static final class Leaf<K, V> implements Map.Entry<K, V> {
+        final int hash;
+        final K key;
+        final V value;
+        final @Nullable Leaf<K, V> next;
+
+        Leaf(int hash, K key, V value, @Nullable Leaf<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException("PersistentHashMap entries are immutable");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    private static int hash(Object key) {
+        int h = Objects.hashCode(key);
+        return h ^ (h >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static int index(int bitmap, int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    private static int slotSize(Object slot) {
+        if (slot instanceof Node) {
+            return ((Node) slot).size;
+        }
+        int size = 0;
+        for (Leaf<?, ?> leaf = (Leaf<?, ?>) slot; leaf != null; leaf = leaf.next) {
+            size++;
+        }
+        return size;
+    }
+
+    /** Returns the hash of the mappings in a slot, which is known for a chain of leafs. */
+    private static int slotHash(Object slot) {
+        return ((Leaf<?, ?>) slot).hash;
+    }
+
+    /** Returns the leaf for {@code key} in the slot, whose hash chunks start at {@code shift}. */
+    @SuppressWarnings("unchecked")
+    private static <K, V> @Nullable Leaf<K, V> find(Object slot, int hash, Object key, int shift) {
+        while (slot instanceof Node) {
+            Node node = (Node) slot;
+            int bit = bit(hash, shift);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            slot = node.slots[index(node.bitmap, bit)];
+            shift += BITS;
+        }
+        for (Leaf<K, V> leaf = (Leaf<K, V>) slot; leaf != null; leaf = leaf.next) {
+            if (leaf.hash == hash && Objects.equals(leaf.key, key)) {
+                return leaf;
+            }
+        }
+        return null;
+    }
+
+    /** Returns a node with the mappings of the slot, whose hash chunks start at {@code shift}. */
+    private static @Nullable Node toNode(@Nullable Object slot, int shift) {
+        if (slot == null || slot instanceof Node) {
+            return (Node) slot;
+        }
+        return new Node(bit(slotHash(slot), shift), new Object[] {slot}, slotSize(slot));
+    }
+
+    /** Returns {@code node} with {@code leaf} added or replacing the mapping for its key. */
+    private static <K, V> Node put(@Nullable Node node, int shift, Leaf<K, V> leaf) {
+        int bit = bit(leaf.hash, shift);
+        if (node == null) {
+            return new Node(bit, new Object[] {leaf}, 1);
+        }
+        int idx = index(node.bitmap, bit);
+        if ((node.bitmap & bit) == 0) {
+            Object[] slots = new Object[node.slots.length + 1];
+            System.arraycopy(node.slots, 0, slots, 0, idx);
+            slots[idx] = leaf;
+            System.arraycopy(node.slots, idx, slots, idx + 1, node.slots.length - idx);
+            return new Node(node.bitmap | bit, slots, node.size + 1);
+        }
+        Object slot = node.slots[idx];
+        Object newSlot;
+        if (slot instanceof Node) {
+            newSlot = put((Node) slot, shift + BITS, leaf);
+        } else if (slotHash(slot) == leaf.hash) {
+            newSlot = putInChain(slot, leaf);
+        } else {
+            newSlot = put(toNode(slot, shift + BITS), shift + BITS, leaf);
+        }
+        if (newSlot == slot) {
+            return node;
+        }
+        return replaceSlot(node, idx, newSlot);
+    }
+
+    /** Returns the chain with {@code leaf} added or replacing the mapping for its key. */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Object putInChain(Object chain, Leaf<K, V> leaf) {
+        Leaf<K, V> old = find(chain, leaf.hash, leaf.key, 0);
+        if (old != null && old.value == leaf.value) {
+            return chain;
+        }
+        Leaf<K, V> rest = (Leaf<K, V>) removeFromChain(chain, leaf.key);
+        return new Leaf<>(leaf.hash, leaf.key, leaf.value, rest);
+    }
+
+    /** Returns the chain without the mapping for {@code key}, or null if it becomes empty. */
+    @SuppressWarnings("unchecked")
+    private static <K, V> @Nullable Object removeFromChain(Object chain, Object key) {
+        Leaf<K, V> head = (Leaf<K, V>) chain;
+        if (head == null) {
+            return null;
+        }
+        if (Objects.equals(head.key, key)) {
+            return head.next;
+        }
+        Leaf<K, V> rest = (Leaf<K, V>) removeFromChain(head.next, key);
+        return rest == head.next ? head : new Leaf<>(head.hash, head.key, head.value, rest);
+    }
+
+    /** Returns {@code node} without the mapping for {@code key}, or null if it becomes empty. */
+    private static @Nullable Node remove(Node node, int shift, int hash, Object key) {
+        int bit = bit(hash, shift);
+        if ((node.bitmap & bit) == 0) {
+            return node;
+        }
+        int idx = index(node.bitmap, bit);
+        Object slot = node.slots[idx];
+        Object newSlot;
+        if (slot instanceof Node) {
+            Node newNode = remove((Node) slot, shift + BITS, hash, key);
+            if (newNode != null
+                    && newNode.slots.length == 1
+                    && !(newNode.slots[0] instanceof Node)) {
+                // Pull a lone chain up into this node.
+                newSlot = newNode.slots[0];
+            } else {
+                newSlot = newNode;
+            }
+        } else {
+            newSlot = removeFromChain(slot, key);
+        }
+        if (newSlot == slot) {
+            return node;
+        }
+        if (newSlot != null) {
+            return replaceSlot(node, idx, newSlot);
+        }
+        if (node.slots.length == 1) {
+            return null;
+        }
+        Object[] slots = new Object[node.slots.length - 1];
+        System.arraycopy(node.slots, 0, slots, 0, idx);
+        System.arraycopy(node.slots, idx + 1, slots, idx, node.slots.length - idx - 1);
+        return new Node(node.bitmap & ~bit, slots, node.size - slotSize(slot));
+    }
+
+    private static Node replaceSlot(Node node, int idx, Object newSlot) {
+        Object[] slots = node.slots.clone();
+        int size = node.size - slotSize(slots[idx]) + slotSize(newSlot);
+        slots[idx] = newSlot;
+        return new Node(node.bitmap, slots, size);
+    }
+
+    /**
+     * Returns the intersection of two slots whose hash chunks start at {@code shift}, or null if it
+     * is empty.
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> @Nullable Object intersect(
+            Object thisSlot, Object otherSlot, int shift, Merger<V> merger) {
+        if (thisSlot == otherSlot) {
+            return thisSlot;
+        }
+        if (thisSlot instanceof Node && otherSlot instanceof Node) {
+            Node thisNode = (Node) thisSlot;
+            Node otherNode = (Node) otherSlot;
+            int common = thisNode.bitmap & otherNode.bitmap;
+            int bitmap = 0;
+            int size = 0;
+            Object[] slots = new Object[Integer.bitCount(common)];
+            int count = 0;
+            boolean sameAsThis = common == thisNode.bitmap;
+            for (int bits = common; bits != 0; bits &= bits - 1) {
+                int bit = bits & -bits;
+                Object thisChild = thisNode.slots[index(thisNode.bitmap, bit)];
+                Object child =
+                        intersect(
+                                thisChild,
+                                otherNode.slots[index(otherNode.bitmap, bit)],
+                                shift + BITS,
+                                merger);
+                if (child != thisChild) {
+                    sameAsThis = false;
+                }
+                if (child != null) {
+                    bitmap |= bit;
+                    size += slotSize(child);
+                    slots[count++] = child;
+                }
+            }
+            if (sameAsThis) {
+                return thisNode;
+            }
+            if (count == 0) {
+                return null;
+            }
+            if (count < slots.length) {
+                Object[] trimmed = new Object[count];
+                System.arraycopy(slots, 0, trimmed, 0, count);
+                slots = trimmed;
+            }
+            if (count == 1 && !(slots[0] instanceof Node)) {
+                return slots[0];
+            }
+            return new Node(bitmap, slots, size);
+        }
+
+        // At least one side is a chain, so the intersection is small: look up its mappings in the
+        // other side.
+        Object small = thisSlot instanceof Node ? otherSlot : thisSlot;
+        Object large = small == thisSlot ? otherSlot : thisSlot;
+        Node result = null;
+        boolean sameAsThis = small == thisSlot;
+        for (Leaf<K, V> leaf = (Leaf<K, V>) small; leaf != null; leaf = leaf.next) {
+            Leaf<K, V> match = find(large, leaf.hash, leaf.key, shift);
+            if (match == null) {
+                sameAsThis = false;
+                continue;
+            }
+            Leaf<K, V> thisLeaf = small == thisSlot ? leaf : match;
+            Leaf<K, V> otherLeaf = small == thisSlot ? match : leaf;
+            V merged = merger.merge(thisLeaf.value, otherLeaf.value);
+            if (merged == null) {
+                sameAsThis = false;
+                continue;
+            }
+            if (Objects.equals(merged, thisLeaf.value)) {
+                merged = thisLeaf.value;
+            } else {
+                sameAsThis = false;
+            }
+            result = put(result, shift, new Leaf<>(thisLeaf.hash, thisLeaf.key, merged, null));
+        }
+        if (sameAsThis) {
+            return thisSlot;
+        }
+        if (result != null && result.slots.length == 1 && !(result.slots[0] instanceof Node)) {
+            return result.slots[0];
+        }
+        return result;
+    }
+
+    /** Returns true if {@code thisSlot} contains every mapping of {@code otherSlot}. */
+    @SuppressWarnings("unchecked")
+    private static <K, V> boolean containsAll(Object thisSlot, Object otherSlot, int shift) {
+        if (thisSlot == otherSlot) {
+            return true;
+        }
+        if (slotSize(otherSlot) > slotSize(thisSlot)) {
+            return false;
+        }
+        if (thisSlot instanceof Node && otherSlot instanceof Node) {
+            Node thisNode = (Node) thisSlot;
+            Node otherNode = (Node) otherSlot;
+            if ((otherNode.bitmap & ~thisNode.bitmap) != 0) {
+                return false;
+            }
+            for (int bits = otherNode.bitmap; bits != 0; bits &= bits - 1) {
+                int bit = bits & -bits;
+                if (!containsAll(
+                        thisNode.slots[index(thisNode.bitmap, bit)],
+                        otherNode.slots[index(otherNode.bitmap, bit)],
+                        shift + BITS)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        List<Leaf<K, V>> otherLeaves = new ArrayList<>();
+        collectLeaves(otherSlot, otherLeaves);
+        for (Leaf<K, V> leaf : otherLeaves) {
+            Leaf<K, V> match = find(thisSlot, leaf.hash, leaf.key, shift);
+            if (match == null || !Objects.equals(match.value, leaf.value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> void collectLeaves(Object slot, List<Leaf<K, V>> out) {
+        if (slot instanceof Node) {
+            for (Object child : ((Node) slot).slots) {
+                collectLeaves(child, out);
+            }
+        } else {
+            for (Leaf<K, V> leaf = (Leaf<K, V>) slot; leaf != null; leaf = leaf.next) {
+                out.add(leaf);
+            }
+        }
+    }
+
+    /** Iterates over a snapshot of the trie. */
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        /** Slots that remain to be visited. */
+        private final ArrayDeque<Object> pending = new ArrayDeque<>();
+        /** The next leaf to return, or null if it has not been found yet. */
+        private @Nullable Leaf<K, V> nextLeaf;
+        /** The leaf returned last, for {@link #remove()}. */
+        private @Nullable Leaf<K, V> lastLeaf;
+
+        EntryIterator() {
+            if (root != null) {
+                pending.push(root);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            while (nextLeaf == null && !pending.isEmpty()) {
+                Object slot = pending.pop();
+                if (slot instanceof Node) {
+                    Object[] slots = ((Node) slot).slots;
+                    for (int i = slots.length - 1; i >= 0; i--) {
+                        pending.push(slots[i]);
+                    }
+                } else {
+                    nextLeaf = (Leaf<K, V>) slot;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            advance();
+            return nextLeaf != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            advance();
+            if (nextLeaf == null) {
+                throw new NoSuchElementException();
+            }
+            lastLeaf = nextLeaf;
+            nextLeaf = nextLeaf.next;
+            return lastLeaf;
+        }
+
+        @Override
+        public void remove() {
+            if (lastLeaf == null) {
+                throw new IllegalStateException();
+            }
+            PersistentHashMap.this.remove(lastLeaf.key);
+            lastLeaf = null;
+        }
+    }
+}
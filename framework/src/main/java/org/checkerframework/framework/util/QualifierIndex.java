@@ -0,0 +1,160 @@
+package org.checkerframework.framework.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The qualifier index of a {@code qual} package: a resource in the package that lists the names of
+ * the classes in the package and its subpackages. {@link
+ * org.checkerframework.framework.type.AnnotationClassLoader AnnotationClassLoader} reads the index
+ * instead of enumerating the entries of the jar file or directory that contains the package, which
+ * is slow for a large jar such as {@code checker.jar}.
+ *
+ * <p>The build writes an index for each {@code qual} package of the Checker Framework. To write
+ * the indexes of a checker that is not part of the Checker Framework, run this class after
+ * compiling the checker:
+ *
+ * <pre>{@code java -cp checker.jar org.checkerframework.framework.util.QualifierIndex CLASSES-DIR}
+ * </pre>
+ *
+ * The index lists the classes in the order in which AnnotationClassLoader scans a directory. It
+ * must be regenerated when a qualifier is added or removed; a stale index hides new qualifiers.
+ *
+ * <p>This class depends only on the JDK, so that the build can run it right after compiling the
+ * framework.
+ */
+public class QualifierIndex {
+
+    /** The name of the index resource within a {@code qual} package. */
+    public static final String FILE_NAME = "qualifier-index";
+
+    /** The suffix of class files. */
+    private static final String CLASS_SUFFIX = ".class";
+
+    /** Do not instantiate. */
+    private QualifierIndex() {
+        throw new AssertionError("Class QualifierIndex cannot be instantiated.");
+    }
+
+    /**
+     * Writes the index of each {@code qual} directory in a directory of class files.
+     *
+     * @param args the directory of class files, and optionally the directory to write the indexes
+     *     to (by default, the directory of class files)
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1 && args.length != 2) {
+            System.err.println("Usage: java QualifierIndex CLASSES-DIR [OUTPUT-DIR]");
+            System.exit(2);
+        }
+        File classesDir = new File(args[0]);
+        File outputDir = new File(args.length == 2 ? args[1] : args[0]);
+        writeIndexes(classesDir, outputDir, "");
+    }
+
+    /**
+     * Writes the index of each {@code qual} directory within {@code dir}.
+     *
+     * @param dir a directory within the directory of class files
+     * @param outputDir the directory that corresponds to {@code dir} in the output directory
+     * @param packageName the name of the package of {@code dir}, followed by a dot, or the empty
+     *     string for the root directory
+     */
+    private static void writeIndexes(File dir, File outputDir, String packageName)
+            throws IOException {
+        for (File file : sortedFiles(dir)) {
+            if (!file.isDirectory()) {
+                continue;
+            }
+            File subOutputDir = new File(outputDir, file.getName());
+            String subPackageName = packageName + file.getName() + ".";
+            if (file.getName().equals("qual")) {
+                List<String> names = new ArrayList<>();
+                collectClassNames(file, subPackageName, names);
+                if (!subOutputDir.isDirectory() && !subOutputDir.mkdirs()) {
+                    throw new IOException("Could not create " + subOutputDir);
+                }
+                try (PrintWriter out =
+                        new PrintWriter(new File(subOutputDir, FILE_NAME), "UTF-8")) {
+                    for (String name : names) {
+                        out.println(name);
+                    }
+                }
+            }
+            writeIndexes(file, subOutputDir, subPackageName);
+        }
+    }
+
+    /**
+     * Adds the names of the classes in a directory and its subdirectories to {@code names}, in the
+     * order in which AnnotationClassLoader scans a directory.
+     *
+     * @param dir a directory of class files
+     * @param packageName the name of the package of {@code dir}, followed by a dot
+     * @param names the list to add the names to
+     */
+    private static void collectClassNames(File dir, String packageName, List<String> names) {
+        for (File file : sortedFiles(dir)) {
+            String fileName = file.getName();
+            if (file.isFile() && fileName.endsWith(CLASS_SUFFIX)) {
+                names.add(packageName + fileName.substring(0, fileName.lastIndexOf('.')));
+            } else if (file.isDirectory()) {
+                collectClassNames(file, packageName + fileName + ".", names);
+            }
+        }
+    }
+
+    /** @return the files in {@code dir}, sorted by name */
+    private static List<File> sortedFiles(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(
+                files,
+                new Comparator<File>() {
+                    @Override
+                    public int compare(File o1, File o2) {
+                        return o1.getName().compareTo(o2.getName());
+                    }
+                });
+        return Arrays.asList(files);
+    }
+
+    /**
+     * Reads a qualifier index.
+     *
+     * @param index the URL of the index resource
+     * @return the fully-qualified names of the classes in the index, or null if it cannot be read
+     */
+    public static @Nullable Set<String> read(URL index) {
+        Set<String> names = new LinkedHashSet<>();
+        try (InputStream in = index.openStream();
+                BufferedReader reader =
+                        new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    names.add(line);
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return names;
+    }
+}
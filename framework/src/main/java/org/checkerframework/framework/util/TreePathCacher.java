@@ -4,7 +4,10 @@ import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.TreeScanner;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 /**
@@ -13,6 +16,11 @@ import java.util.Map;
  * <p>This class replicates some logic from TreePath.getPath but also adds caching to all
  * intermediate TreePaths that are generated. The intermediate TreePaths are reused when other
  * targets have overlapping paths.
+ *
+ * <p>In indexed mode (see {@link #TreePathCacher(boolean)}), the first lookup in a compilation unit
+ * maps every tree of the compilation unit to its parent in a single scan. All lookups in that
+ * compilation unit then walk up the parents, which takes time proportional to the depth of the
+ * target rather than to the size of the compilation unit.
  */
 public class TreePathCacher extends TreeScanner<TreePath, Tree> {
 
@@ -23,19 +31,41 @@ public class TreePathCacher extends TreeScanner<TreePath, Tree> {
      */
     private TreePath path;
 
+    /** Whether to index the parents of all trees of a compilation unit. */
+    private final boolean indexed;
+
+    /** Maps each tree of {@link #indexedRoot} to its parent; the root is mapped to null. */
+    private final Map<Tree, Tree> parents = new IdentityHashMap<>();
+
+    /** The compilation unit whose trees are in {@link #parents}, or null. */
+    private CompilationUnitTree indexedRoot;
+
+    /** Creates a TreePathCacher that scans the compilation unit for each uncached target. */
+    public TreePathCacher() {
+        this(false);
+    }
+
+    /**
+     * @param indexed whether to index the parents of all trees of a compilation unit on the first
+     *     lookup, instead of scanning the compilation unit for each uncached target
+     */
+    public TreePathCacher(boolean indexed) {
+        this.indexed = indexed;
+    }
+
     /**
      * @param target the tree to search for
      * @return true if the tree is cached
      */
     public boolean isCached(Tree target) {
-        return foundPaths.containsKey(target);
+        return foundPaths.containsKey(target) || parents.containsKey(target);
     }
 
     /**
      * Return the TreePath for a Tree.
      *
-     * <p>This method uses try/catch and the Result Error for control flow to stop the superclass
-     * from scanning other subtrees when target is found.
+     * <p>Unless this is in indexed mode, this method uses try/catch and the Result Error for
+     * control flow to stop the superclass from scanning other subtrees when target is found.
      *
      * @param root the compilation unit to search in
      * @param target the target tree to look for
@@ -47,6 +77,10 @@ public class TreePathCacher extends TreeScanner<TreePath, Tree> {
             return foundPaths.get(target);
         }
 
+        if (indexed) {
+            return getIndexedPath(root, target);
+        }
+
         TreePath path = new TreePath(root);
         if (path.getLeaf() == target) {
             return path;
@@ -60,6 +94,56 @@ public class TreePathCacher extends TreeScanner<TreePath, Tree> {
         return null;
     }
 
+    /**
+     * Return the TreePath for a Tree by walking up the parents of the tree, indexing {@code root}
+     * first if necessary. The paths of the target and of all its ancestors are cached.
+     */
+    private TreePath getIndexedPath(CompilationUnitTree root, Tree target) {
+        if (root != indexedRoot) {
+            index(root);
+        }
+        if (!parents.containsKey(target)) {
+            return null;
+        }
+
+        // Find the closest ancestor whose path is known, then create the missing paths top-down.
+        Deque<Tree> ancestors = new ArrayDeque<>();
+        Tree tree = target;
+        TreePath path = foundPaths.get(tree);
+        while (path == null && tree != root) {
+            ancestors.push(tree);
+            tree = parents.get(tree);
+            path = foundPaths.get(tree);
+        }
+        if (path == null) {
+            path = new TreePath(root);
+            foundPaths.put(root, path);
+        }
+        while (!ancestors.isEmpty()) {
+            Tree child = ancestors.pop();
+            path = new TreePath(path, child);
+            foundPaths.put(child, path);
+        }
+        return path;
+    }
+
+    /** Map every tree of {@code root} to its parent. */
+    private void index(CompilationUnitTree root) {
+        parents.clear();
+        indexedRoot = root;
+        new TreeScanner<Void, Tree>() {
+            @Override
+            public Void scan(Tree tree, Tree parent) {
+                // Like TreePath.getPath, use the first occurrence of a tree that is shared.
+                if (tree != null && !parents.containsKey(tree)) {
+                    parents.put(tree, parent);
+                    super.scan(tree, tree);
+                }
+                return null;
+            }
+        }.scan(root, null);
+    }
+
     private static class Result extends Error {
         private static final long serialVersionUID = 4948452207518392627L;
         TreePath path;
@@ -71,6 +155,8 @@ public class TreePathCacher extends TreeScanner<TreePath, Tree> {
 
     public void clear() {
         foundPaths.clear();
+        parents.clear();
+        indexedRoot = null;
     }
 
     /** Scan a single node. The current path is updated for the duration of the scan. */
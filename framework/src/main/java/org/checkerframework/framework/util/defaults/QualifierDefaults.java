@@ -87,9 +87,25 @@ public class QualifierDefaults {
     /** Mapping from an Element to the source Tree of the declaration. */
     private static final int CACHE_SIZE = 300;
 
-    @SuppressWarnings("checkstyle:constantname") // only a shallow constant, so don't use all-caps
-    protected static final Map<Element, BoundType> elementToBoundType =
-            CollectionUtils.createLRUCache(CACHE_SIZE);
+    /**
+     * Mapping from a type parameter to the bound type of its declaration. It is shared by all type
+     * factories and replaced at the start of each compilation (see {@link #clearBoundTypeCache()}).
+     */
+    protected static Map<Element, BoundType> elementToBoundType = createBoundTypeCache();
+
+    /** Creates an empty cache for {@link #elementToBoundType}. */
+    private static Map<Element, BoundType> createBoundTypeCache() {
+        return CollectionUtils.createLRUCache(CACHE_SIZE, "QualifierDefaults.elementToBoundType");
+    }
+
+    /**
+     * Clears the cached bound types of type parameters. Called at the start of each compilation,
+     * because the elements of an earlier compilation in the same JVM are no longer valid. The new
+     * cache counts its hits and misses if cache statistics are enabled at this point.
+     */
+    public static void clearBoundTypeCache() {
+        elementToBoundType = createBoundTypeCache();
+    }
 
     /**
      * Defaults that apply for a certain Element. On the one hand this is used for caching (an
@@ -70,5 +70,44 @@ public class LubGlbChecker extends BaseTypeChecker {
                 : "LUB of POLY and F is not POLY!";
         assert AnnotationUtils.areSame(qh.leastUpperBound(POLY, A), A)
                 : "LUB of POLY and A is not A!";
+
+        // All qualifiers are parameterless, so the hierarchy answers the following from its
+        // dense-id tables. Each pair is checked twice, so that the second lub and glb come from
+        // the memo.
+        AnnotationMirror[] quals = {A, B, C, D, E, F};
+        // supertypes[i][j]: quals[j] is a supertype of quals[i]
+        boolean[][] supertypes = {
+            {true, false, false, false, false, false},
+            {true, true, false, false, false, false},
+            {true, false, true, false, false, false},
+            {true, true, true, true, false, false},
+            {true, false, true, false, true, false},
+            {true, true, true, true, true, true},
+        };
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < quals.length; i++) {
+                for (int j = 0; j < quals.length; j++) {
+                    AnnotationMirror q1 = quals[i];
+                    AnnotationMirror q2 = quals[j];
+                    assert qh.isSubtype(q1, q2) == supertypes[i][j]
+                            : "Wrong subtype relation between " + q1 + " and " + q2;
+                    AnnotationMirror lub = qh.leastUpperBound(q1, q2);
+                    assert qh.isSubtype(q1, lub) && qh.isSubtype(q2, lub)
+                            : "LUB of " + q1 + " and " + q2 + " is not an upper bound: " + lub;
+                    assert AnnotationUtils.areSame(lub, qh.leastUpperBound(q2, q1))
+                            : "LUB of " + q1 + " and " + q2 + " is not symmetric";
+                    AnnotationMirror glb = qh.greatestLowerBound(q1, q2);
+                    assert qh.isSubtype(glb, q1) && qh.isSubtype(glb, q2)
+                            : "GLB of " + q1 + " and " + q2 + " is not a lower bound: " + glb;
+                    assert AnnotationUtils.areSame(glb, qh.greatestLowerBound(q2, q1))
+                            : "GLB of " + q1 + " and " + q2 + " is not symmetric";
+                }
+            }
+        }
+        assert AnnotationUtils.areSame(qh.leastUpperBound(B, E), A) : "LUB of B and E is not A!";
+        assert AnnotationUtils.areSame(qh.greatestLowerBound(D, E), F)
+                : "GLB of D and E is not F!";
+        assert AnnotationUtils.areSame(qh.greatestLowerBound(B, E), F)
+                : "GLB of B and E is not F!";
     }
 }
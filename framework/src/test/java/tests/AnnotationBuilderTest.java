@@ -1,15 +1,25 @@
 package tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import com.sun.tools.javac.processing.JavacProcessingEnvironment;
 import com.sun.tools.javac.util.Context;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.type.TypeMirror;
 import org.checkerframework.framework.source.SourceChecker;
+import org.checkerframework.framework.util.AnnotationMirrorMap;
+import org.checkerframework.framework.util.AnnotationMirrorSet;
 import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -300,4 +310,63 @@ public class AnnotationBuilderTest {
         AnnotationBuilder builder = new AnnotationBuilder(env, ContainingAnno.class);
         builder.setValue("value", anno);
     }
+
+    @Test
+    public void canonicalAnnotationSurvivesClear() {
+        AnnotationMirror anno = new AnnotationBuilder(env, Encrypted.class).build();
+        AnnotationMirror canonical = AnnotationBuilder.canonicalAnnotation(anno);
+        assertNotNull(canonical);
+
+        // A checker clears the static caches when it is initialized, after its type factory
+        // has created its qualifier constants.
+        AnnotationUtils.clear();
+        assertSame(canonical, AnnotationBuilder.canonicalAnnotation(anno));
+        AnnotationMirror same = new AnnotationBuilder(env, Encrypted.class).build();
+        assertSame(canonical, AnnotationBuilder.canonicalAnnotation(same));
+
+        AnnotationBuilder.clearInternedAnnotations();
+        assertNull(AnnotationBuilder.canonicalAnnotation(anno));
+    }
+
+    /** Builds an {@code @AnnoWithStringArg} with the given value. */
+    private AnnotationMirror stringArg(String value) {
+        AnnotationBuilder builder = new AnnotationBuilder(env, AnnoWithStringArg.class);
+        builder.setValue("value", value);
+        return builder.build();
+    }
+
+    @Test
+    public void removalThroughIteratorUpdatesIndex() {
+        AnnotationMirrorSet set =
+                new AnnotationMirrorSet(
+                        Arrays.asList(stringArg("a"), stringArg("b"), stringArg("c")));
+        for (Iterator<AnnotationMirror> it = set.iterator(); it.hasNext(); ) {
+            if (AnnotationUtils.areSame(it.next(), stringArg("b"))) {
+                it.remove();
+            }
+        }
+        assertFalse(set.contains(stringArg("b")));
+        assertTrue(set.contains(stringArg("c")));
+        assertTrue(set.add(stringArg("b")));
+        assertEquals(3, set.size());
+
+        AnnotationMirrorMap<String> map = new AnnotationMirrorMap<>();
+        map.put(stringArg("a"), "a");
+        map.put(stringArg("b"), "b");
+        map.put(stringArg("c"), "c");
+        // Removing "b" reuses its tree node for "c".
+        for (Iterator<Map.Entry<AnnotationMirror, String>> it = map.entrySet().iterator();
+                it.hasNext(); ) {
+            if (it.next().getValue().equals("b")) {
+                it.remove();
+            }
+        }
+        assertFalse(map.containsKey(stringArg("b")));
+        assertEquals("c", map.get(stringArg("c")));
+        assertTrue(map.values().remove("a"));
+        assertNull(map.get(stringArg("a")));
+        assertEquals(1, map.size());
+        assertNull(map.put(stringArg("a"), "a2"));
+        assertEquals("a2", map.get(stringArg("a")));
+    }
 }
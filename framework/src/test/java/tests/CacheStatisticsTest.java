@@ -0,0 +1,74 @@
+package tests;
+
+import java.util.Map;
+import org.checkerframework.javacutil.CollectionUtils;
+import org.checkerframework.javacutil.CollectionUtils.CacheStatistics;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Tests the hit and miss counts of the LRU caches of {@link CollectionUtils}. */
+public class CacheStatisticsTest {
+
+    @After
+    public void disable() {
+        CollectionUtils.disableCacheStatistics();
+    }
+
+    @Test
+    public void cacheCreatedBeforeEnablingIsNotCounted() {
+        CollectionUtils.disableCacheStatistics();
+        Map<String, String> cache =
+                CollectionUtils.createLRUCache(10, "CacheStatisticsTest.createdBefore");
+        cache.put("a", "A");
+        cache.get("a");
+        CollectionUtils.enableCacheStatistics();
+        cache.get("a");
+        cache.get("b");
+        Assert.assertNull(find("CacheStatisticsTest.createdBefore"));
+    }
+
+    @Test
+    public void containsKeyAndGetAreOneLookup() {
+        CollectionUtils.enableCacheStatistics();
+        Map<String, String> cache =
+                CollectionUtils.createLRUCache(10, "CacheStatisticsTest.createdAfter");
+        cache.put("a", "A");
+        cache.get("a");
+        cache.get("b");
+        if (cache.containsKey("a")) {
+            cache.get("a");
+        }
+        CacheStatistics statistics = find("CacheStatisticsTest.createdAfter");
+        Assert.assertNotNull(statistics);
+        Assert.assertEquals(2, statistics.getHits());
+        Assert.assertEquals(1, statistics.getMisses());
+    }
+
+    @Test
+    public void disablingDiscardsTheCounts() {
+        CollectionUtils.enableCacheStatistics();
+        Map<String, String> cache =
+                CollectionUtils.createLRUCache(10, "CacheStatisticsTest.discarded");
+        cache.get("a");
+        Assert.assertNotNull(find("CacheStatisticsTest.discarded"));
+
+        CollectionUtils.disableCacheStatistics();
+        cache.get("a");
+        Assert.assertNull(find("CacheStatisticsTest.discarded"));
+
+        CollectionUtils.enableCacheStatistics();
+        cache.get("a");
+        Assert.assertEquals(1, find("CacheStatisticsTest.discarded").getMisses());
+    }
+
+    /** Returns the reported statistics of the caches with the given name, or null. */
+    private static CacheStatistics find(String name) {
+        for (CacheStatistics statistics : CollectionUtils.getCacheStatistics()) {
+            if (statistics.getName().equals(name)) {
+                return statistics;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,121 @@
+package tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.checkerframework.framework.util.CheckerDaemon;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the request and response path of {@link CheckerDaemon}: a client starts a daemon, sends it
+ * javac arguments, and receives the output and the exit status of the compilation. The daemon
+ * exits after it has been idle for a minute.
+ */
+public class CheckerDaemonTest {
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    /** The home directory of the user, which contains the port files of the daemons. */
+    private String userHome;
+
+    @Before
+    public void setUserHome() {
+        userHome = System.getProperty("user.home");
+        System.setProperty("user.home", tmp.getRoot().getPath());
+    }
+
+    @After
+    public void restoreUserHome() {
+        System.setProperty("user.home", userHome);
+    }
+
+    @Test
+    public void compilesAndReusesTheDaemon() throws IOException {
+        File out = tmp.newFolder("out");
+        File a = write("A.java", "class A {}\n");
+        Assert.assertEquals(Integer.valueOf(0), compile("-proc:none", "-d", out.getPath(), a));
+        Assert.assertTrue(new File(out, "A.class").exists());
+        File[] portFiles = portFiles();
+        Assert.assertEquals(1, portFiles.length);
+        String port = read(portFiles[0]);
+
+        File b = write("B.java", "class B extends A {}\n");
+        Assert.assertEquals(
+                Integer.valueOf(0),
+                compile("-proc:none", "-d", out.getPath(), "-cp", out.getPath(), b));
+        Assert.assertTrue(new File(out, "B.class").exists());
+        Assert.assertEquals(port, read(portFiles[0]));
+    }
+
+    @Test
+    public void reportsTheDiagnosticsAndTheExitStatus() throws IOException {
+        File out = tmp.newFolder("out");
+        File bad = write("Bad.java", "class Bad {\n");
+        PrintStream oldErr = System.err;
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        Integer exitStatus;
+        System.setErr(new PrintStream(err, true));
+        try {
+            exitStatus = compile("-proc:none", "-d", out.getPath(), bad);
+        } finally {
+            System.setErr(oldErr);
+        }
+        Assert.assertEquals(Integer.valueOf(1), exitStatus);
+        String output = new String(err.toByteArray(), StandardCharsets.UTF_8);
+        Assert.assertTrue(output, output.contains("Bad.java:1"));
+    }
+
+    /** Writes a source file to the temporary folder. */
+    private File write(String name, String content) throws IOException {
+        File file = new File(tmp.getRoot(), name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    /** Runs javac in a daemon that runs on the class path of this test. */
+    private static Integer compile(Object... javacArgs) {
+        List<String> command =
+                Arrays.asList(
+                        new File(new File(System.getProperty("java.home"), "bin"), "java")
+                                .getPath(),
+                        "-classpath",
+                        System.getProperty("java.class.path"),
+                        CheckerDaemon.class.getName());
+        String[] args = new String[javacArgs.length];
+        for (int i = 0; i < javacArgs.length; i++) {
+            args[i] = javacArgs[i].toString();
+        }
+        return CheckerDaemon.compile(
+                command, Collections.<File>emptyList(), Arrays.asList(args), 1);
+    }
+
+    /** Returns the port files of the running daemons. */
+    private File[] portFiles() {
+        File[] result =
+                new File(tmp.getRoot(), ".checkerframework-daemon")
+                        .listFiles(
+                                new FilenameFilter() {
+                                    @Override
+                                    public boolean accept(File dir, String name) {
+                                        return name.endsWith(".port");
+                                    }
+                                });
+        return result == null ? new File[0] : result;
+    }
+}
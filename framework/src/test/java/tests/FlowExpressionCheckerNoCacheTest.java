@@ -0,0 +1,29 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.framework.test.FrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+import testlib.flowexpression.FlowExpressionChecker;
+
+/**
+ * Runs the flow expression tests without the caches of the type factory, so that every flow
+ * expression is parsed again. The expected diagnostics are the same as with the caches.
+ */
+public class FlowExpressionCheckerNoCacheTest extends FrameworkPerDirectoryTest {
+
+    /** @param testFiles the files containing test code, which will be type-checked */
+    public FlowExpressionCheckerNoCacheTest(List<File> testFiles) {
+        super(
+                testFiles,
+                FlowExpressionChecker.class,
+                "flowexpression",
+                "-Anomsgtext",
+                "-AatfDoNotCache");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[] {"flowexpression"};
+    }
+}
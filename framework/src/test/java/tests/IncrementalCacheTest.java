@@ -0,0 +1,135 @@
+package tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import org.checkerframework.framework.test.CompilationResult;
+import org.checkerframework.framework.test.TestConfiguration;
+import org.checkerframework.framework.test.TestConfigurationBuilder;
+import org.checkerframework.framework.test.TypecheckExecutor;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import testlib.util.FlowTestChecker;
+
+/**
+ * Tests the {@code -AincrementalCache} option: a compilation unit whose fingerprint is unchanged
+ * is not type-checked again, but its diagnostics are still reported, and a change to the unit or
+ * to the signatures it depends on causes it to be type-checked again.
+ */
+public class IncrementalCacheTest {
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    /** The unit that depends on {@code Dep.value}, with an error if the field is not @Odd. */
+    private static final String USER =
+            "import testlib.util.*;\n"
+                    + "class User {\n"
+                    + "    @Odd String f;\n"
+                    + "    void m() {\n"
+                    + "        f = Dep.value;\n"
+                    + "    }\n"
+                    + "}\n";
+
+    private static final String DEP = "class Dep {\n    static String value;\n}\n";
+
+    private static final String ODD_DEP =
+            "import testlib.util.*;\nclass Dep {\n    static @Odd String value;\n}\n";
+
+    @Test
+    public void unchangedUnitIsReplayed() throws IOException {
+        File dep = write("Dep.java", DEP);
+        File user = write("User.java", USER);
+
+        List<Diagnostic<? extends JavaFileObject>> first = check(dep, user);
+        Assert.assertEquals(2, checkedCount(first));
+        Assert.assertEquals(Arrays.asList(5L), errorLines(first));
+
+        List<Diagnostic<? extends JavaFileObject>> second = check(dep, user);
+        Assert.assertEquals(0, checkedCount(second));
+        Assert.assertEquals(Arrays.asList(5L), errorLines(second));
+    }
+
+    @Test
+    public void changedUnitIsChecked() throws IOException {
+        File dep = write("Dep.java", DEP);
+        File user = write("User.java", USER);
+        check(dep, user);
+
+        write("User.java", "// A comment that moves the error.\n" + USER);
+        List<Diagnostic<? extends JavaFileObject>> second = check(dep, user);
+        Assert.assertEquals(1, checkedCount(second));
+        Assert.assertEquals(Arrays.asList(6L), errorLines(second));
+    }
+
+    @Test
+    public void changedDependencyIsChecked() throws IOException {
+        File dep = write("Dep.java", DEP);
+        File user = write("User.java", USER);
+        check(dep, user);
+
+        write("Dep.java", ODD_DEP);
+        List<Diagnostic<? extends JavaFileObject>> second = check(dep, user);
+        Assert.assertEquals(2, checkedCount(second));
+        Assert.assertEquals(Collections.<Long>emptyList(), errorLines(second));
+    }
+
+    /** Writes the file to the temporary folder, replacing it if it exists. */
+    private File write(String name, String content) throws IOException {
+        File file = new File(tmp.getRoot(), name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /** Type-checks the files with the incremental cache of the temporary folder. */
+    private List<Diagnostic<? extends JavaFileObject>> check(File... files) {
+        List<String> options =
+                Arrays.asList(
+                        "-Anomsgtext",
+                        "-Afilenames",
+                        "-AincrementalCache=" + new File(tmp.getRoot(), "cache.txt"));
+        TestConfiguration config =
+                TestConfigurationBuilder.buildDefaultConfiguration(
+                        tmp.getRoot().getPath(),
+                        Arrays.asList(files),
+                        Collections.singletonList(FlowTestChecker.class.getName()),
+                        options,
+                        false);
+        CompilationResult result = new TypecheckExecutor().compile(config);
+        return result.getDiagnostics();
+    }
+
+    /** Returns the number of compilation units that the checker type-checked. */
+    private static int checkedCount(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+        int count = 0;
+        for (Diagnostic<? extends JavaFileObject> d : diagnostics) {
+            if (d.getKind() == Diagnostic.Kind.NOTE
+                    && d.getMessage(Locale.ROOT).contains("is type-checking")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Returns the lines of the assignment errors. */
+    private static List<Long> errorLines(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+        List<Long> lines = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> d : diagnostics) {
+            if (d.getKind() == Diagnostic.Kind.ERROR) {
+                String message = d.getMessage(Locale.ROOT);
+                Assert.assertTrue(message, message.contains("assignment"));
+                lines.add(d.getLineNumber());
+            }
+        }
+        return lines;
+    }
+}
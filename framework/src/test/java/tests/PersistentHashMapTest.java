@@ -0,0 +1,219 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import org.checkerframework.framework.util.PersistentHashMap;
+import org.junit.Test;
+
+/** This class tests the PersistentHashMap class, independent of dataflow analysis. */
+public class PersistentHashMapTest {
+
+    /** A key whose hash code is given explicitly, so that tests can create collisions. */
+    private static final class Key {
+        final int id;
+        final int hash;
+
+        Key(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return "Key" + id;
+        }
+    }
+
+    /** Checks that the map has exactly the mappings of the expected map. */
+    private static <K, V> void assertSameMappings(Map<K, V> expected, PersistentHashMap<K, V> map) {
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected.isEmpty(), map.isEmpty());
+        for (Map.Entry<K, V> entry : expected.entrySet()) {
+            assertTrue(map.containsKey(entry.getKey()));
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        int count = 0;
+        for (Map.Entry<K, V> entry : map.entrySet()) {
+            assertEquals(expected.get(entry.getKey()), entry.getValue());
+            count++;
+        }
+        assertEquals(expected.size(), count);
+        assertEquals(expected, map);
+        assertEquals(expected.hashCode(), map.hashCode());
+    }
+
+    @Test
+    public void putGetRemove() {
+        Map<Integer, String> expected = new HashMap<>();
+        PersistentHashMap<Integer, String> map = new PersistentHashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            assertNull(map.put(i * 31, "v" + i));
+            expected.put(i * 31, "v" + i);
+        }
+        assertEquals("v7", map.put(7 * 31, "w7"));
+        expected.put(7 * 31, "w7");
+        assertSameMappings(expected, map);
+
+        for (int i = 0; i < 2000; i += 2) {
+            assertEquals(expected.remove(i * 31), map.remove(i * 31));
+        }
+        assertNull(map.remove(-1));
+        assertSameMappings(expected, map);
+
+        for (int i = 1; i < 2000; i += 2) {
+            map.remove(i * 31);
+        }
+        assertTrue(map.isEmpty());
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void fullHashCollisions() {
+        Map<Key, Integer> expected = new HashMap<>();
+        PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+        for (int i = 0; i < 20; i++) {
+            map.put(new Key(i, 42), i);
+            expected.put(new Key(i, 42), i);
+        }
+        assertSameMappings(expected, map);
+        assertNull(map.get(new Key(100, 42)));
+        assertNull(map.remove(new Key(100, 42)));
+
+        // Remove from the start, the middle, and the end of the chain.
+        for (int i : new int[] {0, 10, 19}) {
+            assertEquals(expected.remove(new Key(i, 42)), map.remove(new Key(i, 42)));
+        }
+        assertSameMappings(expected, map);
+    }
+
+    @Test
+    public void partialHashCollisions() {
+        // The hashes agree in their low bits, so the keys share the first levels of the trie.
+        Map<Key, Integer> expected = new HashMap<>();
+        PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+        for (int i = 0; i < 64; i++) {
+            map.put(new Key(i, i << 10), i);
+            expected.put(new Key(i, i << 10), i);
+        }
+        assertSameMappings(expected, map);
+        for (int i = 0; i < 63; i++) {
+            expected.remove(new Key(i, i << 10));
+            map.remove(new Key(i, i << 10));
+            assertSameMappings(expected, map);
+        }
+    }
+
+    @Test
+    public void nullKeysAndValues() {
+        PersistentHashMap<String, String> map = new PersistentHashMap<>();
+        map.put(null, "a");
+        map.put("b", null);
+        assertEquals("a", map.get(null));
+        assertTrue(map.containsKey("b"));
+        assertNull(map.get("b"));
+        assertEquals(2, map.size());
+        assertEquals("a", map.remove(null));
+        assertFalse(map.containsKey(null));
+    }
+
+    @Test
+    public void copiesAreIndependent() {
+        PersistentHashMap<Integer, Integer> map = new PersistentHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i);
+        }
+        PersistentHashMap<Integer, Integer> copy = new PersistentHashMap<>(map);
+        assertEquals(map, copy);
+        assertTrue(map.containsAllOf(copy));
+
+        copy.put(5, -5);
+        copy.remove(6);
+        copy.put(200, 200);
+        assertEquals(Integer.valueOf(5), map.get(5));
+        assertEquals(Integer.valueOf(6), map.get(6));
+        assertFalse(map.containsKey(200));
+        assertEquals(100, map.size());
+        assertEquals(100, copy.size());
+        assertFalse(map.containsAllOf(copy));
+        assertFalse(copy.containsAllOf(map));
+
+        map.setTo(copy);
+        assertEquals(copy, map);
+        map.put(5, 5);
+        assertEquals(Integer.valueOf(-5), copy.get(5));
+    }
+
+    @Test
+    public void intersectSharedAndDifferentEntries() {
+        PersistentHashMap<Integer, Integer> map = new PersistentHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            map.put(i, i);
+        }
+        PersistentHashMap<Integer, Integer> other = new PersistentHashMap<>(map);
+        other.put(1, 100);
+        other.put(2, 200);
+        other.remove(3);
+        other.put(5000, 5000);
+
+        final int[] calls = {0};
+        PersistentHashMap<Integer, Integer> result =
+                map.intersect(
+                        other,
+                        new PersistentHashMap.Merger<Integer>() {
+                            @Override
+                            public Integer merge(Integer thisValue, Integer otherValue) {
+                                calls[0]++;
+                                // Drop key 2, keep the larger value otherwise.
+                                return otherValue == 200 ? null : Math.max(thisValue, otherValue);
+                            }
+                        });
+
+        Map<Integer, Integer> expected = new HashMap<>(map);
+        expected.put(1, 100);
+        expected.remove(2);
+        expected.remove(3);
+        assertSameMappings(expected, result);
+        // Only the entries in the modified paths of the trie are merged.
+        assertTrue(calls[0] < 100);
+    }
+
+    @Test
+    public void iteratorSnapshotAndRemove() {
+        PersistentHashMap<Integer, Integer> map = new PersistentHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i);
+        }
+        int count = 0;
+        for (Iterator<Map.Entry<Integer, Integer>> it = map.entrySet().iterator();
+                it.hasNext(); ) {
+            Map.Entry<Integer, Integer> entry = it.next();
+            // Modifying the map does not affect the iteration.
+            map.put(entry.getKey() + 1000, 0);
+            if (entry.getKey() % 2 == 0) {
+                it.remove();
+            }
+            count++;
+        }
+        assertEquals(100, count);
+        assertEquals(150, map.size());
+        assertFalse(map.containsKey(0));
+        assertTrue(map.containsKey(1));
+        assertTrue(map.containsKey(1000));
+    }
+}
@@ -0,0 +1,37 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// Type argument inference and the defaults of type variables and wildcards, which all subcheckers
+// of an aggregate checker compute, also when they run concurrently.
+class GenericInference<T extends Comparable<T>> {
+    <E> List<E> listOf(E element) {
+        List<E> result = new ArrayList<>();
+        result.add(element);
+        return result;
+    }
+
+    <K, V extends K> Map<K, V> mapOf(K key, V value) {
+        return Collections.singletonMap(key, value);
+    }
+
+    T max(List<? extends T> list) {
+        T result = list.get(0);
+        for (T element : list) {
+            if (element.compareTo(result) > 0) {
+                result = element;
+            }
+        }
+        return result;
+    }
+
+    void use(T t, List<?> unbounded, List<? super T> lower) {
+        List<String> strings = listOf("a");
+        Map<Object, String> map = mapOf((Object) "b", strings.get(0));
+        T largest = max(listOf(t));
+        lower.add(largest);
+        Object first = unbounded.get(0);
+        int size = listOf(1).size() + map.size();
+    }
+}
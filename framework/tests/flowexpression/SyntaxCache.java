@@ -0,0 +1,33 @@
+import testlib.flowexpression.qual.FlowExp;
+
+// Every expression is used twice, so that the second use is resolved from the cached syntax tree,
+// both when it is valid and when it cannot be parsed.
+public class SyntaxCache {
+    int[] a = {1, 2};
+
+    void valid1(@FlowExp("a[0]") Object x, @FlowExp("(this.a)") Object y) {}
+
+    void valid2(@FlowExp("a[0]") Object x, @FlowExp("(this.a)") Object y) {}
+
+    void member1(@FlowExp("this.a.length") Object x) {}
+
+    void member2(@FlowExp("this.a.length") Object x) {}
+
+    // :: error: (expression.unparsable.type.invalid)
+    void invalid1(@FlowExp("a.clone(") Object x) {}
+
+    // :: error: (expression.unparsable.type.invalid)
+    void invalid2(@FlowExp("a.clone(") Object x) {}
+
+    // :: error: (expression.unparsable.type.invalid)
+    void invalid3(@FlowExp("a[0") Object x) {}
+
+    // :: error: (expression.unparsable.type.invalid)
+    void invalid4(@FlowExp("a[0") Object x) {}
+
+    // :: error: (expression.unparsable.type.invalid)
+    void unresolved1(@FlowExp("a.leng") Object x) {}
+
+    // :: error: (expression.unparsable.type.invalid)
+    void unresolved2(@FlowExp("a.leng") Object x) {}
+}
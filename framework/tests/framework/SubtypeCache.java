@@ -0,0 +1,45 @@
+import java.util.List;
+import java.util.Map;
+import testlib.util.*;
+
+// The same subtype checks, repeated, must give the same results whether or not the subtype cache
+// answers them. Types that are written the same way but differ in a nested annotation must not be
+// confused.
+public class SubtypeCache {
+
+    void typeArguments(List<@Odd String> odd, List<String> plain) {
+        List<@Odd String> a = odd;
+        List<@Odd String> b = odd;
+        // :: error: (assignment.type.incompatible)
+        List<@Odd String> c = plain;
+        // :: error: (assignment.type.incompatible)
+        List<@Odd String> d = plain;
+        List<String> e = plain;
+        // :: error: (assignment.type.incompatible)
+        List<String> f = odd;
+    }
+
+    void nested(Map<String, List<@Odd String>> odd, Map<String, List<String>> plain) {
+        Map<String, List<@Odd String>> a = odd;
+        // :: error: (assignment.type.incompatible)
+        Map<String, List<@Odd String>> b = plain;
+        // :: error: (assignment.type.incompatible)
+        Map<String, List<@Odd String>> c = plain;
+    }
+
+    void arrays(@Odd String[] odd, String[] plain) {
+        String[] a = odd;
+        // :: error: (assignment.type.incompatible)
+        @Odd String[] b = plain;
+        // :: error: (assignment.type.incompatible)
+        @Odd String[] c = plain;
+    }
+
+    <T extends @Odd Object> void typeVariables(T t, List<T> ts, List<@Odd Object> objects) {
+        @Odd Object a = t;
+        @Odd Object b = t;
+        // :: error: (assignment.type.incompatible)
+        List<@Odd Object> c = ts;
+        List<@Odd Object> d = objects;
+    }
+}
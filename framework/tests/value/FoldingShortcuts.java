@@ -0,0 +1,73 @@
+import org.checkerframework.common.value.qual.IntRange;
+import org.checkerframework.common.value.qual.IntVal;
+
+// Additions and subtractions whose results are computed from the bounds of the operands, and
+// folds that are reused from the cache of the transfer function.
+class FoldingShortcuts {
+
+    void boundsOfSums(
+            @IntVal({0, 10, 20, 30, 40, 50}) int tens, @IntVal({0, 1, 2, 3, 4, 5}) int units) {
+        // There are at least 6 + 6 - 1 results, more than can be enumerated.
+        @IntRange(from = 0, to = 55) int sum = tens + units;
+        // :: error: (assignment.type.incompatible)
+        @IntRange(from = 0, to = 54) int sumTooNarrow = tens + units;
+        @IntRange(from = -5, to = 50) int difference = tens - units;
+        // :: error: (assignment.type.incompatible)
+        @IntRange(from = -4, to = 50) int differenceTooNarrow = tens - units;
+    }
+
+    void intOverflow(
+            @IntVal({
+                        Integer.MAX_VALUE - 5,
+                        Integer.MAX_VALUE - 4,
+                        Integer.MAX_VALUE - 3,
+                        Integer.MAX_VALUE - 2,
+                        Integer.MAX_VALUE - 1,
+                        Integer.MAX_VALUE
+                    })
+                    int large,
+            @IntVal({0, 1, 2, 3, 4, 5}) int intUnits,
+            @IntVal({0L, 1L, 2L, 3L, 4L, 5L}) long longUnits) {
+        // The int sums wrap around, so their bounds are not the sums of the bounds: the results
+        // are enumerated, and they include negative values.
+        @IntRange(from = Integer.MIN_VALUE, to = Integer.MAX_VALUE) int wrapped = large + intUnits;
+        // :: error: (assignment.type.incompatible)
+        @IntRange(from = 0) int notWrapped = large + intUnits;
+
+        // A long sum does not wrap around.
+        @IntRange(from = Integer.MAX_VALUE - 5, to = Integer.MAX_VALUE + 5L) long widened =
+                large + longUnits;
+    }
+
+    void longOverflow(
+            @IntVal({
+                        Long.MAX_VALUE - 5,
+                        Long.MAX_VALUE - 4,
+                        Long.MAX_VALUE - 3,
+                        Long.MAX_VALUE - 2,
+                        Long.MAX_VALUE - 1,
+                        Long.MAX_VALUE
+                    })
+                    long large,
+            @IntVal({0L, 1L, 2L, 3L, 4L, 5L}) long units) {
+        // :: error: (assignment.type.incompatible)
+        @IntRange(from = 0) long notWrapped = large + units;
+    }
+
+    void foldInLoop(@IntVal({1, 2}) int a, @IntVal({3, 4}) int b, boolean flag) {
+        int x = 0;
+        while (flag) {
+            // The same fold in every iteration of the analysis of the loop.
+            x = a * b;
+            @IntVal({3, 4, 6, 8}) int y = a * b;
+        }
+        @IntVal({0, 3, 4, 6, 8}) int z = x;
+    }
+
+    void sameValuesOtherKind(@IntVal(Integer.MAX_VALUE) int i) {
+        // The folds have operands with the same values but of different types.
+        @IntVal(Integer.MIN_VALUE) int intSum = i + 1;
+        @IntVal(2147483648L) long longSum = (long) i + 1;
+        @IntVal(Integer.MIN_VALUE) int intSumAgain = i + 1;
+    }
+}
@@ -0,0 +1,65 @@
+import org.checkerframework.common.value.qual.DoubleVal;
+import org.checkerframework.common.value.qual.IntRange;
+import org.checkerframework.common.value.qual.IntVal;
+
+// Constant folding of numerical operations over sets of primitive values.
+class NumericalFolding {
+
+    void narrowDoubles(@DoubleVal({300.5, -129.0, 1.0E10, Double.NaN}) double d) {
+        // A double is narrowed to int first, then to byte, short, or char; NaN becomes 0.
+        // :: warning: (cast.unsafe)
+        @IntVal({-1, 0, 44, 127}) byte b = (byte) d;
+        // :: warning: (cast.unsafe)
+        @IntVal({-129, -1, 0, 300}) short s = (short) d;
+        // :: warning: (cast.unsafe)
+        @IntVal({0, 300, 65407, 65535}) char c = (char) d;
+
+        @IntVal({-1, 0, 44, 127}) int sum = b + 0;
+        @IntVal({-258, -2, 0, 600}) int twice = s * 2;
+    }
+
+    void mixedPromotion(@IntVal(Integer.MAX_VALUE) int i, @IntVal(1L) long l) {
+        // The int operand is promoted to long, so the sum does not overflow.
+        @IntVal(2147483648L) long sum = i + l;
+        @IntVal(Integer.MIN_VALUE) int intSum = i + 1;
+        @IntVal(4611686014132420609L) long product = i * (long) i;
+    }
+
+    void shiftByLong(@IntVal(1) int i, @IntVal(-1) int minusOne, @IntVal(33L) long distance) {
+        // The type of a shift is the promoted type of its left operand, so an int is shifted by
+        // the distance modulo 32.
+        @IntVal(2) int shifted = i << distance;
+        @IntVal(Integer.MAX_VALUE) int unsigned = minusOne >>> distance;
+        @IntVal(-1) int signed = minusOne >> distance;
+        @IntVal(8589934592L) long longShifted = 1L << distance;
+    }
+
+    void divisionByZero(@IntVal({1, 7}) int dividend, @IntVal({0, 2}) int divisor) {
+        // A division by zero throws an exception, so it contributes no value.
+        @IntVal({0, 3}) int quotient = dividend / divisor;
+        @IntVal(1) int remainder = dividend % divisor;
+    }
+
+    void signedZeros(@DoubleVal({-1.0, 1.0}) double d) {
+        // -0.0 and 0.0 are different values.
+        @DoubleVal({-0.0, 0.0}) double zeros = d * 0.0;
+        // :: error: (assignment.type.incompatible)
+        @DoubleVal(0.0) double positiveZero = d * 0.0;
+    }
+
+    void nans(
+            @DoubleVal({1.0, 2.0, 3.0, 4.0, 5.0, 6.0}) double x,
+            @DoubleVal({-0.0, 0.0}) double zero) {
+        // The 12 results are the same NaN, so they do not exceed the maximum number of values.
+        @DoubleVal(Double.NaN) double nan = x % zero;
+        @DoubleVal({Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY}) double infinities =
+                x / zero;
+    }
+
+    void moreThanMaxValues(@IntVal({0, 1, 2, 3, 4, 5}) int a, @IntVal({1, 10}) int b) {
+        // 11 distinct products: 0 to 5, and 10 to 50.
+        @IntRange(from = 0, to = 50) int product = a * b;
+        // :: error: (assignment.type.incompatible)
+        @IntRange(from = 0, to = 49) int tooNarrow = a * b;
+    }
+}
@@ -77,7 +77,13 @@ public abstract class AbstractTypeProcessor extends AbstractProcessor {
      * Method {@link #typeProcessingOver()} must be invoked exactly once, after the last invocation
      * of {@link #typeProcess(TypeElement, TreePath)}.
      */
-    private static boolean hasInvokedTypeProcessingOver = false;
+    private boolean hasInvokedTypeProcessingOver = false;
+
+    /**
+     * Method {@link #typeProcessingElementsDone()} must be invoked at most once, after the last
+     * invocation of {@link #typeProcess(TypeElement, TreePath)}.
+     */
+    private boolean hasInvokedTypeProcessingElementsDone = false;
 
     /** The TaskListener registered for completion of attribution. */
     private final AttributionTaskListener listener = new AttributionTaskListener();
@@ -144,6 +150,17 @@ public abstract class AbstractTypeProcessor extends AbstractProcessor {
      */
     public void typeProcessingOver() {}
 
+    /**
+     * A method to be called once after {@link #typeProcess(TypeElement, TreePath)} has been invoked
+     * for the last element to process, whether or not an error was reported. It is invoked before
+     * {@link #typeProcessingOver()}.
+     *
+     * <p>Subclasses may override this method to finish work that was deferred by {@code
+     * typeProcess}; diagnostics reported by this method are still taken into account when deciding
+     * whether to invoke {@code typeProcessingOver}.
+     */
+    public void typeProcessingElementsDone() {}
+
     /** A task listener that invokes the processor whenever a class is fully analyzed. */
     private final class AttributionTaskListener implements TaskListener {
 
@@ -181,6 +198,11 @@ public abstract class AbstractTypeProcessor extends AbstractProcessor {
 
             typeProcess(elem, p);
 
+            if (!hasInvokedTypeProcessingElementsDone && elements.isEmpty()) {
+                typeProcessingElementsDone();
+                hasInvokedTypeProcessingElementsDone = true;
+            }
+
             if (!hasInvokedTypeProcessingOver && elements.isEmpty() && log.nerrors == 0) {
                 typeProcessingOver();
                 hasInvokedTypeProcessingOver = true;
@@ -1,6 +1,8 @@
 package org.checkerframework.javacutil;
 
+import com.sun.tools.javac.code.Type;
 import java.lang.annotation.Annotation;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -11,6 +13,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.WeakHashMap;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
@@ -30,6 +33,7 @@ import javax.lang.model.util.ElementFilter;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 import org.checkerframework.checker.interning.qual.Interned;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.dataflow.qual.SideEffectFree;
 
 /**
@@ -49,6 +53,11 @@ import org.checkerframework.dataflow.qual.SideEffectFree;
  * <p>All setter methods throw {@link IllegalArgumentException} if the specified element is not
  * found, or if the given value is not a subtype of the expected type.
  *
+ * <p>Annotations created by this class are interned: all annotations that are the same according to
+ * {@link AnnotationUtils#areSame(AnnotationMirror, AnnotationMirror)} share a canonical
+ * representative, which {@link #canonicalAnnotation(AnnotationMirror)} returns. Comparing the
+ * representatives of two such annotations is a pointer comparison.
+ *
  * <p>TODO: Doesn't type-check arrays yet
  */
 public class AnnotationBuilder {
@@ -64,6 +73,28 @@ public class AnnotationBuilder {
     private static final Map<CharSequence, AnnotationMirror> annotationsFromNames =
             Collections.synchronizedMap(new HashMap<CharSequence, AnnotationMirror>());
 
+    /**
+     * The canonical representatives of the annotations created by this class, keyed by their
+     * values. Cleared by {@link #clearInternedAnnotations()}.
+     *
+     * <p>The map does not keep the representatives alive: the keys are weak, and each
+     * representative refers to its key (see {@link CheckerFrameworkAnnotationMirror#internKey}), so
+     * an entry is removed once neither its representative nor an annotation that has it as its
+     * representative is reachable.
+     */
+    private static final Map<InternKey, WeakReference<CheckerFrameworkAnnotationMirror>>
+            internedAnnotations = new WeakHashMap<>();
+
+    /**
+     * Incremented by {@link #clearInternedAnnotations()}. Representatives recorded in an earlier
+     * generation are no longer canonical, because an annotation created after the clear gets a new
+     * representative.
+     */
+    private static volatile int internGeneration = 0;
+
+    /** The generation of an annotation that is not interned; never equal to internGeneration. */
+    private static final int NOT_INTERNED = -1;
+
     public AnnotationBuilder(ProcessingEnvironment env, Class<? extends Annotation> anno) {
         this(env, anno.getCanonicalName());
     }
@@ -130,8 +161,7 @@ public class AnnotationBuilder {
         if (annoType == null) {
             return null;
         }
-        AnnotationMirror result =
-                new CheckerFrameworkAnnotationMirror(annoType, Collections.emptyMap());
+        AnnotationMirror result = intern(annoType, Collections.emptyMap());
         annotationsFromNames.put(name, result);
         return result;
     }
@@ -141,6 +171,95 @@ public class AnnotationBuilder {
         annotationsFromNames.clear();
     }
 
+    /**
+     * Discards the canonical representatives of all annotations created so far, so that they can be
+     * garbage-collected. Afterwards, {@link #canonicalAnnotation(AnnotationMirror)} returns null
+     * for the annotations created before the call.
+     *
+     * <p>Call this only between compilations: the annotations that a type factory creates when it
+     * is initialized, such as its qualifier constants, lose their canonical representatives, which
+     * makes comparisons with them slower.
+     */
+    public static void clearInternedAnnotations() {
+        annotationsFromNames.clear();
+        synchronized (internedAnnotations) {
+            internedAnnotations.clear();
+            internGeneration++;
+        }
+    }
+
+    /**
+     * Returns the canonical representative of the given annotation, or null if the annotation was
+     * not created by this class since the last call to {@link #clearInternedAnnotations()}. Two
+     * annotations that have canonical representatives are the same if and only if their
+     * representatives are identical.
+     *
+     * @param anno an annotation
+     * @return the canonical representative of {@code anno}, or null
+     */
+    public static @Nullable AnnotationMirror canonicalAnnotation(AnnotationMirror anno) {
+        if (anno instanceof CheckerFrameworkAnnotationMirror) {
+            CheckerFrameworkAnnotationMirror cfAnno = (CheckerFrameworkAnnotationMirror) anno;
+            if (cfAnno.internGeneration == internGeneration) {
+                return cfAnno.representative != null ? cfAnno.representative : cfAnno;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the current generation of canonical representatives. A canonical representative
+     * returned by {@link #canonicalAnnotation(AnnotationMirror)} may only be compared to other
+     * representatives returned in the same generation.
+     *
+     * @return the current generation of canonical representatives
+     */
+    public static int internGeneration() {
+        return internGeneration;
+    }
+
+    /**
+     * Returns an interned annotation with the given type and values.
+     *
+     * <p>If an annotation with the same values and the same explicitly-given elements was interned
+     * before, that annotation is returned. Otherwise, a new annotation is returned; its
+     * representative is an earlier annotation that is the same except for elements that one of
+     * them gives explicitly and the other one leaves at the default value, or the new annotation
+     * itself.
+     *
+     * @param annotationType the type of the annotation
+     * @param elementValues the explicitly-given values of the annotation
+     * @return an interned annotation with the given type and values
+     */
+    private static CheckerFrameworkAnnotationMirror intern(
+            DeclaredType annotationType, Map<ExecutableElement, AnnotationValue> elementValues) {
+        // The key holds an annotation that is not interned, so that InternKey.equals compares
+        // values instead of representatives.
+        InternKey key =
+                new InternKey(
+                        new CheckerFrameworkAnnotationMirror(
+                                annotationType, elementValues, null, NOT_INTERNED));
+        synchronized (internedAnnotations) {
+            WeakReference<CheckerFrameworkAnnotationMirror> ref = internedAnnotations.get(key);
+            CheckerFrameworkAnnotationMirror representative = ref == null ? null : ref.get();
+            if (representative == null) {
+                CheckerFrameworkAnnotationMirror anno =
+                        new CheckerFrameworkAnnotationMirror(
+                                annotationType, elementValues, null, internGeneration);
+                anno.internKey = key;
+                // WeakHashMap.put keeps a stale key, which nothing else refers to.
+                internedAnnotations.remove(key);
+                internedAnnotations.put(key, new WeakReference<>(anno));
+                return anno;
+            }
+            if (representative.elementValues.keySet().equals(elementValues.keySet())) {
+                return representative;
+            }
+            return new CheckerFrameworkAnnotationMirror(
+                    annotationType, elementValues, representative, internGeneration);
+        }
+    }
+
     private boolean wasBuilt = false;
 
     private void assertNotBuilt() {
@@ -152,7 +271,7 @@ public class AnnotationBuilder {
     public AnnotationMirror build() {
         assertNotBuilt();
         wasBuilt = true;
-        return new CheckerFrameworkAnnotationMirror(annotationType, elementValues);
+        return intern(annotationType, elementValues);
     }
 
     /**
@@ -525,12 +644,33 @@ public class AnnotationBuilder {
         // default visibility to allow access from within package.
         final @Interned String annotationName;
 
+        /**
+         * The canonical representative of this annotation, or null if this annotation is its own
+         * representative. Final, so that it is safely published to other threads.
+         */
+        private final @Nullable CheckerFrameworkAnnotationMirror representative;
+
+        /** The {@link AnnotationBuilder#internGeneration} of this annotation, or NOT_INTERNED. */
+        private final int internGeneration;
+
+        /**
+         * The key of this annotation in {@link AnnotationBuilder#internedAnnotations} if this
+         * annotation is a canonical representative, or null. Only keeps the entry alive; guarded
+         * by the lock on internedAnnotations.
+         */
+        private @Nullable InternKey internKey;
+
         CheckerFrameworkAnnotationMirror(
-                DeclaredType at, Map<ExecutableElement, AnnotationValue> ev) {
+                DeclaredType at,
+                Map<ExecutableElement, AnnotationValue> ev,
+                @Nullable CheckerFrameworkAnnotationMirror representative,
+                int internGeneration) {
             this.annotationType = at;
             final TypeElement elm = (TypeElement) at.asElement();
             this.annotationName = elm.getQualifiedName().toString().intern();
             this.elementValues = ev;
+            this.representative = representative;
+            this.internGeneration = internGeneration;
         }
 
         @Override
@@ -579,6 +719,72 @@ public class AnnotationBuilder {
         }
     }
 
+    /**
+     * Wraps an annotation to use it as a key of {@link #internedAnnotations}. Two keys are equal if
+     * their annotations are the same according to {@link AnnotationUtils#areSame}, and the hash
+     * code is consistent with that.
+     */
+    private static class InternKey {
+        private final AnnotationMirror anno;
+        private final int hashCode;
+
+        InternKey(AnnotationMirror anno) {
+            this.anno = anno;
+            this.hashCode = annotationHashCode(anno);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof InternKey
+                    && AnnotationUtils.areSame(anno, ((InternKey) obj).anno);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        /** Returns a hash code for {@code anno} that takes default values into account. */
+        private static int annotationHashCode(AnnotationMirror anno) {
+            int result = AnnotationUtils.annotationName(anno).hashCode();
+            Map<? extends ExecutableElement, ? extends AnnotationValue> vals =
+                    anno.getElementValues();
+            for (ExecutableElement meth :
+                    ElementFilter.methodsIn(
+                            anno.getAnnotationType().asElement().getEnclosedElements())) {
+                AnnotationValue val = vals.get(meth);
+                if (val == null) {
+                    val = meth.getDefaultValue();
+                }
+                result = 31 * result + (val == null ? 0 : valueHashCode(val.getValue()));
+            }
+            return result;
+        }
+
+        /**
+         * Returns a hash code for a value returned by {@code AnnotationValue.getValue()}. Mirrors
+         * the comparison in {@code AnnotationUtils.sameAnnotationValueValue}.
+         */
+        private static int valueHashCode(Object value) {
+            if (value instanceof List<?>) {
+                int result = 1;
+                for (Object elt : (List<?>) value) {
+                    result = 31 * result + valueHashCode(elt);
+                }
+                return result;
+            } else if (value instanceof AnnotationMirror) {
+                return annotationHashCode((AnnotationMirror) value);
+            } else if (value instanceof AnnotationValue) {
+                return valueHashCode(((AnnotationValue) value).getValue());
+            } else if (value instanceof Type.ClassType) {
+                // Type.ClassType does not override hashCode; see TypesUtils.areSameDeclaredTypes.
+                return ((Type.ClassType) value).tsym.name.hashCode();
+            } else {
+                return Objects.hashCode(value);
+            }
+        }
+    }
+
     private static class CheckerFrameworkAnnotationValue implements AnnotationValue {
         private final Object value;
         private @Interned String toStringVal;
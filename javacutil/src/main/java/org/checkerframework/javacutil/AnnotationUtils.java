@@ -55,7 +55,9 @@ public class AnnotationUtils {
 
     /** Maps classes representing AnnotationMirrors to their names. */
     private static final Map<Class<? extends Annotation>, String> annotationClassNames =
-            Collections.synchronizedMap(CollectionUtils.createLRUCache(ANNOTATION_CACHE_SIZE));
+            Collections.synchronizedMap(
+                    CollectionUtils.<Class<? extends Annotation>, String>createLRUCache(
+                            ANNOTATION_CACHE_SIZE, "AnnotationUtils.annotationClassNames"));
 
     // **********************************************************************
     // Helper methods to handle annotations.  mainly workaround
@@ -89,6 +91,16 @@ public class AnnotationUtils {
             return true;
         }
 
+        if (a1 != null && a2 != null) {
+            AnnotationMirror canonical1 = AnnotationBuilder.canonicalAnnotation(a1);
+            if (canonical1 != null) {
+                AnnotationMirror canonical2 = AnnotationBuilder.canonicalAnnotation(a2);
+                if (canonical2 != null) {
+                    return canonical1 == canonical2;
+                }
+            }
+        }
+
         if (!areSameIgnoringValues(a1, a2)) {
             return false;
         }
@@ -1,18 +1,62 @@
 package org.checkerframework.javacutil;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /** Utility methods related to Java Collections */
 public class CollectionUtils {
 
+    /**
+     * Whether the caches that are created from now on count their hits and misses. Caches that
+     * were created while this is false are plain {@link LinkedHashMap}s and never count.
+     */
+    private static volatile boolean collectCacheStatistics = false;
+
+    /** The statistics of the caches, by cache name, in the order in which they were created. */
+    private static final Map<String, CacheStatistics> cacheStatistics =
+            Collections.synchronizedMap(new LinkedHashMap<String, CacheStatistics>());
+
     /**
      * A Utility method for creating LRU cache
      *
+     * <p>If cache statistics are enabled, the cache is named after the method that calls this
+     * method.
+     *
      * @param size size of the cache
      * @return a new cache with the provided size
      */
     public static <K, V> Map<K, V> createLRUCache(final int size) {
+        String name = null;
+        if (collectCacheStatistics) {
+            StackTraceElement caller = new Throwable().getStackTrace()[1];
+            String className = caller.getClassName();
+            name =
+                    className.substring(className.lastIndexOf('.') + 1)
+                            + "."
+                            + caller.getMethodName();
+        }
+        return createLRUCache(size, name);
+    }
+
+    /**
+     * A Utility method for creating LRU cache
+     *
+     * @param size size of the cache
+     * @param name the name of the cache in the cache statistics (see {@link
+     *     #enableCacheStatistics()}); caches with the same name share their statistics. The cache
+     *     is only counted if the statistics are enabled when it is created, so that lookups in the
+     *     other caches cost nothing extra.
+     * @return a new cache with the provided size
+     */
+    public static <K, V> Map<K, V> createLRUCache(final int size, @Nullable String name) {
+        if (name != null && collectCacheStatistics) {
+            return new CountingLRUCache<>(size, getOrCreateStatistics(name));
+        }
         return new LinkedHashMap<K, V>(size, .75F, true) {
 
             private static final long serialVersionUID = 5261489276168775084L;
@@ -23,4 +67,147 @@ public class CollectionUtils {
             }
         };
     }
+
+    /** Make the LRU caches that are created from now on count their hits and misses. */
+    public static void enableCacheStatistics() {
+        collectCacheStatistics = true;
+    }
+
+    /**
+     * Stop counting the hits and misses of the LRU caches, including those that were created while
+     * the statistics were enabled, and discard the counts so far. A process
+     * that runs several compilations calls this before each of them, so that the statistics of
+     * one compilation are not counted in the next one.
+     */
+    public static void disableCacheStatistics() {
+        collectCacheStatistics = false;
+        synchronized (cacheStatistics) {
+            for (CacheStatistics statistics : cacheStatistics.values()) {
+                statistics.hits.set(0);
+                statistics.misses.set(0);
+            }
+        }
+    }
+
+    /**
+     * @return the statistics of all caches that were looked up, in the order in which they were
+     *     created
+     */
+    public static List<CacheStatistics> getCacheStatistics() {
+        synchronized (cacheStatistics) {
+            List<CacheStatistics> result = new ArrayList<>();
+            for (CacheStatistics statistics : cacheStatistics.values()) {
+                if (statistics.getHits() + statistics.getMisses() > 0) {
+                    result.add(statistics);
+                }
+            }
+            return result;
+        }
+    }
+
+    private static CacheStatistics getOrCreateStatistics(String name) {
+        synchronized (cacheStatistics) {
+            CacheStatistics result = cacheStatistics.get(name);
+            if (result == null) {
+                result = new CacheStatistics(name);
+                cacheStatistics.put(name, result);
+            }
+            return result;
+        }
+    }
+
+    /** The number of hits and misses of the LRU caches with a given name. */
+    public static final class CacheStatistics {
+        /** The name of the caches. */
+        private final String name;
+        /** The number of lookups that found a value. */
+        private final AtomicLong hits = new AtomicLong();
+        /** The number of lookups that did not find a value. */
+        private final AtomicLong misses = new AtomicLong();
+
+        private CacheStatistics(String name) {
+            this.name = name;
+        }
+
+        /** @return the name of the caches */
+        public String getName() {
+            return name;
+        }
+
+        /** @return the number of lookups that found a value */
+        public long getHits() {
+            return hits.get();
+        }
+
+        /** @return the number of lookups that did not find a value */
+        public long getMisses() {
+            return misses.get();
+        }
+    }
+
+    /**
+     * An LRU cache that counts its hits and misses while cache statistics are enabled. A lookup is
+     * a call to {@link #get} or {@link #containsKey}; a call to {@link #get} right after {@link
+     * #containsKey} with the same key is part of the same lookup. Only created while the statistics
+     * are enabled.
+     */
+    private static final class CountingLRUCache<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 8019435641874127354L;
+
+        /** The maximum number of entries. */
+        private final int maxSize;
+
+        /** The statistics to update. */
+        private final transient CacheStatistics statistics;
+
+        /**
+         * The identity hash code of the key of the last call to {@link #containsKey}. The key
+         * itself is not kept, so that it can be garbage-collected.
+         */
+        private transient int lastContainsKeyHash;
+
+        /** Whether the last lookup was a call to {@link #containsKey}. */
+        private transient boolean afterContainsKey = false;
+
+        CountingLRUCache(int maxSize, CacheStatistics statistics) {
+            super(maxSize, .75F, true);
+            this.maxSize = maxSize;
+            this.statistics = statistics;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> entry) {
+            return size() > maxSize;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            boolean result = super.containsKey(key);
+            count(result);
+            lastContainsKeyHash = System.identityHashCode(key);
+            afterContainsKey = true;
+            return result;
+        }
+
+        @Override
+        public V get(Object key) {
+            V result = super.get(key);
+            if (!afterContainsKey || System.identityHashCode(key) != lastContainsKeyHash) {
+                count(result != null);
+            }
+            afterContainsKey = false;
+            return result;
+        }
+
+        private void count(boolean hit) {
+            if (!collectCacheStatistics) {
+                return;
+            } else if (hit) {
+                statistics.hits.incrementAndGet();
+            } else {
+                statistics.misses.incrementAndGet();
+            }
+        }
+    }
 }